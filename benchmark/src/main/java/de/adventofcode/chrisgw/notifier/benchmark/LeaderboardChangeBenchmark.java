@@ -0,0 +1,58 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardDelta;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Diffs two polls of a leaderboard. Each invocation starts with a fresh {@link LeaderboardChange}, so the lazily
+ * computed delta is part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardChangeBenchmark {
+
+    @Param({ "10", "200", "1000" })
+    private int memberCount;
+
+    @Param({ "1", "12", "25" })
+    private int dayCount;
+
+    private LeaderboardFixture leaderboardFixture;
+
+
+    @Setup
+    public void setup() {
+        leaderboardFixture = new LeaderboardFixture(memberCount, dayCount);
+    }
+
+
+    @Benchmark
+    public boolean hasChanged() {
+        return leaderboardFixture.newLeaderboardChange().hasChanged();
+    }
+
+    @Benchmark
+    public void newFinishedDayTasks(Blackhole blackhole) {
+        LeaderboardChange leaderboardChange = leaderboardFixture.newLeaderboardChange();
+        for (LeaderboardMember member : leaderboardFixture.getCurrentLeaderboard()) {
+            leaderboardChange.newFinishedDayTasks(member.getId()).forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public LeaderboardDelta delta() {
+        return LeaderboardDelta.between(leaderboardFixture.getPreviousLeaderboard(),
+                leaderboardFixture.getCurrentLeaderboard());
+    }
+
+}
@@ -0,0 +1,65 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import de.adventofcode.chrisgw.notifier.AocLeaderboardNotifierConfig;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the streaming {@code LeaderboardDeserializer} with Jackson's default bean binding of the same model. Run
+ * with {@link BenchmarkRunner} to get {@code gc.alloc.rate.norm}, the allocated bytes per parsed leaderboard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardDeserializationBenchmark {
+
+    @Param({ "10", "200", "1000" })
+    private int memberCount;
+
+    @Param({ "1", "12", "25" })
+    private int dayCount;
+
+    private byte[] leaderboardJson;
+    private ObjectReader streamingReader;
+    private ObjectReader beanBindingReader;
+
+
+    @Setup
+    public void setup() {
+        leaderboardJson = new LeaderboardJsonGenerator(LeaderboardFixture.SEED).generateJson(memberCount, dayCount);
+        ObjectMapper objectMapper = new AocLeaderboardNotifierConfig().objectMapper();
+        streamingReader = objectMapper.readerFor(Leaderboard.class);
+        beanBindingReader = objectMapper.copy()
+                .addMixIn(Leaderboard.class, BeanBindingMixIn.class)
+                .readerFor(Leaderboard.class);
+    }
+
+
+    @Benchmark
+    public Leaderboard streamingDeserializer() throws IOException {
+        return streamingReader.readValue(leaderboardJson);
+    }
+
+    @Benchmark
+    public Leaderboard beanBinding() throws IOException {
+        return beanBindingReader.readValue(leaderboardJson);
+    }
+
+
+    @JsonDeserialize(using = JsonDeserializer.None.class)
+    private abstract static class BeanBindingMixIn {
+
+    }
+
+}
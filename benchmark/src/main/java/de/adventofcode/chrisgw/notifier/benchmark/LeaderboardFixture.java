@@ -0,0 +1,56 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.adventofcode.chrisgw.notifier.AocLeaderboardNotifierConfig;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+
+/**
+ * Synthetic leaderboard pair of one poll: the previous leaderboard misses every star earned in the last three hours
+ * after the unlock of the last day.
+ */
+public class LeaderboardFixture {
+
+    public static final long SEED = 42;
+
+    private static final ObjectReader LEADERBOARD_READER = new AocLeaderboardNotifierConfig().objectMapper()
+            .readerFor(Leaderboard.class);
+
+    private final Leaderboard previousLeaderboard;
+    private final Leaderboard currentLeaderboard;
+
+
+    public LeaderboardFixture(int memberCount, int dayCount) {
+        long cutoffEpochSecond = LeaderboardJsonGenerator.unlockEpochSecond(dayCount) + 3 * 60 * 60;
+        this.previousLeaderboard = read(
+                new LeaderboardJsonGenerator(SEED).generateJson(memberCount, dayCount, cutoffEpochSecond));
+        this.currentLeaderboard = read(new LeaderboardJsonGenerator(SEED).generateJson(memberCount, dayCount));
+    }
+
+
+    public Leaderboard getPreviousLeaderboard() {
+        return previousLeaderboard;
+    }
+
+    public Leaderboard getCurrentLeaderboard() {
+        return currentLeaderboard;
+    }
+
+    public LeaderboardChange newLeaderboardChange() {
+        return new LeaderboardChange(previousLeaderboard, currentLeaderboard);
+    }
+
+
+    private static Leaderboard read(byte[] leaderboardJson) {
+        try {
+            return LEADERBOARD_READER.readValue(leaderboardJson);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
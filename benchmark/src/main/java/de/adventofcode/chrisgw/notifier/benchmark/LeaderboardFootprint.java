@@ -0,0 +1,28 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.adventofcode.chrisgw.notifier.AocLeaderboardNotifierConfig;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+
+
+/**
+ * Prints the retained heap of a parsed leaderboard, measured with JOL. Run with
+ * {@code java -cp target/benchmarks.jar de.adventofcode.chrisgw.notifier.benchmark.LeaderboardFootprint}.
+ */
+public class LeaderboardFootprint {
+
+    public static void main(String[] args) throws IOException {
+        ObjectReader leaderboardReader = new AocLeaderboardNotifierConfig().objectMapper().readerFor(Leaderboard.class);
+        for (int memberCount : new int[] { 10, 200, 1000 }) {
+            byte[] leaderboardJson = new LeaderboardJsonGenerator(42).generateJson(memberCount, 25);
+            Leaderboard leaderboard = leaderboardReader.readValue(leaderboardJson);
+            GraphLayout graphLayout = GraphLayout.parseInstance(leaderboard);
+            System.out.printf("%4d members: %9d bytes, %7d objects, %5d bytes/member%n", memberCount,
+                    graphLayout.totalSize(), graphLayout.totalCount(), graphLayout.totalSize() / memberCount);
+        }
+    }
+
+}
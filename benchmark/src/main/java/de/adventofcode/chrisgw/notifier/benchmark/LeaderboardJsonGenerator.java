@@ -0,0 +1,95 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static java.time.Month.DECEMBER;
+
+
+public class LeaderboardJsonGenerator {
+
+    public static final int EVENT_YEAR = 2023;
+    public static final long OWNER_ID = 100000;
+
+    private final Random random;
+
+
+    public LeaderboardJsonGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+
+    public byte[] generateJson(int memberCount, int dayCount) {
+        return generateJson(memberCount, dayCount, Long.MAX_VALUE);
+    }
+
+    /**
+     * Generates the same members as {@link #generateJson(int, int)} for the same seed, but leaves out every star
+     * earned after {@code cutoffEpochSecond}. Two leaderboards with different cutoffs form a realistic change.
+     */
+    public byte[] generateJson(int memberCount, int dayCount, long cutoffEpochSecond) {
+        StringBuilder sb = new StringBuilder(memberCount * (200 + dayCount * 90));
+        sb.append("{\"event\":\"").append(EVENT_YEAR).append("\",\"owner_id\":").append(OWNER_ID);
+        sb.append(",\"members\":{");
+        for (int memberIndex = 0; memberIndex < memberCount; memberIndex++) {
+            if (memberIndex > 0) {
+                sb.append(',');
+            }
+            appendMember(sb, OWNER_ID + memberIndex, dayCount, cutoffEpochSecond);
+        }
+        sb.append("}}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendMember(StringBuilder sb, long memberId, int dayCount, long cutoffEpochSecond) {
+        double skill = random.nextDouble();
+        StringBuilder completionDayLevel = new StringBuilder();
+        long lastStarTs = 0;
+        int stars = 0;
+        for (int day = 1; day <= dayCount; day++) {
+            if (random.nextDouble() > skill) {
+                continue;
+            }
+            long firstStarTs = unlockEpochSecond(day) + 60 + random.nextInt(6 * 60 * 60);
+            int firstStarIndex = random.nextInt(1_000_000);
+            boolean secondStar = random.nextDouble() < skill;
+            long secondStarTs = firstStarTs + 30 + random.nextInt(2 * 60 * 60);
+            int secondStarIndex = random.nextInt(1_000_000);
+            if (firstStarTs > cutoffEpochSecond) {
+                continue;
+            }
+            secondStar &= secondStarTs <= cutoffEpochSecond;
+            if (completionDayLevel.length() > 0) {
+                completionDayLevel.append(',');
+            }
+            completionDayLevel.append('"').append(day).append("\":{");
+            completionDayLevel.append("\"1\":{\"get_star_ts\":").append(firstStarTs)
+                    .append(",\"star_index\":").append(firstStarIndex).append('}');
+            if (secondStar) {
+                completionDayLevel.append(",\"2\":{\"get_star_ts\":").append(secondStarTs)
+                        .append(",\"star_index\":").append(secondStarIndex).append('}');
+            }
+            completionDayLevel.append('}');
+            stars += secondStar ? 2 : 1;
+            lastStarTs = Math.max(lastStarTs, secondStar ? secondStarTs : firstStarTs);
+        }
+
+        sb.append('"').append(memberId).append("\":{");
+        sb.append("\"id\":").append(memberId);
+        sb.append(",\"name\":\"member-").append(memberId).append('"');
+        sb.append(",\"stars\":").append(stars);
+        sb.append(",\"local_score\":").append(stars * 17 + (int) (memberId % 50));
+        sb.append(",\"global_score\":0");
+        sb.append(",\"last_star_ts\":").append(lastStarTs);
+        sb.append(",\"completion_day_level\":{").append(completionDayLevel).append('}');
+        sb.append('}');
+    }
+
+
+    public static long unlockEpochSecond(int day) {
+        return LocalDate.of(EVENT_YEAR, DECEMBER, day).atStartOfDay(ZoneOffset.ofHours(-5)).toEpochSecond();
+    }
+
+}
@@ -0,0 +1,59 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage;
+import de.adventofcode.chrisgw.notifier.service.LeaderboardMessageEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Message formatting of {@code AocSlackMessageService} and {@code AocDiscordMessageService}: rendering the sink
+ * neutral {@link LeaderboardMessage} of a change and encoding it for each sink.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardMessageBenchmark {
+
+    @Param({ "10", "200", "1000" })
+    private int memberCount;
+
+    @Param({ "1", "12", "25" })
+    private int dayCount;
+
+    private LeaderboardFixture leaderboardFixture;
+    private LeaderboardMessage leaderboardMessage;
+
+
+    @Setup
+    public void setup() {
+        leaderboardFixture = new LeaderboardFixture(memberCount, dayCount);
+        leaderboardMessage = leaderboardFixture.newLeaderboardChange().getMessage();
+    }
+
+
+    @Benchmark
+    public LeaderboardMessage render() {
+        return LeaderboardMessage.render(leaderboardFixture.newLeaderboardChange());
+    }
+
+    @Benchmark
+    public String slackMessage() {
+        return LeaderboardMessageEncoder.SLACK.encode(leaderboardMessage);
+    }
+
+    @Benchmark
+    public String discordMessage() {
+        return LeaderboardMessageEncoder.DISCORD.encode(leaderboardMessage);
+    }
+
+    @Benchmark
+    public String slackMessageWithRender() {
+        return LeaderboardMessageEncoder.SLACK.encode(leaderboardFixture.newLeaderboardChange().getMessage());
+    }
+
+}
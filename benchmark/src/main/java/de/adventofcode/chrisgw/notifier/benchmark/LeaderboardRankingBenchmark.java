@@ -0,0 +1,62 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Ranked iteration and rank lookups on a leaderboard, once with the cached ranking and once with a ranking that has
+ * to be rebuilt because a member was updated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardRankingBenchmark {
+
+    @Param({ "10", "200", "1000" })
+    private int memberCount;
+
+    @Param({ "25" })
+    private int dayCount;
+
+    private Leaderboard leaderboard;
+    private LeaderboardMember updatedMember;
+
+
+    @Setup
+    public void setup() {
+        leaderboard = new LeaderboardFixture(memberCount, dayCount).getCurrentLeaderboard();
+        updatedMember = leaderboard.iterator().next();
+    }
+
+
+    @Benchmark
+    public void iterator(Blackhole blackhole) {
+        for (LeaderboardMember member : leaderboard) {
+            blackhole.consume(member);
+        }
+    }
+
+    @Benchmark
+    public void rankingFor(Blackhole blackhole) {
+        for (LeaderboardMember member : leaderboard) {
+            blackhole.consume(leaderboard.rankingFor(member));
+        }
+    }
+
+    @Benchmark
+    public void rankingForAfterUpdate(Blackhole blackhole) {
+        leaderboard.addMember(updatedMember);
+        for (LeaderboardMember member : leaderboard) {
+            blackhole.consume(leaderboard.rankingFor(member));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package de.adventofcode.chrisgw.notifier.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardStanding;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
+import de.adventofcode.chrisgw.notifier.store.StarEventHistory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static de.adventofcode.chrisgw.notifier.benchmark.LeaderboardJsonGenerator.EVENT_YEAR;
+import static de.adventofcode.chrisgw.notifier.benchmark.LeaderboardJsonGenerator.OWNER_ID;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * Point-in-time standings of a leaderboard whose star event history holds a full season, as of the middle of the
+ * season and after its middle day.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StarEventHistoryBenchmark {
+
+    private static final LeaderboardKey LEADERBOARD_KEY = new LeaderboardKey(EVENT_YEAR, OWNER_ID);
+
+    @Param({ "200", "1000" })
+    private int memberCount;
+
+    @Param({ "25" })
+    private int dayCount;
+
+    private Path storeDirectory;
+    private LeaderboardStore leaderboardStore;
+    private StarEventHistory starEventHistory;
+    private Instant middleOfSeason;
+
+
+    @Setup
+    public void setup() throws IOException {
+        storeDirectory = Files.createTempDirectory("aoc-star-event-history-benchmark");
+        leaderboardStore = new LeaderboardStore(new ObjectMapper());
+        leaderboardStore.setStoreDirectory(storeDirectory.toString());
+        starEventHistory = new StarEventHistory(leaderboardStore);
+        starEventHistory.record(new LeaderboardFixture(memberCount, dayCount).newLeaderboardChange());
+        middleOfSeason = Instant.ofEpochSecond(LeaderboardJsonGenerator.unlockEpochSecond(dayCount / 2 + 1));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException, IOException {
+        leaderboardStore.shutdown();
+        try (Stream<Path> files = Files.walk(storeDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+
+    @Benchmark
+    public List<LeaderboardStanding> standingsAsOf() {
+        return starEventHistory.standingsAsOf(LEADERBOARD_KEY, middleOfSeason);
+    }
+
+    @Benchmark
+    public List<LeaderboardStanding> standingsAfterDay() {
+        return starEventHistory.standingsAfterDay(LEADERBOARD_KEY, dayCount / 2);
+    }
+
+}
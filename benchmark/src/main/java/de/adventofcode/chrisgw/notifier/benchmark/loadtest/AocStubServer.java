@@ -0,0 +1,230 @@
+package de.adventofcode.chrisgw.notifier.benchmark.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Local stand-in for adventofcode.com and the Slack and Discord webhooks, so the notifier can be load tested offline.
+ * <ul>
+ * <li>{@code GET /{year}/leaderboard/private/view/{id}.json} serves a {@link StubLeaderboard} whose stars evolve
+ * while the test runs, a request without session cookie gets 400 like on Advent of Code</li>
+ * <li>{@code POST /webhook/{id}} accepts the messages of a board after {@code webhookLatencyMillis}, jittered
+ * between half and one and a half times, and answers a {@code rateLimitRatio} share with 429 and
+ * {@code Retry-After}</li>
+ * </ul>
+ * Advent of Code is served as {@code localhost} and the webhooks as {@code 127.0.0.1}, so the per host request limit
+ * of the HTTP transport treats them as separate hosts like in production.
+ */
+public class AocStubServer {
+
+    private static final Pattern LEADERBOARD_PATH = Pattern.compile(
+            "/(\\d+)/leaderboard/private/view/(\\d+)\\.json");
+    private static final Pattern WEBHOOK_PATH = Pattern.compile("/webhook/(\\d+)");
+
+    private final Map<Long, StubLeaderboard> leaderboards = new ConcurrentHashMap<>();
+    private final LatencyRecorder starToWebhookLatencies = new LatencyRecorder();
+    private final AtomicLong leaderboardRequests = new AtomicLong();
+    private final AtomicLong webhookPosts = new AtomicLong();
+    private final AtomicLong rateLimitedPosts = new AtomicLong();
+
+    private int memberCount = 50;
+    private long meanStarIntervalMillis = 5_000;
+    private long webhookLatencyMillis = 100;
+    private double rateLimitRatio = 0;
+    private int retryAfterSeconds = 1;
+
+    private HttpServer httpServer;
+    private ExecutorService serverExecutor;
+    private ScheduledExecutorService responseExecutor;
+
+
+    public synchronized void start() throws IOException {
+        if (httpServer != null) {
+            return;
+        }
+        httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.createContext("/webhook/", this::handleWebhook);
+        httpServer.createContext("/", this::handleLeaderboard);
+        serverExecutor = Executors.newFixedThreadPool(4, new BasicThreadFactory.Builder() //
+                .namingPattern("aoc-stub-%d")
+                .daemon(true)
+                .build());
+        responseExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder() //
+                .namingPattern("aoc-stub-response-%d")
+                .daemon(true)
+                .build());
+        httpServer.setExecutor(serverExecutor);
+        httpServer.start();
+    }
+
+    public synchronized void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            serverExecutor.shutdownNow();
+            responseExecutor.shutdownNow();
+            httpServer = null;
+        }
+    }
+
+
+    public void addLeaderboard(int year, long leaderboardId) {
+        leaderboards.computeIfAbsent(leaderboardId, id -> new StubLeaderboard(year, id, memberCount,
+                meanStarIntervalMillis, System.currentTimeMillis()));
+    }
+
+    public String adventOfCodeUrl() {
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    public String webhookUrl(long leaderboardId) {
+        return "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/webhook/" + leaderboardId;
+    }
+
+
+    private void handleLeaderboard(HttpExchange exchange) throws IOException {
+        try {
+            Matcher pathMatcher = LEADERBOARD_PATH.matcher(exchange.getRequestURI().getPath());
+            StubLeaderboard leaderboard = pathMatcher.matches() ? leaderboards.get(Long.valueOf(pathMatcher.group(2)))
+                    : null;
+            if (!"GET".equals(exchange.getRequestMethod()) || leaderboard == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            leaderboardRequests.incrementAndGet();
+            String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            if (cookie == null || !cookie.contains("session=")) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] body = leaderboard.serveJson(System.currentTimeMillis());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleWebhook(HttpExchange exchange) throws IOException {
+        long receivedMillis = System.currentTimeMillis();
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+        }
+        Matcher pathMatcher = WEBHOOK_PATH.matcher(exchange.getRequestURI().getPath());
+        StubLeaderboard leaderboard = pathMatcher.matches() ? leaderboards.get(Long.valueOf(pathMatcher.group(1)))
+                : null;
+        if (!"POST".equals(exchange.getRequestMethod()) || leaderboard == null) {
+            respond(exchange, 404, "");
+            return;
+        }
+        webhookPosts.incrementAndGet();
+        if (ThreadLocalRandom.current().nextDouble() < rateLimitRatio) {
+            rateLimitedPosts.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            respond(exchange, 429, "rate limited");
+            return;
+        }
+        starToWebhookLatencies.record(leaderboard.deliver(receivedMillis));
+        long latencyMillis = webhookLatencyMillis / 2 + ThreadLocalRandom.current().nextLong(webhookLatencyMillis + 1);
+        // answer later without holding a server thread, like a slow webhook endpoint
+        responseExecutor.schedule(() -> respond(exchange, 200, "ok"), latencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) {
+        try {
+            byte[] responseBody = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, responseBody.length == 0 ? -1 : responseBody.length);
+            if (responseBody.length > 0) {
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(responseBody);
+                }
+            }
+        } catch (IOException e) {
+            // the notifier gave up on the request, it sees a timeout
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    public long leaderboardRequests() {
+        return leaderboardRequests.get();
+    }
+
+    public long webhookPosts() {
+        return webhookPosts.get();
+    }
+
+    public long rateLimitedPosts() {
+        return rateLimitedPosts.get();
+    }
+
+    public long grantedStarCount() {
+        long nowMillis = System.currentTimeMillis();
+        return leaderboards.values().stream().mapToLong(leaderboard -> leaderboard.grantedStarCount(nowMillis)).sum();
+    }
+
+    public long servedStarCount() {
+        return leaderboards.values().stream().mapToLong(StubLeaderboard::servedStarCount).sum();
+    }
+
+    public long deliveredStarCount() {
+        return leaderboards.values().stream().mapToLong(StubLeaderboard::deliveredStarCount).sum();
+    }
+
+    LatencyRecorder starToWebhookLatencies() {
+        return starToWebhookLatencies;
+    }
+
+
+    public void setMemberCount(int memberCount) {
+        if (memberCount <= 0) {
+            throw new IllegalArgumentException("Expect positive memberCount: " + memberCount);
+        }
+        this.memberCount = memberCount;
+    }
+
+    public void setMeanStarIntervalMillis(long meanStarIntervalMillis) {
+        if (meanStarIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Expect positive meanStarIntervalMillis: " + meanStarIntervalMillis);
+        }
+        this.meanStarIntervalMillis = meanStarIntervalMillis;
+    }
+
+    public void setWebhookLatencyMillis(long webhookLatencyMillis) {
+        if (webhookLatencyMillis < 0) {
+            throw new IllegalArgumentException("Expect non negative webhookLatencyMillis: " + webhookLatencyMillis);
+        }
+        this.webhookLatencyMillis = webhookLatencyMillis;
+    }
+
+    public void setRateLimitRatio(double rateLimitRatio) {
+        if (rateLimitRatio < 0 || rateLimitRatio > 1) {
+            throw new IllegalArgumentException("Expect rateLimitRatio between 0 and 1: " + rateLimitRatio);
+        }
+        this.rateLimitRatio = rateLimitRatio;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        if (retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("Expect non negative retryAfterSeconds: " + retryAfterSeconds);
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,42 @@
+package de.adventofcode.chrisgw.notifier.benchmark.loadtest;
+
+import java.util.Arrays;
+
+
+/**
+ * Collects latencies in milliseconds into a growing primitive array, sorted once for the report.
+ */
+class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int size;
+
+
+    synchronized void record(long[] latenciesMillis) {
+        if (size + latenciesMillis.length > latencies.length) {
+            latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, size + latenciesMillis.length));
+        }
+        System.arraycopy(latenciesMillis, 0, latencies, size, latenciesMillis.length);
+        size += latenciesMillis.length;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param quantiles e.g. {@code 0.5} for the median, {@code 1} for the maximum
+     * @return the nearest rank latency of each quantile, all 0 if nothing was recorded
+     */
+    synchronized long[] quantiles(double... quantiles) {
+        long[] sortedLatencies = Arrays.copyOf(latencies, size);
+        Arrays.sort(sortedLatencies);
+        long[] quantileLatencies = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length && size > 0; i++) {
+            int rank = (int) Math.ceil(quantiles[i] * size);
+            quantileLatencies[i] = sortedLatencies[Math.min(size, Math.max(1, rank)) - 1];
+        }
+        return quantileLatencies;
+    }
+
+}
@@ -0,0 +1,162 @@
+package de.adventofcode.chrisgw.notifier.benchmark.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.AocLeaderboardNotifierConfig;
+import de.adventofcode.chrisgw.notifier.http.JdkHttpTransport;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar;
+import de.adventofcode.chrisgw.notifier.model.BoardRegistration;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.model.WebhookRoute;
+import de.adventofcode.chrisgw.notifier.service.*;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
+import de.adventofcode.chrisgw.notifier.store.SolveTimeStatistics;
+import de.adventofcode.chrisgw.notifier.store.StarEventHistory;
+import io.reactivex.disposables.Disposable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * End-to-end load test on a single machine without network access: drives {@code boards} leaderboards of an
+ * {@link AocStubServer} through {@link AocLeaderboardService}, {@link AocLeaderboardNotifier} and the Slack and
+ * Discord message services, then reports the throughput and the star-to-webhook latency. The settings are system
+ * properties, e.g.
+ * <pre>
+ * java -Dboards=500 -DdurationSeconds=120 -DrateLimitRatio=0.05 \
+ *     -cp target/benchmarks.jar de.adventofcode.chrisgw.notifier.benchmark.loadtest.LoadTestRunner
+ * </pre>
+ * The boards are polled every {@code pollIntervalMillis} instead of the unlock calendar and the state is stored in a
+ * temporary directory.
+ */
+public class LoadTestRunner {
+
+    private static final long FIRST_LEADERBOARD_ID = 100_000;
+
+
+    public static void main(String[] args) throws Exception {
+        int boardCount = Integer.getInteger("boards", 100);
+        long durationSeconds = Long.getLong("durationSeconds", 60);
+        long drainSeconds = Long.getLong("drainSeconds", 30);
+
+        AocStubServer stubServer = new AocStubServer();
+        stubServer.setMemberCount(Integer.getInteger("membersPerBoard", 50));
+        stubServer.setMeanStarIntervalMillis(Long.getLong("starIntervalMillis", 5_000));
+        stubServer.setWebhookLatencyMillis(Long.getLong("webhookLatencyMillis", 100));
+        stubServer.setRateLimitRatio(Double.parseDouble(System.getProperty("rateLimitRatio", "0.02")));
+        stubServer.setRetryAfterSeconds(Integer.getInteger("retryAfterSeconds", 1));
+        stubServer.start();
+
+        Path storeDirectory = Files.createTempDirectory("aoc-load-test");
+        Notifier notifier = new Notifier(stubServer.adventOfCodeUrl(), storeDirectory);
+        int year = AdventOfCodeCalendar.currentEventYear(Instant.now());
+        List<Disposable> registrations = new ArrayList<>();
+        for (int i = 0; i < boardCount; i++) {
+            long leaderboardId = FIRST_LEADERBOARD_ID + i;
+            stubServer.addLeaderboard(year, leaderboardId);
+            WebhookRoute.Type webhookType = i % 2 == 0 ? WebhookRoute.Type.SLACK : WebhookRoute.Type.DISCORD;
+            WebhookRoute webhookRoute = new WebhookRoute(webhookType, stubServer.webhookUrl(leaderboardId));
+            registrations.add(notifier.leaderboardNotifier.subscribeLeaderboard(new BoardRegistration(
+                    new LeaderboardKey(year, leaderboardId), null, List.of(webhookRoute))));
+        }
+        System.out.printf("load test with %d boards for %d s on %s%n", boardCount, durationSeconds,
+                stubServer.adventOfCodeUrl());
+
+        long startNanos = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        registrations.forEach(Disposable::dispose);
+        long grantedStarCount = stubServer.grantedStarCount();
+        double runSeconds = (System.nanoTime() - startNanos) / 1e9;
+        long drainDeadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        while (notifier.pendingMessageCount() > 0 && System.nanoTime() < drainDeadlineNanos) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        report(stubServer, notifier, runSeconds, grantedStarCount);
+        notifier.shutdown();
+        stubServer.stop();
+    }
+
+    private static void report(AocStubServer stubServer, Notifier notifier, double runSeconds,
+            long grantedStarCount) {
+        long deliveredStarCount = stubServer.deliveredStarCount();
+        System.out.printf("leaderboard requests: %d (%.1f/s)%n", stubServer.leaderboardRequests(),
+                stubServer.leaderboardRequests() / runSeconds);
+        System.out.printf("webhook posts:        %d (%.1f/s), %d answered with 429%n", stubServer.webhookPosts(),
+                stubServer.webhookPosts() / runSeconds, stubServer.rateLimitedPosts());
+        System.out.printf("stars delivered:      %d of %d served, %d granted (%.1f/s)%n", deliveredStarCount,
+                stubServer.servedStarCount(), grantedStarCount, deliveredStarCount / runSeconds);
+        System.out.printf("webhook retries:      %d, dropped %d, still pending %d%n",
+                notifier.webhookDeliveryService.retryCount(), notifier.webhookDeliveryService.droppedCount(),
+                notifier.pendingMessageCount());
+        long[] latencies = stubServer.starToWebhookLatencies().quantiles(0.5, 0.9, 0.99, 1);
+        System.out.printf("star-to-webhook ms:   p50 %d, p90 %d, p99 %d, max %d%n", latencies[0], latencies[1],
+                latencies[2], latencies[3]);
+    }
+
+
+    /**
+     * The notifier services wired by hand, without the properties file the application context needs.
+     */
+    private static class Notifier {
+
+        private final JdkHttpTransport httpTransport;
+        private final LeaderboardPollScheduler pollScheduler;
+        private final WebhookDeliveryService webhookDeliveryService;
+        private final LeaderboardMessageDispatcher messageDispatcher;
+        private final LeaderboardStore leaderboardStore;
+        private final AocLeaderboardNotifier leaderboardNotifier;
+
+
+        private Notifier(String adventOfCodeUrl, Path storeDirectory) {
+            NotifierMetrics metrics = new NotifierMetrics();
+            ObjectMapper om = new AocLeaderboardNotifierConfig().objectMapper();
+            httpTransport = new JdkHttpTransport(metrics);
+
+            AocLeaderboardService leaderboardService = new AocLeaderboardService(httpTransport, om,
+                    new MemberDirectory(om, metrics), metrics);
+            leaderboardService.setAdventOfCodeUrl(adventOfCodeUrl);
+            leaderboardService.setSessionIdCookie("load-test");
+
+            pollScheduler = new LeaderboardPollScheduler();
+            pollScheduler.setFixedPollIntervalMillis(Long.getLong("pollIntervalMillis", 1_000));
+            pollScheduler.setRequestsPerSecond(Double.parseDouble(System.getProperty("aocRequestsPerSecond",
+                    "1000")));
+            pollScheduler.setMinRetryBackoffSeconds(1);
+
+            webhookDeliveryService = new WebhookDeliveryService(metrics);
+            messageDispatcher = new LeaderboardMessageDispatcher(metrics);
+            messageDispatcher.setMessageServices(List.of(
+                    new AocSlackMessageService(httpTransport, om, webhookDeliveryService),
+                    new AocDiscordMessageService(httpTransport, om, webhookDeliveryService)));
+
+            leaderboardStore = new LeaderboardStore(om);
+            leaderboardStore.setStoreDirectory(storeDirectory.toString());
+            leaderboardNotifier = new AocLeaderboardNotifier(leaderboardService, pollScheduler, messageDispatcher,
+                    leaderboardStore, new StarEventHistory(leaderboardStore), new SolveTimeStatistics(leaderboardStore),
+                    new SessionCircuitBreaker(metrics), metrics);
+        }
+
+
+        private int pendingMessageCount() {
+            return messageDispatcher.queueDepths().values().stream().mapToInt(Integer::intValue).sum()
+                    + webhookDeliveryService.pendingMessageCount();
+        }
+
+        private void shutdown() throws InterruptedException {
+            leaderboardNotifier.shutdown();
+            pollScheduler.shutdown();
+            messageDispatcher.shutdown();
+            webhookDeliveryService.shutdown();
+            leaderboardStore.shutdown();
+            httpTransport.shutdown();
+        }
+
+    }
+
+}
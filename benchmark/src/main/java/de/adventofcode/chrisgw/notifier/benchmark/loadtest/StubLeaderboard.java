@@ -0,0 +1,159 @@
+package de.adventofcode.chrisgw.notifier.benchmark.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_LEVELS;
+
+
+/**
+ * Synthetic private leaderboard whose members earn stars while the load test runs. The stars are a Poisson process
+ * with the mean star interval, each star goes to a random member who has not finished every day yet. Stars are
+ * granted lazily whenever the board is read, so the board needs no timer.
+ * <p>
+ * The board remembers how many stars the last served JSON contained. A webhook for the board delivers every star
+ * served since the previous webhook, which gives the star-to-webhook latency.
+ */
+class StubLeaderboard {
+
+    private static final int MAX_STARS = DAY_TASK_COUNT * DAY_TASK_LEVELS;
+
+    private final int year;
+    private final long leaderboardId;
+    private final int memberCount;
+    private final long meanStarIntervalMillis;
+    private final Random random;
+
+    private final int[] memberStars;
+    private final int[] memberLocalScores;
+    private final long[][] memberStarTs;
+    private final int[] finishedMemberCounts = new int[MAX_STARS];
+    private long[] grantMillis = new long[64];
+    private int grantedStarCount;
+    private int servedStarCount;
+    private int deliveredStarCount;
+    private long nextGrantMillis;
+
+
+    StubLeaderboard(int year, long leaderboardId, int memberCount, long meanStarIntervalMillis, long startMillis) {
+        this.year = year;
+        this.leaderboardId = leaderboardId;
+        this.memberCount = memberCount;
+        this.meanStarIntervalMillis = meanStarIntervalMillis;
+        this.random = new Random(leaderboardId);
+        this.memberStars = new int[memberCount];
+        this.memberLocalScores = new int[memberCount];
+        this.memberStarTs = new long[memberCount][MAX_STARS];
+        this.nextGrantMillis = startMillis + nextStarIntervalMillis();
+    }
+
+
+    synchronized byte[] serveJson(long nowMillis) {
+        grantStarsUntil(nowMillis);
+        servedStarCount = grantedStarCount;
+        return toJson();
+    }
+
+    /**
+     * @return the star-to-webhook latencies in milliseconds of the stars served since the last delivery
+     */
+    synchronized long[] deliver(long nowMillis) {
+        long[] latencies = new long[servedStarCount - deliveredStarCount];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = nowMillis - grantMillis[deliveredStarCount + i];
+        }
+        deliveredStarCount = servedStarCount;
+        return latencies;
+    }
+
+    synchronized int grantedStarCount(long nowMillis) {
+        grantStarsUntil(nowMillis);
+        return grantedStarCount;
+    }
+
+    synchronized int servedStarCount() {
+        return servedStarCount;
+    }
+
+    synchronized int deliveredStarCount() {
+        return deliveredStarCount;
+    }
+
+
+    private void grantStarsUntil(long nowMillis) {
+        while (nextGrantMillis <= nowMillis && grantedStarCount < memberCount * MAX_STARS) {
+            grantStar(nextGrantMillis);
+            nextGrantMillis += nextStarIntervalMillis();
+        }
+    }
+
+    private void grantStar(long starMillis) {
+        int memberIndex = random.nextInt(memberCount);
+        while (memberStars[memberIndex] == MAX_STARS) {
+            memberIndex = (memberIndex + 1) % memberCount;
+        }
+        int starIndex = memberStars[memberIndex]++;
+        memberStarTs[memberIndex][starIndex] = starMillis / 1000;
+        memberLocalScores[memberIndex] += memberCount - finishedMemberCounts[starIndex]++;
+
+        if (grantedStarCount == grantMillis.length) {
+            grantMillis = Arrays.copyOf(grantMillis, grantMillis.length * 2);
+        }
+        grantMillis[grantedStarCount++] = starMillis;
+    }
+
+    private long nextStarIntervalMillis() {
+        return Math.max(1, (long) (-Math.log(1 - random.nextDouble()) * meanStarIntervalMillis));
+    }
+
+
+    private byte[] toJson() {
+        StringBuilder sb = new StringBuilder(128 + memberCount * 160 + grantedStarCount * 40);
+        sb.append("{\"event\":\"").append(year).append("\",\"owner_id\":").append(memberId(0));
+        sb.append(",\"members\":{");
+        for (int memberIndex = 0; memberIndex < memberCount; memberIndex++) {
+            if (memberIndex > 0) {
+                sb.append(',');
+            }
+            appendMember(sb, memberIndex);
+        }
+        sb.append("}}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendMember(StringBuilder sb, int memberIndex) {
+        long memberId = memberId(memberIndex);
+        int stars = memberStars[memberIndex];
+        long[] starTs = memberStarTs[memberIndex];
+        sb.append('"').append(memberId).append("\":{");
+        sb.append("\"id\":").append(memberId);
+        sb.append(",\"name\":\"member ").append(memberId).append('"');
+        sb.append(",\"stars\":").append(stars);
+        sb.append(",\"local_score\":").append(memberLocalScores[memberIndex]);
+        sb.append(",\"global_score\":0");
+        sb.append(",\"last_star_ts\":").append(stars == 0 ? 0 : starTs[stars - 1]);
+        sb.append(",\"completion_day_level\":{");
+        for (int starIndex = 0; starIndex < stars; starIndex += DAY_TASK_LEVELS) {
+            if (starIndex > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(starIndex / DAY_TASK_LEVELS + 1).append("\":{");
+            for (int level = 1; level <= DAY_TASK_LEVELS && starIndex + level <= stars; level++) {
+                if (level > 1) {
+                    sb.append(',');
+                }
+                sb.append('"').append(level).append("\":{\"get_star_ts\":").append(starTs[starIndex + level - 1])
+                        .append('}');
+            }
+            sb.append('}');
+        }
+        sb.append("}}");
+    }
+
+    private long memberId(int memberIndex) {
+        return leaderboardId * 10_000 + memberIndex;
+    }
+
+}
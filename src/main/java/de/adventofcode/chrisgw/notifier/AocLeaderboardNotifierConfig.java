@@ -4,57 +4,124 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.introspect.VisibilityChecker.Std;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.adventofcode.chrisgw.notifier.cluster.ClusterNode;
+import de.adventofcode.chrisgw.notifier.http.HttpTransport;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.registry.BoardRegistryWatcher;
 import de.adventofcode.chrisgw.notifier.service.AocLeaderboardNotifier;
 import de.adventofcode.chrisgw.notifier.service.AocLeaderboardService;
 import de.adventofcode.chrisgw.notifier.service.AocSlackMessageService;
+import de.adventofcode.chrisgw.notifier.service.LeaderboardBackfill;
+import de.adventofcode.chrisgw.notifier.service.LeaderboardBackfill.Outcome;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
 import io.reactivex.disposables.Disposable;
-import org.glassfish.jersey.jackson.internal.jackson.jaxrs.json.JacksonJaxbJsonProvider;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.ConfigurableEnvironment;
 
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.*;
 
 
 @Configuration
-@ComponentScan(basePackageClasses = { AocLeaderboardService.class, AocSlackMessageService.class })
+@ComponentScan(basePackageClasses = { AocLeaderboardService.class, AocSlackMessageService.class,
+        LeaderboardStore.class, NotifierMetrics.class, HttpTransport.class, BoardRegistryWatcher.class,
+        ClusterNode.class })
 @PropertySource("file:advent-of-code.properties")
 public class AocLeaderboardNotifierConfig {
 
 
-    public static void main(String[] args) {
+    /**
+     * Watches the {@code leaderboardId} boards until Enter is pressed, or runs headless until the process is
+     * terminated if a {@code boardRegistryFile} is configured. With a {@code clusterDirectory} only registry boards
+     * are watched. {@code backfill [leaderboardId...]} instead stores every event year of the given or the
+     * {@code leaderboardId} boards once and exits. It refuses to run while a daemon uses the store, the daemon
+     * backfills the registry boards marked with {@code backfill} itself.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && "backfill".equals(args[0])) {
+            backfill(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         ConfigurableApplicationContext applicationContext = new AnnotationConfigApplicationContext(
                 AocLeaderboardNotifierConfig.class);
         ConfigurableEnvironment environment = applicationContext.getEnvironment();
 
         AocLeaderboardNotifier aocLeaderboardNotifier = applicationContext.getBean(AocLeaderboardNotifier.class);
-        if (!environment.containsProperty("leaderboardId")) {
-            throw new IllegalArgumentException("leaderboardId was unset");
+        BoardRegistryWatcher boardRegistryWatcher = applicationContext.getBean(BoardRegistryWatcher.class);
+        ClusterNode clusterNode = applicationContext.getBean(ClusterNode.class);
+        if (!environment.containsProperty("leaderboardId") && !boardRegistryWatcher.isEnabled()) {
+            throw new IllegalArgumentException("leaderboardId and boardRegistryFile were unset");
+        }
+        if (environment.containsProperty("leaderboardId") && clusterNode.isEnabled()) {
+            // every node would poll and announce them, only registry boards are split between the nodes
+            throw new IllegalArgumentException("leaderboardId is not supported with clusterDirectory, "
+                    + "register the boards in the boardRegistryFile");
         }
-        long leaderboardId = environment.getRequiredProperty("leaderboardId", Long.class);
         int year = environment.getProperty("year", Integer.class, LocalDate.now().getYear());
+        List<LeaderboardKey> leaderboardKeys = new ArrayList<>();
+        for (long leaderboardId : environment.getProperty("leaderboardId", long[].class, new long[0])) {
+            leaderboardKeys.add(new LeaderboardKey(year, leaderboardId));
+        }
 
-        System.out.println("Watching leaderboard with ID: " + leaderboardId);
-        Disposable disposable = aocLeaderboardNotifier.subscribeLeaderboard(year, leaderboardId);
+        if (!leaderboardKeys.isEmpty()) {
+            System.out.println("Watching leaderboards: " + leaderboardKeys);
+        }
+        Map<LeaderboardKey, Disposable> registrations = aocLeaderboardNotifier.subscribeLeaderboards(leaderboardKeys);
+        if (boardRegistryWatcher.isEnabled()) {
+            CountDownLatch terminated = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                applicationContext.close();
+                terminated.countDown();
+            }, "aoc-shutdown"));
+            System.out.println("Running as daemon with " + boardRegistryWatcher.registeredBoardCount()
+                    + " registry boards");
+            terminated.await(); // block until terminated
+            return;
+        }
         System.out.println("Press Enter to finish");
         new Scanner(System.in).nextLine(); // block until enter
-        disposable.dispose();
+        registrations.values().forEach(Disposable::dispose);
         System.out.println("finished");
     }
 
 
-    @Bean(destroyMethod = "close")
-    public Client client(ObjectMapper objectMapper) {
-        return ClientBuilder.newClient()
-                .register(new JacksonJaxbJsonProvider(objectMapper, JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS))
-                .register(objectMapper);
+    private static void backfill(String[] leaderboardIds) {
+        System.setProperty("boardRegistryFile", ""); // one-shot, registry boards are not polled
+        System.setProperty("metricsPort", "0");
+        boolean failed = false;
+        try (ConfigurableApplicationContext applicationContext = new AnnotationConfigApplicationContext(
+                AocLeaderboardNotifierConfig.class)) {
+            long[] backfillLeaderboardIds = leaderboardIds.length > 0
+                    ? Arrays.stream(leaderboardIds).mapToLong(Long::parseLong).toArray()
+                    : applicationContext.getEnvironment().getProperty("leaderboardId", long[].class, new long[0]);
+            if (backfillLeaderboardIds.length == 0) {
+                throw new IllegalArgumentException("leaderboardId was unset and no leaderboardId was given");
+            }
+            // fails fast while a daemon holds the store, its own scheduler would double the Advent of Code requests
+            applicationContext.getBean(LeaderboardStore.class).leaderboardCount();
+            LeaderboardBackfill leaderboardBackfill = applicationContext.getBean(LeaderboardBackfill.class);
+            for (long leaderboardId : backfillLeaderboardIds) {
+                Map<LeaderboardKey, Outcome> outcomes = leaderboardBackfill.backfill(leaderboardId, null);
+                outcomes.forEach((leaderboardKey, outcome) -> System.out.println(leaderboardKey + ": " + outcome));
+                failed |= outcomes.containsValue(Outcome.FAILED);
+            }
+        }
+        if (failed) {
+            System.out.println("backfill incomplete, run again to retry the failed years");
+            System.exit(1);
+        }
     }
 
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper om = new ObjectMapper();
@@ -0,0 +1,459 @@
+package de.adventofcode.chrisgw.notifier.cluster;
+
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+
+/**
+ * Splits the registered leaderboards between the notifier nodes sharing a {@code clusterDirectory}, without any
+ * coordination service. Every node renews its node lease in {@code nodes/} each heartbeat, the live nodes form a
+ * {@link ConsistentHashRing} which decides the owner of each board.
+ * <p>
+ * The leases of a board in {@code boards/} are numbered. A node takes a board by creating the lease with the next
+ * number, once the highest lease was released or its holder's node lease expired. Leases are created exclusively, so
+ * of the nodes claiming a board with an outdated ring only one gets the number, and a node owns a board only while
+ * its lease is the highest one. Boards which move to another node are released first, their lease is deleted once
+ * their last saves and handover files are written, the new owner picks them up on its next heartbeat.
+ * <p>
+ * A node which can not renew its node lease gives up all boards before the lease expires. Node leases hold wall
+ * clock times, the clocks of the nodes must be roughly in sync. A {@code clusterDirectory} which is unset disables
+ * the cluster, the node then owns every board. A node only joins once it was given the boards, so a process without
+ * a board registry, e.g. a backfill, never takes a share of the boards.
+ */
+@Slf4j
+@Service
+public class ClusterNode {
+
+    static final String NODE_DIRECTORY_NAME = "nodes";
+    static final String BOARD_DIRECTORY_NAME = "boards";
+    static final String NODE_LEASE_SUFFIX = ".node";
+    static final String BOARD_LEASE_SUFFIX = ".lease";
+
+    private static final Pattern NODE_ID_PATTERN = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final Pattern BOARD_LEASE_PATTERN = Pattern.compile("(\\d+)-(\\d+)\\.(\\d+)"
+            + Pattern.quote(BOARD_LEASE_SUFFIX));
+
+    private final LeaderboardStore leaderboardStore;
+    private final Set<LeaderboardKey> boards = ConcurrentHashMap.newKeySet();
+    /** number of the lease of each owned board */
+    private final Map<LeaderboardKey, Long> ownedBoards = new ConcurrentHashMap<>();
+    private final List<Runnable> ownershipListeners = new CopyOnWriteArrayList<>();
+
+    private Path clusterDirectory;
+    private String nodeId = defaultNodeId();
+    private long leaseTtlMillis = 15_000;
+    private long heartbeatMillis = 5_000;
+    private int virtualNodeCount = 64;
+
+    private volatile List<String> liveNodeIds = List.of();
+    private long nodeLeaseExpiryMillis;
+    private volatile ScheduledExecutorService heartbeatExecutor;
+
+
+    @Inject
+    public ClusterNode(LeaderboardStore leaderboardStore, NotifierMetrics metrics) {
+        this.leaderboardStore = Objects.requireNonNull(leaderboardStore);
+        metrics.gauge("cluster_live_nodes", "Notifier nodes with a live node lease", () -> liveNodeIds.size());
+        metrics.gauge("cluster_owned_boards", "Leaderboards owned by this node", ownedBoards::size);
+    }
+
+
+    public boolean isEnabled() {
+        return clusterDirectory != null;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean owns(LeaderboardKey leaderboardKey) {
+        return clusterDirectory == null || ownedBoards.containsKey(leaderboardKey);
+    }
+
+    public Set<LeaderboardKey> ownedBoards() {
+        return Set.copyOf(ownedBoards.keySet());
+    }
+
+    public List<String> liveNodeIds() {
+        return liveNodeIds;
+    }
+
+    /**
+     * Replaces the boards split between the nodes, each node must be given the same boards.
+     */
+    public void setBoards(Collection<LeaderboardKey> leaderboardKeys) {
+        boards.retainAll(leaderboardKeys);
+        boards.addAll(leaderboardKeys);
+        ensureStarted();
+        requestHeartbeat();
+    }
+
+    /**
+     * The listener runs on the heartbeat thread whenever boards were taken or released.
+     */
+    public void addOwnershipListener(Runnable ownershipListener) {
+        ownershipListeners.add(Objects.requireNonNull(ownershipListener));
+    }
+
+
+    private synchronized void ensureStarted() {
+        if (clusterDirectory == null || heartbeatExecutor != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(clusterDirectory.resolve(NODE_DIRECTORY_NAME));
+            Files.createDirectories(clusterDirectory.resolve(BOARD_DIRECTORY_NAME));
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not create cluster directory " + clusterDirectory, e);
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder() //
+                .namingPattern("aoc-cluster")
+                .daemon(true)
+                .build());
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+        log.info("join cluster {} as node {}", clusterDirectory, nodeId);
+    }
+
+    /**
+     * Deletes the leases of this node, so the other nodes take over its boards on their next heartbeat instead of
+     * waiting for the leases to expire.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (heartbeatExecutor == null) {
+            return;
+        }
+        heartbeatExecutor.shutdownNow();
+        heartbeatExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        heartbeatExecutor = null;
+        Set<LeaderboardKey> releasedBoards = Set.copyOf(ownedBoards.keySet());
+        releaseBoards(releasedBoards);
+        deleteIfExists(nodeLeaseFile(nodeId));
+        log.info("leave cluster {}, released {} boards", clusterDirectory, releasedBoards.size());
+    }
+
+    private void requestHeartbeat() {
+        ScheduledExecutorService currentHeartbeatExecutor = heartbeatExecutor;
+        try {
+            if (currentHeartbeatExecutor != null) {
+                currentHeartbeatExecutor.execute(this::heartbeat);
+            }
+        } catch (RejectedExecutionException e) {
+            log.debug("cluster node {} is stopping", nodeId);
+        }
+    }
+
+
+    private void heartbeat() {
+        long nowMillis = System.currentTimeMillis();
+        try {
+            renewNodeLease(nowMillis);
+            List<String> currentLiveNodeIds = readLiveNodeIds(nowMillis);
+            liveNodeIds = currentLiveNodeIds;
+            ConsistentHashRing ring = new ConsistentHashRing(currentLiveNodeIds, virtualNodeCount);
+            rebalance(ring, currentLiveNodeIds);
+        } catch (IOException | RuntimeException e) {
+            log.error("cluster heartbeat of node {} failed", nodeId, e);
+            if (nowMillis + heartbeatMillis >= nodeLeaseExpiryMillis && !ownedBoards.isEmpty()) {
+                log.warn("node lease of {} is about to expire, give up {} boards", nodeId, ownedBoards.size());
+                ownedBoards.clear();
+                notifyOwnershipListeners();
+            }
+        }
+    }
+
+    private void renewNodeLease(long nowMillis) throws IOException {
+        long expiryMillis = nowMillis + leaseTtlMillis;
+        writeAtomically(nodeLeaseFile(nodeId), String.valueOf(expiryMillis));
+        nodeLeaseExpiryMillis = expiryMillis;
+    }
+
+    private List<String> readLiveNodeIds(long nowMillis) throws IOException {
+        List<String> currentLiveNodeIds = new ArrayList<>();
+        try (Stream<Path> nodeLeaseFiles = Files.list(clusterDirectory.resolve(NODE_DIRECTORY_NAME))) {
+            for (Path nodeLeaseFile : (Iterable<Path>) nodeLeaseFiles::iterator) {
+                String fileName = nodeLeaseFile.getFileName().toString();
+                if (!fileName.endsWith(NODE_LEASE_SUFFIX)) {
+                    continue;
+                }
+                String leaseNodeId = fileName.substring(0, fileName.length() - NODE_LEASE_SUFFIX.length());
+                long expiryMillis = readNodeLeaseExpiry(nodeLeaseFile);
+                if (expiryMillis > nowMillis) {
+                    currentLiveNodeIds.add(leaseNodeId);
+                } else if (expiryMillis + 10 * leaseTtlMillis < nowMillis) {
+                    log.info("remove node lease of {} which expired at {}", leaseNodeId, expiryMillis);
+                    deleteIfExists(nodeLeaseFile);
+                }
+            }
+        }
+        Collections.sort(currentLiveNodeIds);
+        return List.copyOf(currentLiveNodeIds);
+    }
+
+    private void rebalance(ConsistentHashRing ring, List<String> currentLiveNodeIds) throws IOException {
+        Map<LeaderboardKey, NavigableMap<Long, Path>> boardLeases = listBoardLeases();
+        Set<LeaderboardKey> releasedBoards = new HashSet<>();
+        for (Map.Entry<LeaderboardKey, Long> ownedBoard : ownedBoards.entrySet()) {
+            LeaderboardKey board = ownedBoard.getKey();
+            boolean stillOwned = boards.contains(board) && nodeId.equals(ring.ownerOf(board))
+                    && ownedBoard.getValue().equals(highestLeaseNumber(boardLeases.get(board)))
+                    && nodeId.equals(readBoardLeaseHolder(boardLeaseFile(board, ownedBoard.getValue())));
+            if (!stillOwned) {
+                releasedBoards.add(board);
+            }
+        }
+        releaseBoards(releasedBoards);
+
+        Map<LeaderboardKey, Long> claimedBoards = new HashMap<>();
+        for (LeaderboardKey board : boards) {
+            if (ownedBoards.containsKey(board) || !nodeId.equals(ring.ownerOf(board))) {
+                continue;
+            }
+            NavigableMap<Long, Path> leases = boardLeases.get(board);
+            String leaseHolder = leases == null ? null : readBoardLeaseHolder(leases.lastEntry().getValue());
+            if (leaseHolder == null || leaseHolder.equals(nodeId) || !currentLiveNodeIds.contains(leaseHolder)) {
+                long leaseNumber = leases == null ? 1 : leases.lastKey() + 1;
+                if (createBoardLease(board, leaseNumber)) {
+                    claimedBoards.put(board, leaseNumber);
+                }
+            }
+        }
+        if (claimedBoards.isEmpty()) {
+            return;
+        }
+
+        // a node with an outdated ring may have claimed the board with a lower number in the meantime
+        Map<LeaderboardKey, NavigableMap<Long, Path>> claimedBoardLeases = listBoardLeases();
+        int takenCount = 0;
+        for (Map.Entry<LeaderboardKey, Long> claimedBoard : claimedBoards.entrySet()) {
+            LeaderboardKey board = claimedBoard.getKey();
+            NavigableMap<Long, Path> leases = claimedBoardLeases.get(board);
+            if (claimedBoard.getValue().equals(highestLeaseNumber(leases))) {
+                ownedBoards.put(board, claimedBoard.getValue());
+                leases.headMap(claimedBoard.getValue()).values().forEach(ClusterNode::deleteIfExists);
+                takenCount++;
+            } else {
+                deleteIfExists(boardLeaseFile(board, claimedBoard.getValue()));
+            }
+        }
+        if (takenCount > 0) {
+            log.info("node {} took {} boards, owns {} of {} boards on {} nodes", nodeId, takenCount,
+                    ownedBoards.size(), boards.size(), currentLiveNodeIds.size());
+            notifyOwnershipListeners();
+        }
+    }
+
+    /**
+     * Stops the local subscriptions first and waits for the last saves of the boards, the lease is deleted only
+     * afterwards, so two nodes never poll the same board at once and the new owner continues from the handover file.
+     */
+    private void releaseBoards(Set<LeaderboardKey> releasedBoards) {
+        if (releasedBoards.isEmpty()) {
+            return;
+        }
+        Map<LeaderboardKey, Long> releasedLeaseNumbers = new HashMap<>();
+        for (LeaderboardKey releasedBoard : releasedBoards) {
+            Long leaseNumber = ownedBoards.remove(releasedBoard);
+            if (leaseNumber != null) {
+                releasedLeaseNumbers.put(releasedBoard, leaseNumber);
+            }
+        }
+        notifyOwnershipListeners();
+        awaitPendingSaves(releasedLeaseNumbers.keySet());
+        releasedLeaseNumbers.forEach((releasedBoard, leaseNumber) -> {
+            Path boardLeaseFile = boardLeaseFile(releasedBoard, leaseNumber);
+            try {
+                if (nodeId.equals(readBoardLeaseHolder(boardLeaseFile))) {
+                    deleteIfExists(boardLeaseFile);
+                }
+            } catch (IOException e) {
+                log.warn("could not release board lease of {}: {}", releasedBoard, e.toString());
+            }
+        });
+        log.info("node {} released {} boards, owns {} boards", nodeId, releasedBoards.size(), ownedBoards.size());
+    }
+
+    /**
+     * Waits at most until shortly before the node lease expires, the boards are taken over by then anyway.
+     */
+    private void awaitPendingSaves(Set<LeaderboardKey> releasedBoards) {
+        CompletableFuture<?>[] pendingSaves = releasedBoards.stream()
+                .map(leaderboardStore::flush)
+                .toArray(CompletableFuture[]::new);
+        long waitMillis = Math.max(0, nodeLeaseExpiryMillis - System.currentTimeMillis() - heartbeatMillis);
+        try {
+            CompletableFuture.allOf(pendingSaves).get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("release {} boards before their last saves were written: {}", releasedBoards.size(),
+                    e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void notifyOwnershipListeners() {
+        for (Runnable ownershipListener : ownershipListeners) {
+            try {
+                ownershipListener.run();
+            } catch (RuntimeException e) {
+                log.error("board ownership listener failed", e);
+            }
+        }
+    }
+
+
+    private Path nodeLeaseFile(String leaseNodeId) {
+        return clusterDirectory.resolve(NODE_DIRECTORY_NAME).resolve(leaseNodeId + NODE_LEASE_SUFFIX);
+    }
+
+    private Path boardLeaseFile(LeaderboardKey leaderboardKey, long leaseNumber) {
+        return clusterDirectory.resolve(BOARD_DIRECTORY_NAME)
+                .resolve(leaderboardKey.getYear() + "-" + leaderboardKey.getLeaderboardId() + "." + leaseNumber
+                        + BOARD_LEASE_SUFFIX);
+    }
+
+    /**
+     * @return the lease files of each board by their number
+     */
+    private Map<LeaderboardKey, NavigableMap<Long, Path>> listBoardLeases() throws IOException {
+        Map<LeaderboardKey, NavigableMap<Long, Path>> boardLeases = new HashMap<>();
+        try (Stream<Path> boardLeaseFiles = Files.list(clusterDirectory.resolve(BOARD_DIRECTORY_NAME))) {
+            for (Path boardLeaseFile : (Iterable<Path>) boardLeaseFiles::iterator) {
+                Matcher boardLeaseMatcher = BOARD_LEASE_PATTERN.matcher(boardLeaseFile.getFileName().toString());
+                if (boardLeaseMatcher.matches()) {
+                    LeaderboardKey board = new LeaderboardKey(Integer.parseInt(boardLeaseMatcher.group(1)),
+                            Long.parseLong(boardLeaseMatcher.group(2)));
+                    boardLeases.computeIfAbsent(board, key -> new TreeMap<>())
+                            .put(Long.parseLong(boardLeaseMatcher.group(3)), boardLeaseFile);
+                }
+            }
+        }
+        return boardLeases;
+    }
+
+    private static Long highestLeaseNumber(NavigableMap<Long, Path> leases) {
+        return leases == null || leases.isEmpty() ? null : leases.lastKey();
+    }
+
+    private long readNodeLeaseExpiry(Path nodeLeaseFile) {
+        try {
+            return Long.parseLong(Files.readString(nodeLeaseFile, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return Long.MIN_VALUE; // deleted meanwhile or half written by a non atomic file system
+        }
+    }
+
+    private String readBoardLeaseHolder(Path boardLeaseFile) throws IOException {
+        try {
+            return StringUtils.trimToNull(Files.readString(boardLeaseFile, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Links the written lease in place, which fails if the lease exists, so readers never see a half written lease
+     * and of the nodes creating the same lease only one succeeds.
+     */
+    private boolean createBoardLease(LeaderboardKey leaderboardKey, long leaseNumber) throws IOException {
+        Path boardLeaseFile = boardLeaseFile(leaderboardKey, leaseNumber);
+        Path tmpFile = boardLeaseFile.resolveSibling(boardLeaseFile.getFileName() + "." + nodeId + ".tmp");
+        Files.writeString(tmpFile, nodeId, StandardCharsets.UTF_8);
+        try {
+            Files.createLink(boardLeaseFile, tmpFile);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            deleteIfExists(tmpFile);
+        }
+    }
+
+    private void writeAtomically(Path file, String content) throws IOException {
+        Path tmpFile = file.resolveSibling(file.getFileName() + "." + nodeId + ".tmp");
+        Files.writeString(tmpFile, content, StandardCharsets.UTF_8);
+        Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void deleteIfExists(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("could not delete {}: {}", file, e.toString());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            hostName = "localhost";
+        }
+        return hostName.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + ProcessHandle.current().pid();
+    }
+
+
+    @Value("${clusterDirectory:}")
+    public void setClusterDirectory(String clusterDirectory) {
+        this.clusterDirectory = StringUtils.isBlank(clusterDirectory) ? null : Paths.get(clusterDirectory.trim());
+    }
+
+    @Value("${clusterNodeId:}")
+    public void setNodeId(String nodeId) {
+        if (StringUtils.isBlank(nodeId)) {
+            return;
+        }
+        if (!NODE_ID_PATTERN.matcher(nodeId.trim()).matches()) {
+            throw new IllegalArgumentException("Expect clusterNodeId of letters, digits, '_', '.' or '-': " + nodeId);
+        }
+        this.nodeId = nodeId.trim();
+    }
+
+    @Value("${clusterLeaseTtlMillis:15000}")
+    public void setLeaseTtlMillis(long leaseTtlMillis) {
+        if (leaseTtlMillis <= 0) {
+            throw new IllegalArgumentException("Expect positive clusterLeaseTtlMillis: " + leaseTtlMillis);
+        }
+        this.leaseTtlMillis = leaseTtlMillis;
+    }
+
+    /**
+     * Interval of the lease renewal and rebalancing, must be well below {@code clusterLeaseTtlMillis}.
+     */
+    @Value("${clusterHeartbeatMillis:5000}")
+    public void setHeartbeatMillis(long heartbeatMillis) {
+        if (heartbeatMillis <= 0) {
+            throw new IllegalArgumentException("Expect positive clusterHeartbeatMillis: " + heartbeatMillis);
+        }
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    @Value("${clusterVirtualNodeCount:64}")
+    public void setVirtualNodeCount(int virtualNodeCount) {
+        if (virtualNodeCount <= 0) {
+            throw new IllegalArgumentException("Expect positive clusterVirtualNodeCount: " + virtualNodeCount);
+        }
+        this.virtualNodeCount = virtualNodeCount;
+    }
+
+}
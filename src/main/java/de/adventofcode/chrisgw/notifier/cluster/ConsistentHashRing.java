@@ -0,0 +1,57 @@
+package de.adventofcode.chrisgw.notifier.cluster;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+
+/**
+ * Maps leaderboards to nodes, each node is placed on the ring {@code virtualNodeCount} times. If a node leaves only
+ * its own boards move, spread evenly over the remaining nodes.
+ */
+final class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+
+    ConsistentHashRing(Collection<String> nodeIds, int virtualNodeCount) {
+        for (String nodeId : nodeIds) {
+            for (int virtualNode = 0; virtualNode < virtualNodeCount; virtualNode++) {
+                ring.put(hash(nodeId + "#" + virtualNode), nodeId);
+            }
+        }
+    }
+
+
+    /**
+     * @return the owning node or {@code null} if the ring is empty
+     */
+    String ownerOf(LeaderboardKey leaderboardKey) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(leaderboardKey.toString()));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+
+    /**
+     * FNV-1a followed by the SplitMix64 finalizer, so similar ids like {@code node#1} and {@code node#2} spread over
+     * the whole ring.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+}
@@ -0,0 +1,21 @@
+package de.adventofcode.chrisgw.notifier.http;
+
+/**
+ * A response was received, but with an unexpected status.
+ */
+public class HttpStatusException extends RuntimeException {
+
+    private final int status;
+
+
+    public HttpStatusException(String message, int status) {
+        super(message + ": HTTP " + status);
+        this.status = status;
+    }
+
+
+    public int getStatus() {
+        return status;
+    }
+
+}
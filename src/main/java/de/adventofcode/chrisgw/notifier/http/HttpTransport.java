@@ -0,0 +1,15 @@
+package de.adventofcode.chrisgw.notifier.http;
+
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Sends HTTP requests without blocking the caller. The returned future completes with every response status, it only
+ * completes exceptionally if no response was received, e.g. with an {@link java.io.IOException} on a timeout or a
+ * refused connection.
+ */
+public interface HttpTransport {
+
+    CompletableFuture<HttpTransportResponse> send(HttpTransportRequest request);
+
+}
@@ -0,0 +1,49 @@
+package de.adventofcode.chrisgw.notifier.http;
+
+import lombok.Value;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+
+@Value
+public class HttpTransportRequest {
+
+    String method;
+    URI uri;
+    Map<String, String> headers;
+    byte[] body;
+
+
+    private HttpTransportRequest(String method, URI uri, Map<String, String> headers, byte[] body) {
+        this.method = requireNonNull(method);
+        this.uri = requireNonNull(uri);
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+    }
+
+
+    public static HttpTransportRequest get(URI uri) {
+        return new HttpTransportRequest("GET", uri, Map.of(), null);
+    }
+
+    public static HttpTransportRequest post(URI uri, String contentType, byte[] body) {
+        return new HttpTransportRequest("POST", uri, Map.of("Content-Type", contentType), requireNonNull(body));
+    }
+
+
+    public HttpTransportRequest withHeader(String name, String value) {
+        Map<String, String> newHeaders = new LinkedHashMap<>(headers);
+        newHeaders.put(requireNonNull(name), requireNonNull(value));
+        return new HttpTransportRequest(method, uri, newHeaders, body);
+    }
+
+    public boolean hasHeader(String name) {
+        return headers.keySet().stream().anyMatch(name::equalsIgnoreCase);
+    }
+
+}
@@ -0,0 +1,44 @@
+package de.adventofcode.chrisgw.notifier.http;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+
+@Value
+public class HttpTransportResponse {
+
+    int status;
+    Map<String, List<String>> headers;
+    byte[] body;
+
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * First value of the header, matched case-insensitive, or {@code null}.
+     */
+    public String header(String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    public String bodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+
+    @Override
+    public String toString() {
+        return "HttpTransportResponse(status=" + status + ", bodyLength=" + body.length + ")";
+    }
+
+}
@@ -0,0 +1,297 @@
+package de.adventofcode.chrisgw.notifier.http;
+
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * {@link HttpTransport} on {@link HttpClient}: HTTP/2 with fallback to HTTP/1.1, pooled keep-alive connections and
+ * gzip responses. Requests wait for the response without holding a thread, a small pool only runs the completions.
+ * Each host gets at most {@code httpMaxRequestsPerHost} requests at once, further requests queue without blocking.
+ * <p>
+ * The pool settings are JDK system properties, read when the first client is built, so they only apply if they
+ * were not set on the command line.
+ */
+@Slf4j
+@Service
+public class JdkHttpTransport implements HttpTransport {
+
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    private Duration connectTimeout = Duration.ofMillis(5_000);
+    private Duration requestTimeout = Duration.ofMillis(15_000);
+    private int maxRequestsPerHost = 8;
+    private int threadCount = 2;
+    private int connectionPoolSize = 16;
+    private long keepAliveSeconds = 120;
+
+    private volatile HttpClient httpClient;
+    private ExecutorService executor;
+
+
+    @Inject
+    public JdkHttpTransport(NotifierMetrics metrics) {
+        metrics.gauges("http_requests_in_flight", "HTTP requests waiting for a response", "host",
+                this::requestsInFlight);
+        metrics.gauges("http_requests_queued", "HTTP requests waiting for the per host limit", "host",
+                this::queuedRequests);
+    }
+
+
+    @Override
+    public CompletableFuture<HttpTransportResponse> send(HttpTransportRequest request) {
+        HttpRequest httpRequest = toHttpRequest(request);
+        HttpClient client = httpClient();
+        String host = String.valueOf(request.getUri().getHost());
+        return hostLimiters.computeIfAbsent(host, HostLimiter::new)
+                .submit(() -> client.sendAsync(httpRequest, BodyHandlers.ofByteArray())
+                        .thenApply(JdkHttpTransport::toTransportResponse));
+    }
+
+    private HttpRequest toHttpRequest(HttpTransportRequest request) {
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder(request.getUri()).timeout(requestTimeout);
+        request.getHeaders().forEach(httpRequest::header);
+        if (!request.hasHeader("Accept-Encoding")) {
+            httpRequest.header("Accept-Encoding", "gzip");
+        }
+        if (request.getBody() == null) {
+            httpRequest.method(request.getMethod(), BodyPublishers.noBody());
+        } else {
+            httpRequest.method(request.getMethod(), BodyPublishers.ofByteArray(request.getBody()));
+        }
+        return httpRequest.build();
+    }
+
+    private static HttpTransportResponse toTransportResponse(HttpResponse<byte[]> response) {
+        byte[] body = response.body();
+        boolean gzipEncoded = response.headers()
+                .firstValue("Content-Encoding")
+                .filter("gzip"::equalsIgnoreCase)
+                .isPresent();
+        if (gzipEncoded && body.length > 0) {
+            try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = gzipInputStream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException("could not decode gzip response of " + response.uri(), e);
+            }
+        }
+        return new HttpTransportResponse(response.statusCode(), response.headers().map(), body);
+    }
+
+
+    public Map<String, Integer> requestsInFlight() {
+        Map<String, Integer> requestsInFlight = new HashMap<>();
+        hostLimiters.forEach((host, hostLimiter) -> requestsInFlight.put(host, hostLimiter.inFlightCount()));
+        return requestsInFlight;
+    }
+
+    public Map<String, Integer> queuedRequests() {
+        Map<String, Integer> queuedRequests = new HashMap<>();
+        hostLimiters.forEach((host, hostLimiter) -> queuedRequests.put(host, hostLimiter.queuedCount()));
+        return queuedRequests;
+    }
+
+
+    private HttpClient httpClient() {
+        HttpClient currentHttpClient = httpClient;
+        if (currentHttpClient != null) {
+            return currentHttpClient;
+        }
+        synchronized (this) {
+            if (httpClient == null) {
+                setSystemPropertyIfAbsent("jdk.httpclient.connectionPoolSize", connectionPoolSize);
+                setSystemPropertyIfAbsent("jdk.httpclient.keepalive.timeout", keepAliveSeconds);
+                executor = Executors.newFixedThreadPool(threadCount, new BasicThreadFactory.Builder() //
+                        .namingPattern("aoc-http-%d")
+                        .daemon(true)
+                        .build());
+                httpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(connectTimeout)
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .executor(executor)
+                        .build();
+                log.debug("build HttpClient with connectTimeout={} requestTimeout={} maxRequestsPerHost={}",
+                        connectTimeout, requestTimeout, maxRequestsPerHost);
+            }
+            return httpClient;
+        }
+    }
+
+    private static void setSystemPropertyIfAbsent(String key, long value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, String.valueOf(value));
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            httpClient = null;
+        }
+    }
+
+
+    @Value("${httpConnectTimeoutMillis:5000}")
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        if (connectTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Expect positive httpConnectTimeoutMillis: " + connectTimeoutMillis);
+        }
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMillis);
+    }
+
+    /**
+     * Timeout from sending the request until the response headers are received.
+     */
+    @Value("${httpReadTimeoutMillis:15000}")
+    public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+        if (requestTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Expect positive httpReadTimeoutMillis: " + requestTimeoutMillis);
+        }
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+    }
+
+    @Value("${httpMaxRequestsPerHost:8}")
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost <= 0) {
+            throw new IllegalArgumentException("Expect positive httpMaxRequestsPerHost: " + maxRequestsPerHost);
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    @Value("${httpThreadCount:2}")
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Expect positive httpThreadCount: " + threadCount);
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Maximum idle connections kept open, 0 for no limit.
+     */
+    @Value("${httpConnectionPoolSize:16}")
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        if (connectionPoolSize < 0) {
+            throw new IllegalArgumentException("Expect non negative httpConnectionPoolSize: " + connectionPoolSize);
+        }
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    @Value("${httpKeepAliveSeconds:120}")
+    public void setKeepAliveSeconds(long keepAliveSeconds) {
+        if (keepAliveSeconds <= 0) {
+            throw new IllegalArgumentException("Expect positive httpKeepAliveSeconds: " + keepAliveSeconds);
+        }
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+
+    /**
+     * Starts at most {@code maxRequestsPerHost} requests at once and the queued ones as earlier ones complete.
+     */
+    private class HostLimiter {
+
+        private final String host;
+        private final Queue<Runnable> queuedRequests = new ArrayDeque<>();
+        private int inFlightCount;
+
+
+        private HostLimiter(String host) {
+            this.host = host;
+        }
+
+
+        private CompletableFuture<HttpTransportResponse> submit(
+                Supplier<CompletableFuture<HttpTransportResponse>> request) {
+            CompletableFuture<HttpTransportResponse> response = new CompletableFuture<>();
+            Runnable startRequest = () -> start(request, response);
+            boolean startNow;
+            synchronized (this) {
+                startNow = inFlightCount < maxRequestsPerHost;
+                if (startNow) {
+                    inFlightCount++;
+                } else {
+                    queuedRequests.add(startRequest);
+                    log.debug("queue request to {} behind {} requests in flight", host, inFlightCount);
+                }
+            }
+            if (startNow) {
+                startRequest.run();
+            }
+            return response;
+        }
+
+        private void start(Supplier<CompletableFuture<HttpTransportResponse>> request,
+                CompletableFuture<HttpTransportResponse> response) {
+            CompletableFuture<HttpTransportResponse> sentRequest;
+            try {
+                sentRequest = request.get();
+            } catch (RuntimeException e) {
+                sentRequest = CompletableFuture.failedFuture(e);
+            }
+            sentRequest.whenComplete((transportResponse, throwable) -> {
+                release();
+                if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                    response.completeExceptionally(throwable.getCause());
+                } else if (throwable != null) {
+                    response.completeExceptionally(throwable);
+                } else {
+                    response.complete(transportResponse);
+                }
+            });
+        }
+
+        private void release() {
+            Runnable nextRequest;
+            synchronized (this) {
+                nextRequest = queuedRequests.poll();
+                if (nextRequest == null) {
+                    inFlightCount--;
+                }
+            }
+            if (nextRequest != null) {
+                nextRequest.run(); // hands the permit over
+            }
+        }
+
+
+        private synchronized int inFlightCount() {
+            return inFlightCount;
+        }
+
+        private synchronized int queuedCount() {
+            return queuedRequests.size();
+        }
+
+    }
+
+}
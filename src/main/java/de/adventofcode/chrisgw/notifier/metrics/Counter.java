@@ -0,0 +1,27 @@
+package de.adventofcode.chrisgw.notifier.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+
+    Counter() {
+    }
+
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+}
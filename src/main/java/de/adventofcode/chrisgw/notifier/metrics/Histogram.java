@@ -0,0 +1,95 @@
+package de.adventofcode.chrisgw.notifier.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+
+/**
+ * Cumulative histogram with fixed bucket bounds in seconds, safe for concurrent observations.
+ */
+public final class Histogram {
+
+    public static final double[] LATENCY_BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+            5, 10, 30 };
+    public static final double[] DELIVERY_BUCKETS = { 10, 30, 60, 120, 300, 600, 900, 1800, 3600, 7200, 21600 };
+
+    private final double[] upperBounds;
+    private final LongAdder[] bucketCounts;
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAdder count = new LongAdder();
+
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        this.bucketCounts = new LongAdder[upperBounds.length];
+        for (int bucket = 0; bucket < upperBounds.length; bucket++) {
+            bucketCounts[bucket] = new LongAdder();
+        }
+    }
+
+
+    public void observeSeconds(double seconds) {
+        for (int bucket = 0; bucket < upperBounds.length; bucket++) {
+            if (seconds <= upperBounds[bucket]) {
+                bucketCounts[bucket].increment();
+                break;
+            }
+        }
+        sum.add(seconds);
+        count.increment();
+    }
+
+    public void observeNanos(long nanos) {
+        observeSeconds(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public <T> T time(Supplier<T> supplier) {
+        long startNanos = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            observeSince(startNanos);
+        }
+    }
+
+
+    void appendSamples(StringBuilder sb, String name, String labels) {
+        long cumulativeCount = 0;
+        for (int bucket = 0; bucket < upperBounds.length; bucket++) {
+            cumulativeCount += bucketCounts[bucket].sum();
+            appendSample(sb, name + "_bucket", withLabel(labels, "le", format(upperBounds[bucket])), cumulativeCount);
+        }
+        long totalCount = count.sum();
+        appendSample(sb, name + "_bucket", withLabel(labels, "le", "+Inf"), Math.max(totalCount, cumulativeCount));
+        appendSample(sb, name + "_sum", labels, sum.sum());
+        appendSample(sb, name + "_count", labels, totalCount);
+    }
+
+
+    static void appendSample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ').append(format(value)).append('\n');
+    }
+
+    static String withLabel(String labels, String labelName, String labelValue) {
+        String label = labelName + "=\"" + labelValue + '"';
+        return labels.isEmpty() ? label : labels + ',' + label;
+    }
+
+    static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+}
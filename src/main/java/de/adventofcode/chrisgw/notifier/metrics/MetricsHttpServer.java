@@ -0,0 +1,105 @@
+package de.adventofcode.chrisgw.notifier.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Serves {@link NotifierMetrics} in the Prometheus text format on
+ * {@code http://<metricsBindAddress>:<metricsPort>/metrics}. A {@code metricsPort} of 0 or less disables the endpoint.
+ * If the port is already in use, e.g. by another notifier on the same host, the endpoint falls back to an ephemeral
+ * port instead of failing the start.
+ */
+@Slf4j
+@Service
+public class MetricsHttpServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final NotifierMetrics notifierMetrics;
+    private String bindAddress = "127.0.0.1";
+    private int port = 9464;
+    private HttpServer httpServer;
+
+
+    @Inject
+    public MetricsHttpServer(NotifierMetrics notifierMetrics) {
+        this.notifierMetrics = requireNonNull(notifierMetrics);
+    }
+
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (port <= 0 || httpServer != null) {
+            return;
+        }
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        } catch (BindException e) {
+            httpServer = HttpServer.create(new InetSocketAddress(bindAddress, 0), 0);
+            log.warn("metrics port {} is in use, fall back to ephemeral port {}", port,
+                    httpServer.getAddress().getPort());
+        }
+        httpServer.createContext("/metrics", this::handleScrape);
+        httpServer.setExecutor(Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder() //
+                .namingPattern("aoc-metrics-%d")
+                .daemon(true)
+                .build()));
+        httpServer.start();
+        log.info("serve metrics on http://{}:{}/metrics", bindAddress, httpServer.getAddress().getPort());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = notifierMetrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    @Value("${metricsBindAddress:127.0.0.1}")
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = requireNonNull(bindAddress);
+    }
+
+    @Value("${metricsPort:9464}")
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+}
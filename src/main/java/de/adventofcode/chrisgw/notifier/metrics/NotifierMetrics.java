@@ -0,0 +1,118 @@
+package de.adventofcode.chrisgw.notifier.metrics;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Registry of the notifier's histograms, counters and gauges, rendered in the Prometheus text format. Labels are
+ * passed as alternating names and values, e.g. {@code counter("aoc_polls_total", help, "result", "changed")}.
+ */
+@Service
+public class NotifierMetrics {
+
+    private final Map<String, MetricFamily> metricFamilies = new ConcurrentSkipListMap<>();
+
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return histogram(name, help, Histogram.LATENCY_BUCKETS, labels);
+    }
+
+    public Histogram histogram(String name, String help, double[] upperBounds, String... labels) {
+        MetricFamily metricFamily = metricFamily(name, help, "histogram");
+        return (Histogram) metricFamily.children.computeIfAbsent(labels(labels), key -> new Histogram(upperBounds));
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        MetricFamily metricFamily = metricFamily(name, help, "counter");
+        return (Counter) metricFamily.children.computeIfAbsent(labels(labels), key -> new Counter());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value) {
+        requireNonNull(value);
+        metricFamily(name, help, "gauge").children.put("", value);
+    }
+
+    /**
+     * Gauge with one child per key of the supplied map, labeled with {@code labelName}.
+     */
+    public void gauges(String name, String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+        requireNonNull(values);
+        metricFamily(name, help, "gauge").children.put(labelName, values);
+    }
+
+
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        metricFamilies.forEach((name, metricFamily) -> metricFamily.appendTo(sb));
+        return sb.toString();
+    }
+
+
+    private MetricFamily metricFamily(String name, String help, String type) {
+        MetricFamily metricFamily = metricFamilies.computeIfAbsent(name, key -> new MetricFamily(name, help, type));
+        if (!metricFamily.type.equals(type)) {
+            throw new IllegalArgumentException("metric " + name + " is a " + metricFamily.type + ", not a " + type);
+        }
+        return metricFamily;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Expect label names and values in pairs: " + String.join(",", labels));
+        }
+        String labelString = "";
+        for (int label = 0; label < labels.length; label += 2) {
+            labelString = Histogram.withLabel(labelString, labels[label], escape(labels[label + 1]));
+        }
+        return labelString;
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+
+    private static class MetricFamily {
+
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> children = new ConcurrentHashMap<>();
+
+
+        private MetricFamily(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        private void appendTo(StringBuilder sb) {
+            sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            new ConcurrentSkipListMap<>(children).forEach((labels, child) -> {
+                if (child instanceof Histogram) {
+                    ((Histogram) child).appendSamples(sb, name, labels);
+                } else if (child instanceof Counter) {
+                    Histogram.appendSample(sb, name, labels, ((Counter) child).count());
+                } else if (child instanceof DoubleSupplier) {
+                    Histogram.appendSample(sb, name, labels, ((DoubleSupplier) child).getAsDouble());
+                } else {
+                    ((Supplier<Map<String, ? extends Number>>) child).get().forEach((labelValue, value) -> //
+                            Histogram.appendSample(sb, name, labels(labels, labelValue), value.doubleValue()));
+                }
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import java.time.*;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+import static java.time.Month.DECEMBER;
+
+
+/**
+ * Puzzle unlock instants of Advent of Code: day {@code n} of an event unlocks at midnight US Eastern on December
+ * {@code n}.
+ */
+public final class AdventOfCodeCalendar {
+
+    public static final int FIRST_EVENT_YEAR = 2015;
+    public static final ZoneId UNLOCK_TIME_ZONE = ZoneId.of("America/New_York");
+
+
+    private AdventOfCodeCalendar() {
+    }
+
+
+    public static Instant unlockInstant(int year, int day) {
+        return LocalDate.of(year, DECEMBER, day).atStartOfDay(UNLOCK_TIME_ZONE).toInstant();
+    }
+
+    /**
+     * Event year whose puzzles are or were last unlocked at {@code now}, the previous year before December 1.
+     */
+    public static int currentEventYear(Instant now) {
+        ZonedDateTime unlockZoneNow = now.atZone(UNLOCK_TIME_ZONE);
+        return unlockZoneNow.getMonth() == DECEMBER ? unlockZoneNow.getYear() : unlockZoneNow.getYear() - 1;
+    }
+
+    /**
+     * Latest unlock at or before {@code now} if it belongs to a running event, i.e. a day of December 1 to 25.
+     */
+    public static Instant lastUnlock(Instant now) {
+        ZonedDateTime unlockZoneNow = now.atZone(UNLOCK_TIME_ZONE);
+        if (unlockZoneNow.getMonth() != DECEMBER) {
+            return null;
+        }
+        int day = Math.min(unlockZoneNow.getDayOfMonth(), DAY_TASK_COUNT);
+        return unlockInstant(unlockZoneNow.getYear(), day);
+    }
+
+    public static boolean isEventRunning(Instant now) {
+        ZonedDateTime unlockZoneNow = now.atZone(UNLOCK_TIME_ZONE);
+        return unlockZoneNow.getMonth() == DECEMBER && unlockZoneNow.getDayOfMonth() <= DAY_TASK_COUNT;
+    }
+
+    /**
+     * First unlock strictly after {@code now}, which is December 1 of the next event after the last day.
+     */
+    public static Instant nextUnlock(Instant now) {
+        ZonedDateTime unlockZoneNow = now.atZone(UNLOCK_TIME_ZONE);
+        int year = unlockZoneNow.getYear();
+        if (unlockZoneNow.getMonth() == DECEMBER && unlockZoneNow.getDayOfMonth() < DAY_TASK_COUNT) {
+            return unlockInstant(year, unlockZoneNow.getDayOfMonth() + 1);
+        }
+        Instant firstUnlock = unlockInstant(year, 1);
+        return firstUnlock.isAfter(now) ? firstUnlock : unlockInstant(year + 1, 1);
+    }
+
+}
@@ -1,33 +1,57 @@
 package de.adventofcode.chrisgw.notifier.model;
 
-import lombok.Data;
-import org.apache.commons.lang3.builder.CompareToBuilder;
+import lombok.Getter;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 
 
-@Data
+/**
+ * Read only view of one day in the packed star completion timestamps of a {@link LeaderboardMember}.
+ */
 public class AdventOfCodeDayTask implements Comparable<AdventOfCodeDayTask>, Iterable<Instant> {
 
     public static final int DAY_TASK_LEVELS = 2;
+    public static final int DAY_TASK_COUNT = 25;
 
-    private int day;
-    private List<Instant> completedLevel = new ArrayList<>(DAY_TASK_LEVELS);
+    private static final int[] NO_COMPLETION_TS = new int[DAY_TASK_COUNT * DAY_TASK_LEVELS];
+
+    @Getter
+    private final int day;
+    private final int[] completionDayLevelTs;
 
 
     public AdventOfCodeDayTask(int day) {
+        this(day, NO_COMPLETION_TS);
+    }
+
+    AdventOfCodeDayTask(int day, int[] completionDayLevelTs) {
+        if (day < 1 || day > DAY_TASK_COUNT) {
+            throw new IllegalArgumentException("Expect day between 1 and " + DAY_TASK_COUNT + ": " + day);
+        }
         this.day = day;
+        this.completionDayLevelTs = completionDayLevelTs;
+    }
+
+
+    static int completionIndex(int day, int level) {
+        return (day - 1) * DAY_TASK_LEVELS + level - 1;
     }
 
 
     public int completedLevels() {
-        return completedLevel.size();
+        int completedLevels = 0;
+        for (int level = 1; level <= DAY_TASK_LEVELS; level++) {
+            if (hasCompletedLevel(level)) {
+                completedLevels++;
+            }
+        }
+        return completedLevels;
     }
 
     public boolean hasCompletedLevel(int level) {
-        return 1 <= completedLevels() && completedLevels() <= level;
+        return 1 <= level && level <= DAY_TASK_LEVELS && getCompletedEpochSecondForLevel(level) != 0;
     }
 
     public boolean hasCompletedAllLevels() {
@@ -39,48 +63,97 @@ public class AdventOfCodeDayTask implements Comparable<AdventOfCodeDayTask>, Ite
     }
 
 
-    public Instant getCompletedTsForLevel(int level) {
-        return completedLevel.get(level - 1);
+    public int getCompletedEpochSecondForLevel(int level) {
+        return completionDayLevelTs[completionIndex(day, level)];
     }
 
-    public Instant getLastComplitionTime() {
-        return completedLevel.stream().max(Comparator.naturalOrder()).orElse(Instant.MIN);
+    public Instant getCompletedTsForLevel(int level) {
+        if (!hasCompletedLevel(level)) {
+            throw new NoSuchElementException("day " + day + " has no completed level " + level);
+        }
+        return Instant.ofEpochSecond(getCompletedEpochSecondForLevel(level));
     }
 
+    public int getLastCompletionEpochSecond() {
+        int lastCompletionEpochSecond = 0;
+        for (int level = 1; level <= DAY_TASK_LEVELS; level++) {
+            lastCompletionEpochSecond = Math.max(lastCompletionEpochSecond, getCompletedEpochSecondForLevel(level));
+        }
+        return lastCompletionEpochSecond;
+    }
 
-    public int addNextCompletedLevel(Instant completionTs) {
-        completedLevel.add(completionTs);
-        return completedLevels();
+    public Instant getLastComplitionTime() {
+        int lastCompletionEpochSecond = getLastCompletionEpochSecond();
+        return lastCompletionEpochSecond == 0 ? Instant.MIN : Instant.ofEpochSecond(lastCompletionEpochSecond);
     }
 
 
     public Optional<Duration> neededDurationForLevel(int level) {
-        if (level <= 1 || !hasCompletedLevel(level)) {
+        if (level <= 1 || !hasCompletedLevel(level) || !hasCompletedLevel(level - 1)) {
             return Optional.empty();
         }
-        Instant previousLevelCompletedTs = getCompletedTsForLevel(level - 1);
-        Instant levelCompletedTs = getCompletedTsForLevel(level);
-        return Optional.ofNullable(Duration.between(previousLevelCompletedTs, levelCompletedTs));
+        long neededSeconds = getCompletedEpochSecondForLevel(level) - getCompletedEpochSecondForLevel(level - 1);
+        return Optional.of(Duration.ofSeconds(neededSeconds));
     }
 
 
     @Override
     public Iterator<Instant> iterator() {
+        List<Instant> completedLevel = new ArrayList<>(DAY_TASK_LEVELS);
+        for (int level = 1; level <= DAY_TASK_LEVELS && hasCompletedLevel(level); level++) {
+            completedLevel.add(getCompletedTsForLevel(level));
+        }
         return completedLevel.iterator();
     }
 
 
     @Override
     public int compareTo(AdventOfCodeDayTask otherDayTask) {
-        return new CompareToBuilder().append(this.getDay(), otherDayTask.getDay())
-                .append(this.completedLevels(), otherDayTask.completedLevels())
-                .append(this.getLastComplitionTime(), otherDayTask.getLastComplitionTime())
-                .toComparison();
+        int comparison = Integer.compare(this.getDay(), otherDayTask.getDay());
+        if (comparison == 0) {
+            comparison = Integer.compare(this.completedLevels(), otherDayTask.completedLevels());
+        }
+        if (comparison == 0) {
+            comparison = Integer.compare(this.getLastCompletionEpochSecond(),
+                    otherDayTask.getLastCompletionEpochSecond());
+        }
+        return comparison;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof AdventOfCodeDayTask)) {
+            return false;
+        }
+        AdventOfCodeDayTask otherDayTask = (AdventOfCodeDayTask) other;
+        if (day != otherDayTask.day) {
+            return false;
+        }
+        for (int level = 1; level <= DAY_TASK_LEVELS; level++) {
+            if (getCompletedEpochSecondForLevel(level) != otherDayTask.getCompletedEpochSecondForLevel(level)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = day;
+        for (int level = 1; level <= DAY_TASK_LEVELS; level++) {
+            hashCode = 31 * hashCode + getCompletedEpochSecondForLevel(level);
+        }
+        return hashCode;
     }
 
     @Override
     public String toString() {
         int latestLevel = completedLevels();
+        if (latestLevel == 0) {
+            return String.format("%2d:%1d", day, latestLevel);
+        }
         return String.format("%2d:%1d@%s", day, latestLevel, getCompletedTsForLevel(latestLevel));
     }
 
@@ -0,0 +1,47 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * A watched leaderboard with the session cookie used to fetch it and the webhooks its changes are sent to. Without a
+ * session or webhook routes the configured {@code sessionId} and webhook URLs are used. With {@code backfill} the
+ * other event years of the leaderboard are stored as well.
+ */
+@Value
+public class BoardRegistration {
+
+    LeaderboardKey leaderboardKey;
+    String sessionId;
+    List<WebhookRoute> webhookRoutes;
+    boolean backfill;
+
+
+    public BoardRegistration(LeaderboardKey leaderboardKey, String sessionId, List<WebhookRoute> webhookRoutes) {
+        this(leaderboardKey, sessionId, webhookRoutes, false);
+    }
+
+    public BoardRegistration(LeaderboardKey leaderboardKey, String sessionId, List<WebhookRoute> webhookRoutes,
+            boolean backfill) {
+        this.leaderboardKey = requireNonNull(leaderboardKey);
+        this.sessionId = sessionId;
+        this.webhookRoutes = List.copyOf(webhookRoutes);
+        this.backfill = backfill;
+    }
+
+
+    public static BoardRegistration withDefaults(LeaderboardKey leaderboardKey) {
+        return new BoardRegistration(leaderboardKey, null, List.of());
+    }
+
+
+    @Override
+    public String toString() {
+        return leaderboardKey + webhookRoutes.toString(); // never log the session cookie
+    }
+
+}
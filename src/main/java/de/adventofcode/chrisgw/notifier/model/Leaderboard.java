@@ -1,7 +1,9 @@
 package de.adventofcode.chrisgw.notifier.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy.SnakeCaseStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import lombok.*;
 
@@ -10,16 +12,13 @@ import java.time.*;
 import java.util.*;
 import java.util.stream.Stream;
 
-import static java.time.Month.DECEMBER;
-
 
 @Data
 @XmlRootElement
 @JsonNaming(value = SnakeCaseStrategy.class)
+@JsonDeserialize(using = LeaderboardDeserializer.class)
 public class Leaderboard implements Iterable<LeaderboardMember> {
 
-    public static final LocalTime DAY_TASK_START_TIME = LocalTime.of(6, 0);
-
     private int event;
     private long ownerId;
 
@@ -29,27 +28,45 @@ public class Leaderboard implements Iterable<LeaderboardMember> {
     @JsonProperty
     private Map<Long, LeaderboardMember> members = new HashMap<>();
 
+    @JsonIgnore
+    @Getter(value = AccessLevel.NONE)
+    @Setter(value = AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile RankIndex rankIndex;
+
 
     @ToString.Include
     public Instant lastEarnedStarTs() {
-        return members().map(LeaderboardMember::getLastStarTs).max(Comparator.naturalOrder()).orElse(Instant.MIN);
+        return isEmptyLeaderboard() ? Instant.MIN : Instant.ofEpochSecond(rankIndex().lastEarnedStarTsSeconds);
     }
 
 
     public int rankingFor(LeaderboardMember member) {
-        Iterator<LeaderboardMember> memberIterator = iterator();
-        for (int rank = 0; memberIterator.hasNext(); rank++) {
-            LeaderboardMember nextMember = memberIterator.next();
-            if (member.getId() == nextMember.getId()) {
-                return rank;
-            }
+        return rankingFor(member.getId());
+    }
+
+    public int rankingFor(long memberId) {
+        return rankIndex().rankById.getOrDefault(memberId, Integer.MAX_VALUE);
+    }
+
+    public List<LeaderboardMember> rankedMembers() {
+        return rankIndex().rankedMembers;
+    }
+
+    private RankIndex rankIndex() {
+        RankIndex currentRankIndex = rankIndex;
+        if (currentRankIndex == null) {
+            currentRankIndex = new RankIndex(members.values());
+            rankIndex = currentRankIndex;
         }
-        return Integer.MAX_VALUE;
+        return currentRankIndex;
     }
 
 
     public LocalDateTime unlockTimeForDayTask(int day) {
-        return LocalDate.of(event, DECEMBER, day).atTime(DAY_TASK_START_TIME);
+        Instant unlockInstant = AdventOfCodeCalendar.unlockInstant(event, day);
+        return LocalDateTime.ofInstant(unlockInstant, ZoneId.systemDefault());
     }
 
 
@@ -67,9 +84,23 @@ public class Leaderboard implements Iterable<LeaderboardMember> {
     }
 
     public LeaderboardMember addMember(LeaderboardMember leaderboardMember) {
+        rankIndex = null;
+        leaderboardMember.addedTo(this);
         return members.put(leaderboardMember.getId(), leaderboardMember);
     }
 
+    public LeaderboardMember removeMember(long memberId) {
+        rankIndex = null;
+        return members.remove(memberId);
+    }
+
+    /**
+     * A member of this leaderboard changed, its rank may differ.
+     */
+    void memberChanged() {
+        rankIndex = null;
+    }
+
     public boolean containsMember(long memberId) {
         return members.containsKey(memberId);
     }
@@ -81,7 +112,31 @@ public class Leaderboard implements Iterable<LeaderboardMember> {
 
     @Override
     public Iterator<LeaderboardMember> iterator() {
-        return members().sorted().iterator();
+        return rankedMembers().iterator();
+    }
+
+
+    private static class RankIndex {
+
+        private final List<LeaderboardMember> rankedMembers;
+        private final Map<Long, Integer> rankById;
+        private final int lastEarnedStarTsSeconds;
+
+
+        private RankIndex(Collection<LeaderboardMember> members) {
+            LeaderboardMember[] sortedMembers = members.toArray(new LeaderboardMember[0]);
+            Arrays.sort(sortedMembers);
+            Map<Long, Integer> rankById = new HashMap<>(sortedMembers.length * 4 / 3 + 1);
+            int lastEarnedStarTsSeconds = Integer.MIN_VALUE;
+            for (int rank = 0; rank < sortedMembers.length; rank++) {
+                rankById.put(sortedMembers[rank].getId(), rank);
+                lastEarnedStarTsSeconds = Math.max(lastEarnedStarTsSeconds, sortedMembers[rank].getLastStarTsSeconds());
+            }
+            this.rankedMembers = List.of(sortedMembers);
+            this.rankById = rankById;
+            this.lastEarnedStarTsSeconds = lastEarnedStarTsSeconds;
+        }
+
     }
 
 }
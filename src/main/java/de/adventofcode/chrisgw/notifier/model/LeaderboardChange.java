@@ -2,13 +2,15 @@ package de.adventofcode.chrisgw.notifier.model;
 
 import com.fasterxml.jackson.databind.PropertyNamingStrategy.SnakeCaseStrategy;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardDelta.MemberDelta;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
 
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlRootElement;
-import java.time.Instant;
-import java.util.Collection;
-import java.util.Map;
+import java.util.List;
 import java.util.stream.Stream;
 
 
@@ -22,45 +24,30 @@ public class LeaderboardChange {
     @NotNull
     private final Leaderboard currentLeaderboard;
 
+    @Getter(lazy = true)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final LeaderboardDelta delta = LeaderboardDelta.between(previousLeaderboard, currentLeaderboard);
 
-    public Stream<AdventOfCodeDayTask> newFinishedDayTasks(long memberId) {
-        if (previousLeaderboard == null || previousLeaderboard.isEmptyLeaderboard()) {
-            return Stream.empty();
-        }
-        return currentLeaderboard.getMemberForId(memberId)
-                .map(LeaderboardMember::getCompletedDays)
-                .map(Map::values)
-                .map(Collection::stream)
-                .orElse(Stream.empty())
-                .filter(dayTask -> isNewSolvedDayTask(memberId, dayTask));
-    }
+    @Getter(lazy = true)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final LeaderboardMessage message = LeaderboardMessage.render(this);
 
-    private boolean isNewSolvedDayTask(long memberId, AdventOfCodeDayTask dayTask) {
-        if (previousLeaderboard == null) {
-            return false;
-        }
-        Instant previousLastStarTs = previousLeaderboard.getMemberForId(memberId)
-                .map(LeaderboardMember::getLastStarTs)
-                .orElse(Instant.MIN);
-        return dayTask.getLastComplitionTime().isAfter(previousLastStarTs);
+
+    public Stream<AdventOfCodeDayTask> newFinishedDayTasks(long memberId) {
+        return getDelta().memberDeltaFor(memberId)
+                .map(MemberDelta::getNewFinishedDayTasks)
+                .map(List::stream)
+                .orElseGet(Stream::empty);
     }
 
     public boolean hasChanged() {
-        return previousLeaderboard == null || !currentLeaderboard.lastEarnedStarTs()
-                .equals(previousLeaderboard.lastEarnedStarTs());
+        return getDelta().isChanged();
     }
 
     public boolean hasChanged(long memberId) {
-        if (previousLeaderboard == null) {
-            return false;
-        }
-        Instant lastChange = currentLeaderboard.getMemberForId(memberId)
-                .map(LeaderboardMember::getLastStarTs)
-                .orElse(Instant.MIN);
-        Instant previousLastChange = previousLeaderboard.getMemberForId(memberId)
-                .map(LeaderboardMember::getLastStarTs)
-                .orElse(Instant.MIN);
-        return !lastChange.equals(previousLastChange);
+        return getDelta().memberDeltaFor(memberId).map(MemberDelta::isChanged).orElse(false);
     }
 
 }
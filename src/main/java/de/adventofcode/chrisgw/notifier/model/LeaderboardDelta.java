@@ -0,0 +1,125 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+
+/**
+ * Immutable difference between two leaderboards, computed in one walk over both of them.
+ */
+@Value
+public class LeaderboardDelta {
+
+    private static final long ABSENT_STAR_TS = Long.MIN_VALUE;
+
+    boolean changed;
+    List<MemberDelta> currentMemberDeltas;
+    List<MemberDelta> leftMemberDeltas;
+    Map<Long, MemberDelta> memberDeltasById;
+
+
+    public static LeaderboardDelta between(Leaderboard previousLeaderboard, Leaderboard currentLeaderboard) {
+        Objects.requireNonNull(currentLeaderboard);
+        boolean hasPreviousLeaderboard = previousLeaderboard != null;
+        boolean detectNewDayTasks = hasPreviousLeaderboard && !previousLeaderboard.isEmptyLeaderboard();
+
+        long previousLastEarnedStarTs = ABSENT_STAR_TS;
+        if (hasPreviousLeaderboard && !previousLeaderboard.isEmptyLeaderboard()) {
+            previousLastEarnedStarTs = previousLeaderboard.lastEarnedStarTs().getEpochSecond();
+        }
+
+        List<MemberDelta> currentMemberDeltas = new ArrayList<>(currentLeaderboard.memberCount());
+        Map<Long, MemberDelta> memberDeltasById = new HashMap<>();
+        long currentLastEarnedStarTs = ABSENT_STAR_TS;
+        int currentRank = 0;
+        for (LeaderboardMember member : currentLeaderboard) {
+            long memberId = member.getId();
+            currentLastEarnedStarTs = Math.max(currentLastEarnedStarTs, member.getLastStarTsSeconds());
+            LeaderboardMember previousMember = hasPreviousLeaderboard //
+                    ? previousLeaderboard.getMemberForId(memberId).orElse(null) : null;
+            long previousLastStarTs = previousMember == null ? ABSENT_STAR_TS : previousMember.getLastStarTsSeconds();
+
+            List<AdventOfCodeDayTask> newFinishedDayTasks = detectNewDayTasks //
+                    ? newFinishedDayTasks(member, previousLastStarTs) : List.of();
+            boolean memberChanged = hasPreviousLeaderboard && member.getLastStarTsSeconds() != previousLastStarTs;
+            int scoreDelta = member.getLocalScore() - (previousMember == null ? 0 : previousMember.getLocalScore());
+            int previousRank = hasPreviousLeaderboard ? previousLeaderboard.rankingFor(memberId) : currentRank;
+            boolean joined = hasPreviousLeaderboard && previousMember == null;
+
+            MemberDelta memberDelta = new MemberDelta(member, newFinishedDayTasks, memberChanged, scoreDelta,
+                    previousRank, currentRank, joined, false);
+            currentMemberDeltas.add(memberDelta);
+            memberDeltasById.put(memberId, memberDelta);
+            currentRank++;
+        }
+
+        List<MemberDelta> leftMemberDeltas = new ArrayList<>();
+        if (hasPreviousLeaderboard) {
+            previousLeaderboard.members()
+                    .filter(previousMember -> !currentLeaderboard.containsMember(previousMember.getId()))
+                    .forEach(previousMember -> {
+                        int previousRank = previousLeaderboard.rankingFor(previousMember);
+                        MemberDelta memberDelta = new MemberDelta(previousMember, List.of(), true,
+                                -previousMember.getLocalScore(), previousRank, Integer.MAX_VALUE, false, true);
+                        leftMemberDeltas.add(memberDelta);
+                        memberDeltasById.put(previousMember.getId(), memberDelta);
+                    });
+        }
+
+        boolean changed = !hasPreviousLeaderboard || currentLastEarnedStarTs != previousLastEarnedStarTs;
+        return new LeaderboardDelta(changed, List.copyOf(currentMemberDeltas), List.copyOf(leftMemberDeltas),
+                Collections.unmodifiableMap(memberDeltasById));
+    }
+
+    private static List<AdventOfCodeDayTask> newFinishedDayTasks(LeaderboardMember member, long previousLastStarTs) {
+        List<AdventOfCodeDayTask> newFinishedDayTasks = new ArrayList<>(2);
+        member.completedDayTasks()
+                .filter(dayTask -> dayTask.getLastCompletionEpochSecond() > previousLastStarTs)
+                .forEachOrdered(newFinishedDayTasks::add);
+        return List.copyOf(newFinishedDayTasks);
+    }
+
+
+    public Optional<MemberDelta> memberDeltaFor(long memberId) {
+        return Optional.ofNullable(memberDeltasById.get(memberId));
+    }
+
+    public Stream<MemberDelta> membersWithNewFinishedDayTasks() {
+        return currentMemberDeltas.stream().filter(MemberDelta::hasNewFinishedDayTasks);
+    }
+
+    public Stream<MemberDelta> joinedMemberDeltas() {
+        return currentMemberDeltas.stream().filter(MemberDelta::isJoined);
+    }
+
+
+    @Value
+    public static class MemberDelta {
+
+        LeaderboardMember member;
+        List<AdventOfCodeDayTask> newFinishedDayTasks;
+        boolean changed;
+        int scoreDelta;
+        int previousRank;
+        int currentRank;
+        boolean joined;
+        boolean left;
+
+
+        public long getMemberId() {
+            return member.getId();
+        }
+
+        public boolean hasNewFinishedDayTasks() {
+            return !newFinishedDayTasks.isEmpty();
+        }
+
+        public boolean hasRankChanged() {
+            return previousRank != currentRank;
+        }
+
+    }
+
+}
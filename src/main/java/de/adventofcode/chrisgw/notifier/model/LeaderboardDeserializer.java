@@ -0,0 +1,157 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+
+/**
+ * Token streaming deserializer for the private leaderboard JSON and the saved leaderboard files. It writes directly
+ * into {@link Leaderboard} and {@link LeaderboardMember} without building a {@code JsonNode} tree.
+ */
+public class LeaderboardDeserializer extends StdDeserializer<Leaderboard> {
+
+    public LeaderboardDeserializer() {
+        super(Leaderboard.class);
+    }
+
+
+    @Override
+    public Leaderboard deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        expectStartObject(parser, context);
+        Leaderboard leaderboard = new Leaderboard();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+            case "event":
+                leaderboard.setEvent(parser.getValueAsInt());
+                break;
+            case "owner_id":
+                leaderboard.setOwnerId(parser.getValueAsLong());
+                break;
+            case "members":
+                readMembers(parser, context, leaderboard);
+                break;
+            default:
+                parser.skipChildren();
+            }
+        }
+        return leaderboard;
+    }
+
+    private void readMembers(JsonParser parser, DeserializationContext context, Leaderboard leaderboard)
+            throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        expectStartObject(parser, context);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            leaderboard.addMember(readMember(parser, context));
+        }
+    }
+
+    private LeaderboardMember readMember(JsonParser parser, DeserializationContext context) throws IOException {
+        expectStartObject(parser, context);
+        LeaderboardMember member = new LeaderboardMember();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+            case "id":
+                member.setId(parser.getValueAsLong());
+                break;
+            case "name":
+                member.setName(parser.getValueAsString());
+                break;
+            case "print_name":
+                member.setPrintName(parser.getValueAsString());
+                break;
+            case "local_score":
+                member.setLocalScore(parser.getValueAsInt());
+                break;
+            case "global_score":
+                member.setGlobalScore(parser.getValueAsInt());
+                break;
+            case "last_star_ts":
+                member.setLastStarTsSeconds(parser.getValueAsInt());
+                break;
+            case "stars":
+                member.setStars(parser.getValueAsInt());
+                break;
+            case "completion_day_level":
+                readCompletionDayLevel(parser, context, member);
+                break;
+            default:
+                parser.skipChildren();
+            }
+        }
+        return member;
+    }
+
+    private void readCompletionDayLevel(JsonParser parser, DeserializationContext context, LeaderboardMember member)
+            throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        expectStartObject(parser, context);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            int day = parseSmallInt(parser, context);
+            parser.nextToken();
+            expectStartObject(parser, context);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int level = parseSmallInt(parser, context);
+                parser.nextToken();
+                long starTs = readStarTs(parser, context);
+                if (isValidDayLevel(day, level) && starTs > 0) {
+                    member.setCompletedLevel(day, level, starTs);
+                }
+            }
+        }
+    }
+
+    private long readStarTs(JsonParser parser, DeserializationContext context) throws IOException {
+        expectStartObject(parser, context);
+        long starTs = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("get_star_ts".equals(fieldName)) {
+                starTs = parser.getValueAsLong();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return starTs;
+    }
+
+
+    private static boolean isValidDayLevel(int day, int level) {
+        return 1 <= day && day <= AdventOfCodeDayTask.DAY_TASK_COUNT //
+                && 1 <= level && level <= AdventOfCodeDayTask.DAY_TASK_LEVELS;
+    }
+
+    private static int parseSmallInt(JsonParser parser, DeserializationContext context) throws IOException {
+        String fieldName = parser.getCurrentName();
+        int value = 0;
+        for (int i = 0; i < fieldName.length(); i++) {
+            int digit = fieldName.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return (Integer) context.handleWeirdKey(Integer.class, fieldName, "expected day or level number");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void expectStartObject(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            context.reportWrongTokenException(Leaderboard.class, JsonToken.START_OBJECT, "expected leaderboard object");
+        }
+    }
+
+}
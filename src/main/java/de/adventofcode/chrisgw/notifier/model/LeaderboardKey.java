@@ -0,0 +1,18 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+
+@Value
+public class LeaderboardKey {
+
+    int year;
+    long leaderboardId;
+
+
+    @Override
+    public String toString() {
+        return year + "/" + leaderboardId;
+    }
+
+}
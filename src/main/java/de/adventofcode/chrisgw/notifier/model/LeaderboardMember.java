@@ -6,17 +6,22 @@ import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy.SnakeCaseStrategy;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
-import lombok.Data;
-import org.apache.commons.lang3.builder.CompareToBuilder;
+import lombok.*;
 
 import javax.xml.bind.annotation.XmlRootElement;
 import java.time.Instant;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_LEVELS;
 
+
+/**
+ * Member of a private leaderboard. Changing a member resets the rank index of the {@link Leaderboard} it was last added
+ * to, so the board keeps ranking it correctly.
+ */
 @Data
 @XmlRootElement
 @JsonNaming(value = SnakeCaseStrategy.class)
@@ -34,37 +39,153 @@ public class LeaderboardMember implements Comparable<LeaderboardMember> {
     private int stars;
 
     @JsonIgnore
-    private Map<Integer, AdventOfCodeDayTask> completedDays = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final int[] completionDayLevelTs = new int[DAY_TASK_COUNT * DAY_TASK_LEVELS];
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long completionMask;
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile Leaderboard leaderboard;
+
+
+    public void setId(long id) {
+        this.id = id;
+        changed();
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        changed();
+    }
+
+    public void setPrintName(String printName) {
+        this.printName = printName;
+        changed();
+    }
+
+    public void setLocalScore(int localScore) {
+        this.localScore = localScore;
+        changed();
+    }
+
+    public void setGlobalScore(int globalScore) {
+        this.globalScore = globalScore;
+        changed();
+    }
+
+    public void setLastStarTsSeconds(int lastStarTsSeconds) {
+        this.lastStarTsSeconds = lastStarTsSeconds;
+        changed();
+    }
+
+    public void setStars(int stars) {
+        this.stars = stars;
+        changed();
+    }
+
 
     @JsonSetter("completion_day_level")
     public void setCompletedDays(JsonNode completedDayLevelRootNode) {
         completedDayLevelRootNode.fields().forEachRemaining(dayJsonNode -> {
             int day = Integer.parseInt(dayJsonNode.getKey());
-            AdventOfCodeDayTask adventOfCodeDayTask = new AdventOfCodeDayTask(day);
-            dayJsonNode.getValue().elements().forEachRemaining(completedLevelNode -> {
-                Instant completionInstant = Instant.ofEpochSecond(completedLevelNode.path("get_star_ts").asLong());
-                adventOfCodeDayTask.addNextCompletedLevel(completionInstant);
+            dayJsonNode.getValue().fields().forEachRemaining(completedLevelNode -> {
+                int level = Integer.parseInt(completedLevelNode.getKey());
+                long completionEpochSecond = completedLevelNode.getValue().path("get_star_ts").asLong();
+                setCompletedLevel(day, level, completionEpochSecond);
             });
-            completedDays.put(day, adventOfCodeDayTask);
         });
     }
 
+    public void setCompletedLevel(int day, int level, long completionEpochSecond) {
+        if (day < 1 || day > DAY_TASK_COUNT || level < 1 || level > DAY_TASK_LEVELS) {
+            throw new IllegalArgumentException("Expect valid day and level: " + day + "/" + level);
+        }
+        int completionIndex = AdventOfCodeDayTask.completionIndex(day, level);
+        completionDayLevelTs[completionIndex] = Math.toIntExact(completionEpochSecond);
+        completionMask |= 1L << completionIndex;
+        changed();
+    }
+
+    void addedTo(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    private void changed() {
+        Leaderboard currentLeaderboard = leaderboard;
+        if (currentLeaderboard != null) {
+            currentLeaderboard.memberChanged();
+        }
+    }
+
+
+    public int getCompletedEpochSecond(int day, int level) {
+        return completionDayLevelTs[AdventOfCodeDayTask.completionIndex(day, level)];
+    }
+
+    public long getCompletionMask() {
+        return completionMask;
+    }
+
+    public boolean hasCompletedAnyLevel(int day) {
+        return 1 <= day && day <= DAY_TASK_COUNT && completedLevels(day) > 0;
+    }
+
+    public int completedLevels(int day) {
+        long dayMask = (1L << DAY_TASK_LEVELS) - 1;
+        return Long.bitCount((completionMask >>> AdventOfCodeDayTask.completionIndex(day, 1)) & dayMask);
+    }
+
+    public int completedStarCount() {
+        return Long.bitCount(completionMask);
+    }
+
+    public Stream<AdventOfCodeDayTask> completedDayTasks() {
+        return IntStream.rangeClosed(1, DAY_TASK_COUNT)
+                .filter(this::hasCompletedAnyLevel)
+                .mapToObj(day -> new AdventOfCodeDayTask(day, completionDayLevelTs));
+    }
+
     public Optional<AdventOfCodeDayTask> getLastFinishedDayTask() {
-        return completedDays.values().stream().max(Comparator.comparing(AdventOfCodeDayTask::getLastComplitionTime));
+        int lastFinishedDay = 0;
+        int lastCompletionEpochSecond = 0;
+        for (long mask = completionMask; mask != 0; mask &= mask - 1) {
+            int completionIndex = Long.numberOfTrailingZeros(mask);
+            if (completionDayLevelTs[completionIndex] > lastCompletionEpochSecond) {
+                lastCompletionEpochSecond = completionDayLevelTs[completionIndex];
+                lastFinishedDay = completionIndex / DAY_TASK_LEVELS + 1;
+            }
+        }
+        return dayTaskFor(lastFinishedDay);
     }
 
 
     public Optional<AdventOfCodeDayTask> dayTaskFor(int day) {
-        return Optional.ofNullable(completedDays.get(day));
+        if (!hasCompletedAnyLevel(day)) {
+            return Optional.empty();
+        }
+        return Optional.of(new AdventOfCodeDayTask(day, completionDayLevelTs));
     }
 
 
     @Override
     public int compareTo(LeaderboardMember otherMember) {
-        return new CompareToBuilder().append(this.getLocalScore(), otherMember.getLocalScore())
-                .append(otherMember.getLastStarTs(), this.getLastStarTs()) // smaller first
-                .append(this.getPrintName(), otherMember.getPrintName())
-                .toComparison() * -1;
+        int comparison = Integer.compare(otherMember.getLocalScore(), this.getLocalScore()); // higher score first
+        if (comparison == 0) {
+            comparison = Integer.compare(this.getLastStarTsSeconds(), otherMember.getLastStarTsSeconds());
+        }
+        if (comparison == 0) {
+            comparison = otherMember.getPrintName().compareTo(this.getPrintName());
+        }
+        return comparison;
     }
 
     public String getPrintName() {
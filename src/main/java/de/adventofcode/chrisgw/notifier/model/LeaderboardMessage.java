@@ -0,0 +1,156 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardDelta.MemberDelta;
+import lombok.Value;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+
+
+/**
+ * Sink neutral content of a leaderboard change message. It is rendered once per {@link LeaderboardChange} and then
+ * encoded for each message sink.
+ */
+@Value
+public class LeaderboardMessage {
+
+    public static final DateTimeFormatter DAY_TASK_DATE_TIME_PATTERN = DateTimeFormatter.ofPattern(
+            "E. dd.MM. 'um' HH:mm");
+
+    public static final int MIN_NAME_LENGTH = 6;
+
+    int event;
+    int unlockedDays;
+    int longestName;
+    String renderTime;
+    List<Row> rows;
+    List<MemberChanges> memberChanges;
+
+
+    public static LeaderboardMessage render(LeaderboardChange leaderboardChange) {
+        Leaderboard leaderboard = leaderboardChange.getCurrentLeaderboard();
+        LeaderboardDelta delta = leaderboardChange.getDelta();
+        LocalDateTime now = LocalDateTime.now();
+        int unlockedDays = unlockedDays(leaderboard, now);
+
+        List<Row> rows = new ArrayList<>(delta.getCurrentMemberDeltas().size());
+        int longestName = 0;
+        for (MemberDelta memberDelta : delta.getCurrentMemberDeltas()) {
+            LeaderboardMember member = memberDelta.getMember();
+            String printName = member.getPrintName();
+            longestName = Math.max(longestName, printName.length());
+
+            byte[] completedLevels = new byte[DAY_TASK_COUNT];
+            for (int day = 1; day <= DAY_TASK_COUNT; day++) {
+                completedLevels[day - 1] = (byte) member.completedLevels(day);
+            }
+            FinishedDayTask lastFinishedDayTask = member.getLastFinishedDayTask()
+                    .map(FinishedDayTask::of)
+                    .orElse(null);
+            rows.add(new Row(memberDelta.getCurrentRank() + 1, member.getLocalScore(), printName, completedLevels,
+                    lastFinishedDayTask, RankMarker.of(memberDelta), memberDelta.isChanged()));
+        }
+
+        List<MemberChanges> memberChanges = new ArrayList<>();
+        delta.membersWithNewFinishedDayTasks()
+                .sorted(Comparator.comparing(memberDelta -> memberDelta.getMember().getPrintName()))
+                .forEachOrdered(memberDelta -> {
+                    List<FinishedDayTask> finishedDayTasks = new ArrayList<>();
+                    for (AdventOfCodeDayTask dayTask : memberDelta.getNewFinishedDayTasks()) {
+                        finishedDayTasks.add(FinishedDayTask.of(dayTask));
+                    }
+                    memberChanges.add(new MemberChanges(memberDelta.getMember().getPrintName(),
+                            List.copyOf(finishedDayTasks)));
+                });
+
+        return new LeaderboardMessage(leaderboard.getEvent(), unlockedDays,
+                rows.isEmpty() ? MIN_NAME_LENGTH : longestName, DAY_TASK_DATE_TIME_PATTERN.format(now),
+                List.copyOf(rows), List.copyOf(memberChanges));
+    }
+
+    private static int unlockedDays(Leaderboard leaderboard, LocalDateTime now) {
+        int unlockedDays = 0;
+        while (unlockedDays < DAY_TASK_COUNT && now.isAfter(leaderboard.unlockTimeForDayTask(unlockedDays + 1))) {
+            unlockedDays++;
+        }
+        return unlockedDays;
+    }
+
+
+    public boolean isUnlockedDay(int day) {
+        return day <= unlockedDays;
+    }
+
+
+    public enum RankMarker {
+        NONE, CHANGED, UP, DOWN;
+
+        static RankMarker of(MemberDelta memberDelta) {
+            int currentRanking = memberDelta.getCurrentRank();
+            int previousRanking = memberDelta.getPreviousRank();
+            if (currentRanking == previousRanking && memberDelta.isChanged()) {
+                return CHANGED;
+            } else if (currentRanking == previousRanking || previousRanking == Integer.MAX_VALUE) {
+                return NONE;
+            } else if (currentRanking > previousRanking) {
+                return DOWN;
+            } else {
+                return UP;
+            }
+        }
+    }
+
+
+    @Value
+    public static class Row {
+
+        int position;
+        int localScore;
+        String printName;
+        byte[] completedLevels;
+        FinishedDayTask lastFinishedDayTask;
+        RankMarker rankMarker;
+        boolean changed;
+
+
+        public int completedLevels(int day) {
+            return completedLevels[day - 1];
+        }
+
+    }
+
+
+    @Value
+    public static class MemberChanges {
+
+        String printName;
+        List<FinishedDayTask> finishedDayTasks;
+
+    }
+
+
+    @Value
+    public static class FinishedDayTask {
+
+        int day;
+        int completedLevels;
+        String completionTime;
+
+
+        static FinishedDayTask of(AdventOfCodeDayTask dayTask) {
+            Instant lastComplitionTime = Instant.ofEpochSecond(dayTask.getLastCompletionEpochSecond());
+            LocalDateTime complitionTime = LocalDateTime.ofInstant(lastComplitionTime, ZoneId.systemDefault());
+            return new FinishedDayTask(dayTask.getDay(), dayTask.completedLevels(),
+                    DAY_TASK_DATE_TIME_PATTERN.format(complitionTime));
+        }
+
+    }
+
+}
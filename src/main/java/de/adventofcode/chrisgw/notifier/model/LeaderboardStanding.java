@@ -0,0 +1,26 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+
+/**
+ * Position of a member in standings which were rebuilt from the star event history.
+ */
+@Value
+public class LeaderboardStanding {
+
+    int position;
+    long memberId;
+    String printName;
+    int localScore;
+    int stars;
+    int lastStarTsSeconds;
+
+
+    public Instant getLastStarTs() {
+        return Instant.ofEpochSecond(lastStarTsSeconds);
+    }
+
+}
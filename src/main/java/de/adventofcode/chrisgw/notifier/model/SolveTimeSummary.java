@@ -0,0 +1,27 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+
+/**
+ * Nearest rank quantiles of solve times, either of one day over the members or of one member over the days.
+ */
+@Value
+public class SolveTimeSummary {
+
+    int count;
+    int minSeconds;
+    int p25Seconds;
+    int medianSeconds;
+    int p75Seconds;
+    int p90Seconds;
+    int maxSeconds;
+
+
+    public Duration getMedian() {
+        return Duration.ofSeconds(medianSeconds);
+    }
+
+}
@@ -0,0 +1,29 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+
+/**
+ * A member earned a star, joined or left a leaderboard. Joins and leaves carry day and level {@code 0}.
+ */
+@Value
+public class StarEvent {
+
+    public enum Type {
+        STAR, JOIN, LEAVE
+    }
+
+    Type type;
+    long memberId;
+    int day;
+    int level;
+    int epochSecond;
+
+
+    public Instant getTime() {
+        return Instant.ofEpochSecond(epochSecond);
+    }
+
+}
@@ -0,0 +1,32 @@
+package de.adventofcode.chrisgw.notifier.model;
+
+import lombok.Value;
+
+import java.net.URI;
+
+import static java.util.Objects.requireNonNull;
+
+
+@Value
+public class WebhookRoute {
+
+    public enum Type {
+        SLACK, DISCORD
+    }
+
+    Type type;
+    String url;
+
+
+    public WebhookRoute(Type type, String url) {
+        this.type = requireNonNull(type);
+        this.url = requireNonNull(url);
+    }
+
+
+    @Override
+    public String toString() {
+        return type + "(" + URI.create(url).getHost() + ")"; // the webhook path is a secret
+    }
+
+}
@@ -0,0 +1,98 @@
+package de.adventofcode.chrisgw.notifier.registry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar;
+import de.adventofcode.chrisgw.notifier.model.BoardRegistration;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.model.WebhookRoute;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Reads a board registry file:
+ * <pre>
+ * { "boards": [ { "leaderboardId": 123456, "year": 2024, "sessionId": "53616c...", "backfill": true,
+ *                 "webhooks": [ { "type": "slack", "url": "https://hooks.slack.com/services/..." } ] } ] }
+ * </pre>
+ * {@code year} defaults to the current event, {@code sessionId} and {@code webhooks} to the configured ones,
+ * {@code backfill} to {@code false}. Webhook urls must be absolute http or https urls, a registry with a malformed url
+ * is rejected as a whole.
+ */
+final class BoardRegistryReader {
+
+    private BoardRegistryReader() {
+    }
+
+
+    static List<BoardRegistration> read(ObjectMapper om, Path registryFile) throws IOException {
+        JsonNode rootNode;
+        try (InputStream inputStream = Files.newInputStream(registryFile)) {
+            rootNode = om.readTree(inputStream);
+        }
+        if (rootNode == null || !rootNode.path("boards").isArray()) {
+            throw new IllegalArgumentException("Expect boards array in registry " + registryFile);
+        }
+
+        int currentEventYear = AdventOfCodeCalendar.currentEventYear(Instant.now());
+        List<BoardRegistration> boardRegistrations = new ArrayList<>();
+        for (JsonNode boardNode : rootNode.path("boards")) {
+            String boardName = "board " + boardRegistrations.size() + " of " + registryFile;
+            long leaderboardId = boardNode.path("leaderboardId").asLong(0);
+            if (leaderboardId <= 0) {
+                throw new IllegalArgumentException("Expect positive leaderboardId for " + boardName);
+            }
+            int year = boardNode.path("year").asInt(currentEventYear);
+            String sessionId = StringUtils.trimToNull(boardNode.path("sessionId").asText(null));
+            boolean backfill = boardNode.path("backfill").asBoolean(false);
+
+            List<WebhookRoute> webhookRoutes = new ArrayList<>();
+            for (JsonNode webhookNode : boardNode.path("webhooks")) {
+                String type = webhookNode.path("type").asText("").toUpperCase(Locale.ROOT);
+                String url = webhookNode.path("url").asText("");
+                if (StringUtils.isEmpty(url)) {
+                    throw new IllegalArgumentException("Expect non empty webhook url for " + boardName);
+                }
+                checkWebhookUrl(url, boardName);
+                try {
+                    webhookRoutes.add(new WebhookRoute(WebhookRoute.Type.valueOf(type), url));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Expect webhook type slack or discord for " + boardName, e);
+                }
+            }
+            boardRegistrations.add(new BoardRegistration(new LeaderboardKey(year, leaderboardId), sessionId,
+                    webhookRoutes, backfill));
+        }
+        return boardRegistrations;
+    }
+
+    private static void checkWebhookUrl(String url, String boardName) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            // without the url and the cause, the webhook path is a secret
+            throw new IllegalArgumentException(
+                    "Expect valid webhook url for " + boardName + ": " + e.getReason() + " at index " + e.getIndex());
+        }
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            throw new IllegalArgumentException("Expect http or https webhook url for " + boardName);
+        }
+        if (StringUtils.isEmpty(uri.getHost())) {
+            throw new IllegalArgumentException("Expect webhook url with host for " + boardName);
+        }
+    }
+
+}
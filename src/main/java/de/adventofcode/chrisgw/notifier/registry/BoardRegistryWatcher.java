@@ -0,0 +1,228 @@
+package de.adventofcode.chrisgw.notifier.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.cluster.ClusterNode;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.BoardRegistration;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.service.AocLeaderboardNotifier;
+import de.adventofcode.chrisgw.notifier.service.LeaderboardBackfill;
+import io.reactivex.disposables.Disposable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Keeps the watched leaderboards in sync with the board registry file: boards are added, removed and re-registered
+ * with their new session or webhooks whenever the file changes, without a restart. A registry which can not be read,
+ * e.g. half written or deleted, keeps the current boards. A {@code boardRegistryFile} which is unset disables the
+ * registry.
+ * <p>
+ * In a cluster every node watches the same registry, but only subscribes the boards the {@link ClusterNode} owns.
+ * Boards marked with {@code backfill} get their other event years backfilled by the node which subscribes them.
+ */
+@Slf4j
+@Service
+public class BoardRegistryWatcher {
+
+    private final ObjectMapper om;
+    private final AocLeaderboardNotifier leaderboardNotifier;
+    private final ClusterNode clusterNode;
+    private final LeaderboardBackfill leaderboardBackfill;
+    private final Map<LeaderboardKey, BoardRegistration> boardRegistrations = new LinkedHashMap<>();
+    private final Map<LeaderboardKey, RegisteredBoard> registeredBoards = new LinkedHashMap<>();
+
+    private Path registryFile;
+    private long reloadDelayMillis = 500;
+    private Thread watchThread;
+    private WatchService watchService;
+
+
+    @Inject
+    public BoardRegistryWatcher(ObjectMapper om, AocLeaderboardNotifier leaderboardNotifier, ClusterNode clusterNode,
+            LeaderboardBackfill leaderboardBackfill, NotifierMetrics metrics) {
+        this.om = requireNonNull(om);
+        this.leaderboardNotifier = requireNonNull(leaderboardNotifier);
+        this.clusterNode = requireNonNull(clusterNode);
+        this.leaderboardBackfill = requireNonNull(leaderboardBackfill);
+        metrics.gauge("board_registry_boards", "Boards registered from the board registry file",
+                this::registeredBoardCount);
+    }
+
+
+    public boolean isEnabled() {
+        return registryFile != null;
+    }
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (registryFile == null || watchThread != null) {
+            return;
+        }
+        Path registryDirectory = registryFile.toAbsolutePath().getParent();
+        watchService = registryDirectory.getFileSystem().newWatchService();
+        registryDirectory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        clusterNode.addOwnershipListener(this::reconcile);
+        reload();
+
+        WatchService startedWatchService = watchService;
+        watchThread = new Thread(() -> watchRegistry(startedWatchService), "aoc-registry-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("watch board registry {}", registryFile);
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (watchThread == null) {
+            return;
+        }
+        watchThread.interrupt();
+        watchService.close();
+        watchThread = null;
+        watchService = null;
+        boardRegistrations.clear();
+        registeredBoards.values().forEach(registeredBoard -> registeredBoard.registration.dispose());
+        registeredBoards.clear();
+    }
+
+
+    private void watchRegistry(WatchService watchService) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean registryChanged = isRegistryEvent(watchService.take());
+                // editors save in several steps, reload once the file is quiet
+                WatchKey watchKey;
+                while ((watchKey = watchService.poll(reloadDelayMillis, TimeUnit.MILLISECONDS)) != null) {
+                    registryChanged |= isRegistryEvent(watchKey);
+                }
+                if (registryChanged) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("board registry watch stopped");
+        }
+    }
+
+    private boolean isRegistryEvent(WatchKey watchKey) {
+        boolean registryEvent = false;
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            registryEvent |= watchEvent.kind() == OVERFLOW || registryFile.getFileName().equals(watchEvent.context());
+        }
+        watchKey.reset();
+        return registryEvent;
+    }
+
+
+    public synchronized void reload() {
+        List<BoardRegistration> readBoardRegistrations;
+        try {
+            readBoardRegistrations = BoardRegistryReader.read(om, registryFile);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("could not read board registry {}, keep {} boards", registryFile, boardRegistrations.size(), e);
+            return;
+        }
+
+        Map<LeaderboardKey, BoardRegistration> newBoardRegistrations = new LinkedHashMap<>();
+        for (BoardRegistration boardRegistration : readBoardRegistrations) {
+            LeaderboardKey leaderboardKey = boardRegistration.getLeaderboardKey();
+            if (newBoardRegistrations.putIfAbsent(leaderboardKey, boardRegistration) != null) {
+                log.warn("ignore duplicate registration of {} in {}", leaderboardKey, registryFile);
+            }
+        }
+
+        boardRegistrations.clear();
+        boardRegistrations.putAll(newBoardRegistrations);
+        clusterNode.setBoards(newBoardRegistrations.keySet());
+        log.info("reload board registry {} with {} boards", registryFile, newBoardRegistrations.size());
+        reconcile();
+    }
+
+    /**
+     * Subscribes the registered boards this node owns and disposes the ones which were removed, changed or moved to
+     * another node. A subscription which ended, e.g. by an error, is subscribed again.
+     */
+    public synchronized void reconcile() {
+        int removedCount = 0;
+        Iterator<RegisteredBoard> registeredBoardIterator = registeredBoards.values().iterator();
+        while (registeredBoardIterator.hasNext()) {
+            RegisteredBoard registeredBoard = registeredBoardIterator.next();
+            LeaderboardKey leaderboardKey = registeredBoard.leaderboardKey();
+            if (!registeredBoard.boardRegistration.equals(boardRegistrations.get(leaderboardKey))
+                    || !clusterNode.owns(leaderboardKey) || registeredBoard.registration.isDisposed()) {
+                registeredBoard.registration.dispose();
+                registeredBoardIterator.remove();
+                removedCount++;
+            }
+        }
+        int addedCount = 0;
+        for (BoardRegistration boardRegistration : boardRegistrations.values()) {
+            LeaderboardKey leaderboardKey = boardRegistration.getLeaderboardKey();
+            if (!registeredBoards.containsKey(leaderboardKey) && clusterNode.owns(leaderboardKey)) {
+                Disposable registration = leaderboardNotifier.subscribeLeaderboard(boardRegistration);
+                registeredBoards.put(leaderboardKey, new RegisteredBoard(boardRegistration, registration));
+                addedCount++;
+                if (boardRegistration.isBackfill()) {
+                    leaderboardBackfill.backfillInBackground(boardRegistration);
+                }
+            }
+        }
+        if (addedCount > 0 || removedCount > 0) {
+            log.info("watch {} of {} registered boards, {} subscribed, {} disposed", registeredBoards.size(),
+                    boardRegistrations.size(), addedCount, removedCount);
+        }
+    }
+
+    public synchronized int registeredBoardCount() {
+        return registeredBoards.size();
+    }
+
+
+    @Value("${boardRegistryFile:}")
+    public void setRegistryFile(String registryFile) {
+        this.registryFile = StringUtils.isBlank(registryFile) ? null : Paths.get(registryFile.trim());
+    }
+
+    @Value("${boardRegistryReloadDelayMillis:500}")
+    public void setReloadDelayMillis(long reloadDelayMillis) {
+        if (reloadDelayMillis < 0) {
+            throw new IllegalArgumentException("Expect non negative boardRegistryReloadDelayMillis: "
+                    + reloadDelayMillis);
+        }
+        this.reloadDelayMillis = reloadDelayMillis;
+    }
+
+
+    private static class RegisteredBoard {
+
+        private final BoardRegistration boardRegistration;
+        private final Disposable registration;
+
+
+        private RegisteredBoard(BoardRegistration boardRegistration, Disposable registration) {
+            this.boardRegistration = boardRegistration;
+            this.registration = registration;
+        }
+
+
+        private LeaderboardKey leaderboardKey() {
+            return boardRegistration.getLeaderboardKey();
+        }
+
+    }
+
+}
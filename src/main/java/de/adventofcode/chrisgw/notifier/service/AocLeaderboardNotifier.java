@@ -1,24 +1,35 @@
 package de.adventofcode.chrisgw.notifier.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.metrics.Counter;
+import de.adventofcode.chrisgw.notifier.metrics.Histogram;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar;
+import de.adventofcode.chrisgw.notifier.model.BoardRegistration;
 import de.adventofcode.chrisgw.notifier.model.Leaderboard;
 import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
+import de.adventofcode.chrisgw.notifier.store.SolveTimeStatistics;
+import de.adventofcode.chrisgw.notifier.store.StarEventHistory;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.schedulers.Schedulers;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import java.io.File;
-import java.io.IOException;
-import java.time.LocalDate;
-import java.time.Month;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static de.adventofcode.chrisgw.notifier.service.RxFutures.single;
 import static java.util.Objects.requireNonNull;
 
 
@@ -27,109 +38,500 @@ import static java.util.Objects.requireNonNull;
 public class AocLeaderboardNotifier {
 
     private final AocLeaderboardService leaderboardService;
-    private final ObjectMapper objectMapper;
-    private List<LeaderboardMessageService> messageServices = new ArrayList<>();
+    private final LeaderboardPollScheduler pollScheduler;
+    private final LeaderboardMessageDispatcher messageDispatcher;
+    private final LeaderboardStore leaderboardStore;
+    private final StarEventHistory starEventHistory;
+    private final SolveTimeStatistics solveTimeStatistics;
+    private final SessionCircuitBreaker sessionCircuitBreaker;
+    private final Histogram pollLag;
+    private final Histogram diffLatency;
+    private final Histogram renderLatency;
+    private final Counter pollErrors;
+    private final Counter failedPolls;
+    private final Counter rejectedPolls;
+    private final Counter skippedPolls;
 
-    private final Map<Long, Disposable> registeredLeaderboards = new ConcurrentHashMap<>();
+    private final Map<LeaderboardKey, BoardFeed> boardFeeds = new HashMap<>();
+    private volatile ExecutorService loadExecutor;
+    private volatile List<Scheduler> shardSchedulers;
+    private final List<ExecutorService> shardExecutors = new ArrayList<>();
+    private int loadThreadCount = 4;
+    private int shardCount = Runtime.getRuntime().availableProcessors();
+    private Duration prefetchWindow = Duration.ofSeconds(60);
+    private Duration feedRestartDelay = Duration.ofMinutes(15);
 
 
     @Inject
-    public AocLeaderboardNotifier(AocLeaderboardService leaderboardService, ObjectMapper objectMapper) {
+    public AocLeaderboardNotifier(AocLeaderboardService leaderboardService, LeaderboardPollScheduler pollScheduler,
+            LeaderboardMessageDispatcher messageDispatcher, LeaderboardStore leaderboardStore,
+            StarEventHistory starEventHistory, SolveTimeStatistics solveTimeStatistics,
+            SessionCircuitBreaker sessionCircuitBreaker, NotifierMetrics metrics) {
         this.leaderboardService = requireNonNull(leaderboardService);
-        this.objectMapper = requireNonNull(objectMapper);
+        this.pollScheduler = requireNonNull(pollScheduler);
+        this.messageDispatcher = requireNonNull(messageDispatcher);
+        this.leaderboardStore = requireNonNull(leaderboardStore);
+        this.starEventHistory = requireNonNull(starEventHistory);
+        this.solveTimeStatistics = requireNonNull(solveTimeStatistics);
+        this.sessionCircuitBreaker = requireNonNull(sessionCircuitBreaker);
+        this.pollLag = metrics.histogram("aoc_poll_lag_seconds", "Delay of poll ticks behind their schedule");
+        this.diffLatency = metrics.histogram("leaderboard_diff_seconds", "Leaderboard change detection latency");
+        this.renderLatency = metrics.histogram("leaderboard_render_seconds", "Leaderboard message render latency");
+        this.pollErrors = metrics.counter("aoc_poll_errors_total", "Leaderboard feeds restarted after an error");
+        String pollFailuresHelp = "Failed leaderboard polls, retried with backoff, by reason";
+        this.failedPolls = metrics.counter("aoc_poll_failures_total", pollFailuresHelp, "reason", "error");
+        this.rejectedPolls = metrics.counter("aoc_poll_failures_total", pollFailuresHelp, "reason", "session");
+        this.skippedPolls = metrics.counter("aoc_polls_skipped_total", "Polls skipped by an open session circuit");
+        metrics.gauge("aoc_boards_failing", "Leaderboards whose last poll failed", pollScheduler::failingPollCount);
+        metrics.gauge("aoc_registered_leaderboards", "Leaderboards with at least one subscription",
+                this::registeredLeaderboardCount);
+        metrics.gauge("aoc_leaderboard_subscriptions", "Subscriptions to the leaderboard feeds",
+                this::subscriptionCount);
     }
 
 
-    public synchronized Disposable subscribeLeaderboard(long leaderboardId) {
-        return subscribeLeaderboard(currentAocDate().getYear(), leaderboardId);
+    public Disposable subscribeLeaderboard(long leaderboardId) {
+        return subscribeLeaderboard(currentEventYear(), leaderboardId);
     }
 
-    public synchronized Disposable subscribeLeaderboard(int year, long leaderboardId) {
-        LocalDate currentAocDate = currentAocDate();
-        final int aocYear = Math.min(year, currentAocDate.getYear());
+    public Disposable subscribeLeaderboard(int year, long leaderboardId) {
+        return subscribeLeaderboard(BoardRegistration.withDefaults(new LeaderboardKey(year, leaderboardId)));
+    }
+
+    /**
+     * Sends the changes of the leaderboard to the webhooks of the registration. Registrations of the same year and
+     * leaderboardId share one feed, see {@link #leaderboardChanges}.
+     */
+    public Disposable subscribeLeaderboard(BoardRegistration boardRegistration) {
+        LeaderboardKey leaderboardKey = boardRegistration.getLeaderboardKey();
+        Disposable subscription = leaderboardChanges(boardRegistration).subscribe(
+                leaderboardChange -> messageDispatcher.dispatch(leaderboardChange,
+                        boardRegistration.getWebhookRoutes()),
+                throwable -> log.debug("subscription of {} ended by {}", boardRegistration, throwable.toString()));
 
-        return registeredLeaderboards.computeIfAbsent(leaderboardId, key -> {
-            LeaderboardChange initialLeaderboardChange = loadLeaderboardChange(year, leaderboardId);
-            log.debug("loadLeaderboardChange: {}", initialLeaderboardChange);
+        Instant prefetchDeadline = Instant.now().plus(prefetchWindow);
+        pollScheduler.nextPollTimeFor(leaderboardKey)
+                .filter(nextPollTime -> nextPollTime.isBefore(prefetchDeadline))
+                .ifPresent(nextPollTime -> prefetch(leaderboardKey));
+        return subscription;
+    }
 
-            return BehaviorSubject.interval(0L, 10L, TimeUnit.MINUTES)
-                    .map(interval -> leaderboardService.fetchAdventOfCodeLeaderboard(aocYear, leaderboardId))
-                    .distinctUntilChanged(Leaderboard::lastEarnedStarTs)
-                    .scan(initialLeaderboardChange, (previousLeaderboardChange, currentLeaderboard) -> {
-                        Leaderboard previousLeaderboard = previousLeaderboardChange.getCurrentLeaderboard();
-                        return new LeaderboardChange(previousLeaderboard, currentLeaderboard);
-                    })
-                    .skip(1)
-                    .filter(LeaderboardChange::hasChanged)
-                    .doOnNext(leaderboardChange -> log.debug("next for {}: {}", leaderboardId, leaderboardChange))
-                    .doOnDispose(() -> log.debug("dispose for " + leaderboardId))
-                    .doOnTerminate(() -> log.debug("terminate for " + leaderboardId))
-                    .doOnTerminate(() -> registeredLeaderboards.remove(leaderboardId))
-                    .subscribe(this::notifyAboutLeaderboardChange, this::onErrorByFetchingLeaderboard);
+    /**
+     * Changes of the leaderboard, already saved and recorded in the star history. All subscribers of one year and
+     * leaderboardId share a single poll loop, so further subscribers cost no Advent of Code requests. Each poll uses
+     * the session of the latest subscriber whose circuit is not open, so a replaced session cookie takes over the feed
+     * and a revoked one falls back to the cookie of another subscriber. The feed stops polling once its last
+     * subscriber is disposed.
+     * <p>
+     * The saved state is loaded on the load pool, right away if the first poll is due soon, otherwise once the first
+     * poll tick arrives. Everything after the fetch runs on the shard thread of the leaderboard, so each board is
+     * processed sequentially and boards of different shards in parallel.
+     * <p>
+     * An error after the fetch, e.g. a saved state which can not be loaded, does not end the feed for its subscribers.
+     * The poll loop is restarted after {@code leaderboardFeedRestartMinutes}.
+     */
+    public Observable<LeaderboardChange> leaderboardChanges(BoardRegistration boardRegistration) {
+        requireNonNull(boardRegistration);
+        return Observable.defer(() -> {
+            BoardFeed boardFeed = acquireBoardFeed(boardRegistration);
+            return boardFeed.leaderboardChanges.doFinally(
+                    () -> releaseBoardFeed(boardFeed, boardRegistration.getSessionId()));
         });
     }
 
-    private void onErrorByFetchingLeaderboard(Throwable throwable) {
-        log.error("onErrorByFetchingLeaderboard", throwable);
+    private BoardFeed acquireBoardFeed(BoardRegistration boardRegistration) {
+        synchronized (boardFeeds) {
+            BoardFeed boardFeed = boardFeeds.computeIfAbsent(boardRegistration.getLeaderboardKey(),
+                    leaderboardKey -> new BoardFeed(boardRegistration));
+            boardFeed.subscriberCount++;
+            boardFeed.sessionIds.add(boardRegistration.getSessionId());
+            return boardFeed;
+        }
+    }
+
+    private void releaseBoardFeed(BoardFeed boardFeed, String sessionId) {
+        synchronized (boardFeeds) {
+            boardFeed.sessionIds.remove(sessionId);
+            if (--boardFeed.subscriberCount == 0) {
+                boardFeeds.remove(boardFeed.leaderboardKey, boardFeed);
+            }
+        }
     }
 
+    private Observable<LeaderboardChange> pollLeaderboardChanges(BoardFeed boardFeed) {
+        LeaderboardKey leaderboardKey = boardFeed.leaderboardKey;
+        LeaderboardTracker leaderboardTracker = boardFeed.leaderboardTracker;
+        final int aocYear = Math.min(leaderboardKey.getYear(), currentEventYear());
 
-    private void notifyAboutLeaderboardChange(LeaderboardChange leaderboardChange) {
-        saveLeaderboard(leaderboardChange.getCurrentLeaderboard());
-        for (LeaderboardMessageService messageService : messageServices) {
-            messageService.sendLeaderboardChangeMessage(leaderboardChange);
+        return pollScheduler.pollTicks(leaderboardKey, aocYear)
+                .doOnNext(pollTick -> log.debug("poll {} with lag {}", leaderboardKey, pollTick.lag()))
+                .doOnNext(pollTick -> pollLag.observeNanos(pollTick.lag().toNanos()))
+                .doOnNext(pollTick -> leaderboardTracker.prefetch())
+                .concatMapMaybe(pollTick -> fetchChangedLeaderboard(boardFeed, aocYear))
+                .observeOn(shardScheduler(leaderboardKey))
+                .distinctUntilChanged(Leaderboard::lastEarnedStarTs)
+                .map(currentLeaderboard -> diffLatency.time(() -> {
+                    LeaderboardChange leaderboardChange = leaderboardTracker.nextChange(currentLeaderboard);
+                    leaderboardChange.hasChanged();
+                    return leaderboardChange;
+                }))
+                .filter(LeaderboardChange::hasChanged)
+                .doOnNext(leaderboardChange -> log.debug("next for {}: {}", leaderboardKey, leaderboardChange))
+                .doOnNext(this::recordLeaderboardChange)
+                .doOnNext(leaderboardTracker::changeProcessed)
+                .doOnError(throwable -> onErrorByFetchingLeaderboard(leaderboardKey, throwable))
+                .retryWhen(errors -> errors.flatMap(throwable -> //
+                        Observable.timer(feedRestartDelay.toMillis(), TimeUnit.MILLISECONDS)))
+                .doOnDispose(() -> log.debug("dispose for " + leaderboardKey))
+                .doOnTerminate(() -> log.debug("terminate for " + leaderboardKey));
+    }
+
+    /**
+     * A failed fetch does not end the feed, the board is polled again after a backoff. A rejected session opens the
+     * circuit breaker of the session, which skips the polls of all boards sharing it until it is accepted again, unless
+     * another subscriber of the board has a session whose circuit is closed.
+     */
+    private Maybe<Leaderboard> fetchChangedLeaderboard(BoardFeed boardFeed, int aocYear) {
+        LeaderboardKey leaderboardKey = boardFeed.leaderboardKey;
+        LeaderboardTracker leaderboardTracker = boardFeed.leaderboardTracker;
+        String sessionId = null;
+        boolean allowed = false;
+        for (String subscriberSessionId : boardFeed.pollSessionIds()) {
+            if (sessionCircuitBreaker.allowRequest(subscriberSessionId)) {
+                sessionId = subscriberSessionId;
+                allowed = true;
+                break;
+            }
+        }
+        if (!allowed) {
+            skippedPolls.increment();
+            log.debug("skip poll of {}, the circuits of its sessions are open", leaderboardKey);
+            return Maybe.empty();
         }
+        final String pollSessionId = sessionId;
+        return single(leaderboardService.fetchChangedAdventOfCodeLeaderboardAsync(aocYear,
+                leaderboardKey.getLeaderboardId(), pollSessionId))
+                .doOnSuccess(fetchedLeaderboard -> {
+                    sessionCircuitBreaker.recordSuccess(pollSessionId);
+                    leaderboardTracker.firstPollDone();
+                    pollScheduler.reportPollResult(leaderboardKey, fetchedLeaderboard.isPresent());
+                })
+                .doOnDispose(() -> sessionCircuitBreaker.recordAbandoned(pollSessionId))
+                .flatMapMaybe(fetchedLeaderboard -> fetchedLeaderboard.map(Maybe::just).orElseGet(Maybe::empty))
+                .onErrorResumeNext(throwable -> {
+                    onPollFailure(leaderboardKey, pollSessionId, throwable);
+                    return Maybe.empty();
+                });
     }
 
+    private void onPollFailure(LeaderboardKey leaderboardKey, String sessionId, Throwable throwable) {
+        if (throwable instanceof AocSessionRejectedException) {
+            rejectedPolls.increment();
+            sessionCircuitBreaker.recordRejection(sessionId);
+        } else {
+            failedPolls.increment();
+            sessionCircuitBreaker.recordOtherFailure(sessionId);
+        }
+        pollScheduler.reportPollFailure(leaderboardKey);
+        log.warn("poll of {} failed {} times in a row, retry after backoff: {}", leaderboardKey,
+                pollScheduler.pollFailuresFor(leaderboardKey).orElse(0), throwable.toString());
+    }
 
-    private void saveLeaderboard(Leaderboard currentLeaderboard) {
-        try {
-            int year = currentLeaderboard.getEvent();
-            File leaderboardSaveFile = leaderboardSaveFile(year, currentLeaderboard.getOwnerId());
-            objectMapper.writerFor(Leaderboard.class).writeValue(leaderboardSaveFile, currentLeaderboard);
-        } catch (IOException e) {
-            log.error("could not save leaderboardChange", e);
+    /**
+     * Registers all leaderboards at once, e.g. at startup. The saved states of the boards due soon are loaded in
+     * parallel on the bounded load pool, the others lazily.
+     */
+    public Map<LeaderboardKey, Disposable> subscribeLeaderboards(Collection<LeaderboardKey> leaderboardKeys) {
+        long startNanos = System.nanoTime();
+        Map<LeaderboardKey, Disposable> registrations = new LinkedHashMap<>();
+        for (LeaderboardKey leaderboardKey : leaderboardKeys) {
+            Disposable registration = subscribeLeaderboard(BoardRegistration.withDefaults(leaderboardKey));
+            registrations.put(leaderboardKey, registration);
+        }
+        log.info("registered {} leaderboards in {} ms", registrations.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return registrations;
+    }
+
+
+    public Optional<Duration> timeToFirstPollFor(LeaderboardKey leaderboardKey) {
+        synchronized (boardFeeds) {
+            return Optional.ofNullable(boardFeeds.get(leaderboardKey))
+                    .map(boardFeed -> boardFeed.leaderboardTracker.timeToFirstPoll);
         }
     }
 
+    public Map<LeaderboardKey, Duration> timeToFirstPolls() {
+        Map<LeaderboardKey, Duration> timeToFirstPolls = new HashMap<>();
+        synchronized (boardFeeds) {
+            boardFeeds.forEach((leaderboardKey, boardFeed) -> {
+                Duration timeToFirstPoll = boardFeed.leaderboardTracker.timeToFirstPoll;
+                if (timeToFirstPoll != null) {
+                    timeToFirstPolls.put(leaderboardKey, timeToFirstPoll);
+                }
+            });
+        }
+        return timeToFirstPolls;
+    }
+
+    public int registeredLeaderboardCount() {
+        synchronized (boardFeeds) {
+            return boardFeeds.size();
+        }
+    }
+
+    public int subscriptionCount() {
+        synchronized (boardFeeds) {
+            return boardFeeds.values().stream().mapToInt(boardFeed -> boardFeed.subscriberCount).sum();
+        }
+    }
+
+    private void prefetch(LeaderboardKey leaderboardKey) {
+        BoardFeed boardFeed;
+        synchronized (boardFeeds) {
+            boardFeed = boardFeeds.get(leaderboardKey);
+        }
+        if (boardFeed != null) {
+            boardFeed.leaderboardTracker.prefetch();
+        }
+    }
+
+
+    private void onErrorByFetchingLeaderboard(LeaderboardKey leaderboardKey, Throwable throwable) {
+        pollErrors.increment();
+        leaderboardService.forgetFetchValidators(leaderboardKey); // the restarted feed fetches the change again
+        log.error("onErrorByFetchingLeaderboard {}, restart its feed in {} s", leaderboardKey,
+                feedRestartDelay.getSeconds(), throwable);
+    }
+
+
+    /**
+     * Runs once per change, however many subscribers share the feed.
+     */
+    private void recordLeaderboardChange(LeaderboardChange leaderboardChange) {
+        renderLatency.time(leaderboardChange::getMessage);
+        saveLeaderboard(leaderboardChange.getCurrentLeaderboard());
+        starEventHistory.record(leaderboardChange);
+        solveTimeStatistics.record(leaderboardChange);
+    }
+
+
+    private void saveLeaderboard(Leaderboard currentLeaderboard) {
+        leaderboardStore.save(currentLeaderboard).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                log.error("could not save leaderboardChange", throwable);
+            }
+        });
+    }
+
     private LeaderboardChange loadLeaderboardChange(int year, final long leaderboardId) {
-        File leaderboardSaveFile = leaderboardSaveFile(year, leaderboardId);
-        if (!leaderboardSaveFile.exists()) {
-            log.info("loadLeaderboardChange file doesn't exists: " + leaderboardSaveFile.getAbsolutePath());
-            Leaderboard currentLeaderboard = new Leaderboard();
-            currentLeaderboard.setEvent(year);
-            currentLeaderboard.setOwnerId(leaderboardId);
-            return new LeaderboardChange(null, currentLeaderboard);
+        return leaderboardStore.load(new LeaderboardKey(year, leaderboardId))
+                .map(currentLeaderboard -> new LeaderboardChange(currentLeaderboard, currentLeaderboard))
+                .orElseGet(() -> {
+                    log.info("loadLeaderboardChange no stored leaderboard for {}/{}", year, leaderboardId);
+                    Leaderboard currentLeaderboard = new Leaderboard();
+                    currentLeaderboard.setEvent(year);
+                    currentLeaderboard.setOwnerId(leaderboardId);
+                    return new LeaderboardChange(null, currentLeaderboard);
+                });
+    }
+
+
+    private ExecutorService loadExecutor() {
+        ExecutorService currentLoadExecutor = loadExecutor;
+        if (currentLoadExecutor != null) {
+            return currentLoadExecutor;
+        }
+        synchronized (this) {
+            if (loadExecutor == null) {
+                loadExecutor = Executors.newFixedThreadPool(loadThreadCount, new BasicThreadFactory.Builder() //
+                        .namingPattern("aoc-load-%d")
+                        .daemon(true)
+                        .build());
+            }
+            return loadExecutor;
+        }
+    }
+
+    private Scheduler shardScheduler(LeaderboardKey leaderboardKey) {
+        List<Scheduler> currentShardSchedulers = shardSchedulers();
+        return currentShardSchedulers.get(Math.floorMod(leaderboardKey.hashCode(), currentShardSchedulers.size()));
+    }
+
+    private List<Scheduler> shardSchedulers() {
+        List<Scheduler> currentShardSchedulers = shardSchedulers;
+        if (currentShardSchedulers != null) {
+            return currentShardSchedulers;
+        }
+        synchronized (this) {
+            if (shardSchedulers == null) {
+                List<Scheduler> startedShardSchedulers = new ArrayList<>(shardCount);
+                for (int shard = 0; shard < shardCount; shard++) {
+                    ExecutorService shardExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                            .namingPattern("aoc-shard-" + shard)
+                            .daemon(true)
+                            .build());
+                    shardExecutors.add(shardExecutor);
+                    startedShardSchedulers.add(Schedulers.from(shardExecutor));
+                }
+                shardSchedulers = List.copyOf(startedShardSchedulers);
+            }
+            return shardSchedulers;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+            loadExecutor = null;
         }
+        shardExecutors.forEach(ExecutorService::shutdownNow);
+        shardExecutors.clear();
+        shardSchedulers = null;
+    }
+
+
+    private static int currentEventYear() {
+        return AdventOfCodeCalendar.currentEventYear(Instant.now());
+    }
+
 
-        try {
-            Leaderboard currentLeaderboard = objectMapper.readerFor(Leaderboard.class).readValue(leaderboardSaveFile);
-            return new LeaderboardChange(currentLeaderboard, currentLeaderboard);
-        } catch (IOException e) {
-            throw new RuntimeException("could not load LeaderboardChange", e);
+    @Value("${leaderboardLoadThreadCount:4}")
+    public void setLoadThreadCount(int loadThreadCount) {
+        if (loadThreadCount <= 0) {
+            throw new IllegalArgumentException("Expect positive leaderboardLoadThreadCount: " + loadThreadCount);
         }
+        this.loadThreadCount = loadThreadCount;
     }
 
-    private File leaderboardSaveFile(int year, long leaderboardId) {
-        File leaderboardSaveFile = new File("aocLeaderboards/AocLeaderboard_" + year + "_" + leaderboardId + ".json");
-        leaderboardSaveFile.getParentFile().mkdirs();
-        return leaderboardSaveFile;
+    @Value("${leaderboardShardCount:0}")
+    public void setShardCount(int shardCount) {
+        if (shardCount < 0) {
+            throw new IllegalArgumentException("Expect non negative leaderboardShardCount: " + shardCount);
+        }
+        this.shardCount = shardCount == 0 ? Runtime.getRuntime().availableProcessors() : shardCount;
     }
 
+    @Value("${leaderboardPrefetchSeconds:60}")
+    public void setPrefetchSeconds(long prefetchSeconds) {
+        this.prefetchWindow = Duration.ofSeconds(prefetchSeconds);
+    }
 
-    private LocalDate currentAocDate() {
-        LocalDate now = LocalDate.now();
-        LocalDate thisYearAocStartDate = LocalDate.of(now.getYear(), Month.DECEMBER, 1);
-        if (now.isBefore(thisYearAocStartDate)) {
-            thisYearAocStartDate = thisYearAocStartDate.minusYears(1);
+    @Value("${leaderboardFeedRestartMinutes:15}")
+    public void setFeedRestartMinutes(long feedRestartMinutes) {
+        if (feedRestartMinutes <= 0) {
+            throw new IllegalArgumentException("Expect positive leaderboardFeedRestartMinutes: " + feedRestartMinutes);
         }
-        return thisYearAocStartDate;
+        this.feedRestartDelay = Duration.ofMinutes(feedRestartMinutes);
     }
 
 
-    @Inject
-    public void setMessageServices(List<LeaderboardMessageService> messageServices) {
-        this.messageServices = requireNonNull(messageServices);
+    /**
+     * One shared poll loop per year and leaderboardId, {@code subscriberCount} and {@code sessionIds} are guarded by
+     * {@code boardFeeds}.
+     */
+    private class BoardFeed {
+
+        private final LeaderboardKey leaderboardKey;
+        private final LeaderboardTracker leaderboardTracker;
+        private final Observable<LeaderboardChange> leaderboardChanges;
+        /** sessions of the subscribers in subscription order, {@code null} for the configured one */
+        private final List<String> sessionIds = new ArrayList<>();
+        private int subscriberCount;
+
+
+        private BoardFeed(BoardRegistration boardRegistration) {
+            this.leaderboardKey = boardRegistration.getLeaderboardKey();
+            this.leaderboardTracker = new LeaderboardTracker(leaderboardKey.getYear(),
+                    leaderboardKey.getLeaderboardId());
+            this.leaderboardChanges = pollLeaderboardChanges(this).share();
+        }
+
+
+        /**
+         * @return the distinct sessions of the subscribers, latest subscriber first
+         */
+        private List<String> pollSessionIds() {
+            List<String> pollSessionIds = new ArrayList<>();
+            synchronized (boardFeeds) {
+                for (int i = sessionIds.size() - 1; i >= 0; i--) {
+                    if (!pollSessionIds.contains(sessionIds.get(i))) {
+                        pollSessionIds.add(sessionIds.get(i));
+                    }
+                }
+            }
+            return pollSessionIds;
+        }
+
+    }
+
+
+    /**
+     * Per feed state. The saved leaderboard is loaded at most once, {@link #nextChange} is only called sequentially
+     * from the poll pipeline. A change becomes the base of the next one only once it was processed, so a change
+     * whose processing failed is detected again after the restart of the feed.
+     */
+    private class LeaderboardTracker {
+
+        private final int year;
+        private final long leaderboardId;
+        private final long registrationNanos = System.nanoTime();
+        private final AtomicReference<CompletableFuture<LeaderboardChange>> initialLeaderboardChange //
+                = new AtomicReference<>();
+        private volatile Duration timeToFirstPoll;
+        private LeaderboardChange lastLeaderboardChange;
+
+
+        private LeaderboardTracker(int year, long leaderboardId) {
+            this.year = year;
+            this.leaderboardId = leaderboardId;
+        }
+
+
+        private void prefetch() {
+            if (initialLeaderboardChange.get() != null) {
+                return;
+            }
+            CompletableFuture<LeaderboardChange> loadedLeaderboardChange = new CompletableFuture<>();
+            if (initialLeaderboardChange.compareAndSet(null, loadedLeaderboardChange)) {
+                loadExecutor().execute(() -> {
+                    try {
+                        loadedLeaderboardChange.complete(loadLeaderboardChange(year, leaderboardId));
+                    } catch (RuntimeException e) {
+                        loadedLeaderboardChange.completeExceptionally(e);
+                    }
+                });
+            }
+        }
+
+        private void firstPollDone() {
+            if (timeToFirstPoll == null) {
+                timeToFirstPoll = Duration.ofNanos(System.nanoTime() - registrationNanos);
+                log.debug("time to first poll for {}: {} ms", leaderboardId, timeToFirstPoll.toMillis());
+            }
+        }
+
+        private LeaderboardChange nextChange(Leaderboard currentLeaderboard) {
+            if (lastLeaderboardChange == null) {
+                prefetch();
+                CompletableFuture<LeaderboardChange> loadedLeaderboardChange = initialLeaderboardChange.get();
+                try {
+                    lastLeaderboardChange = loadedLeaderboardChange.join();
+                } catch (CompletionException e) {
+                    initialLeaderboardChange.compareAndSet(loadedLeaderboardChange, null); // load again on restart
+                    throw e;
+                }
+                log.debug("loadLeaderboardChange: {}", lastLeaderboardChange);
+            }
+            Leaderboard previousLeaderboard = lastLeaderboardChange.getCurrentLeaderboard();
+            return new LeaderboardChange(previousLeaderboard, currentLeaderboard);
+        }
+
+        private void changeProcessed(LeaderboardChange leaderboardChange) {
+            lastLeaderboardChange = leaderboardChange;
+        }
+
     }
 
 }
@@ -1,24 +1,29 @@
 package de.adventofcode.chrisgw.notifier.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.http.HttpStatusException;
+import de.adventofcode.chrisgw.notifier.http.HttpTransport;
+import de.adventofcode.chrisgw.notifier.http.HttpTransportRequest;
+import de.adventofcode.chrisgw.notifier.http.HttpTransportResponse;
+import de.adventofcode.chrisgw.notifier.metrics.Counter;
+import de.adventofcode.chrisgw.notifier.metrics.Histogram;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
 import de.adventofcode.chrisgw.notifier.model.Leaderboard;
-import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.core.Cookie;
-import javax.ws.rs.core.HttpHeaders;
-import javax.ws.rs.core.MediaType;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Objects.requireNonNull;
 
@@ -27,65 +32,204 @@ import static java.util.Objects.requireNonNull;
 @Service
 public class AocLeaderboardService {
 
-    public static final String ADVENT_OF_CODE_LEADERBIARD_URL = "https://adventofcode.com/{year}/leaderboard/private/view/{leaderboardId}.json";
+    public static final String ADVENT_OF_CODE_URL = "https://adventofcode.com";
+    public static final String ADVENT_OF_CODE_LEADERBOARD_PATH //
+            = "/{year}/leaderboard/private/view/{leaderboardId}.json";
 
-    private Client client;
+    private static final int NOT_MODIFIED = 304;
+
+    private HttpTransport httpTransport;
     private ObjectMapper om;
-    private Cookie sessionCookie;
-    private Map<String, String> memberNames = new HashMap<>();
+    private MemberDirectory memberDirectory;
+    private String sessionId;
+    private String adventOfCodeUrl = ADVENT_OF_CODE_URL;
+    private final Map<LeaderboardKey, FetchValidators> fetchValidators = new ConcurrentHashMap<>();
+
+    private final Histogram fetchLatency;
+    private final Histogram parseLatency;
+    private final Counter notModifiedPolls;
+    private final Counter unchangedPolls;
+    private final Counter changedPolls;
+    private final Counter fetchErrors;
 
 
     @Inject
-    public AocLeaderboardService(Client client, ObjectMapper om) {
-        this.client = requireNonNull(client);
+    public AocLeaderboardService(HttpTransport httpTransport, ObjectMapper om, MemberDirectory memberDirectory,
+            NotifierMetrics metrics) {
+        this.httpTransport = requireNonNull(httpTransport);
         this.om = requireNonNull(om);
+        this.memberDirectory = requireNonNull(memberDirectory);
+        this.fetchLatency = metrics.histogram("aoc_fetch_seconds", "Advent of Code leaderboard request latency");
+        this.parseLatency = metrics.histogram("aoc_parse_seconds", "Leaderboard JSON parse latency");
+        String pollsHelp = "Leaderboard polls by result";
+        this.notModifiedPolls = metrics.counter("aoc_polls_total", pollsHelp, "result", "not_modified");
+        this.unchangedPolls = metrics.counter("aoc_polls_total", pollsHelp, "result", "unchanged");
+        this.changedPolls = metrics.counter("aoc_polls_total", pollsHelp, "result", "changed");
+        this.fetchErrors = metrics.counter("aoc_fetch_errors_total", "Failed Advent of Code leaderboard requests");
     }
 
 
     public Leaderboard fetchAdventOfCodeLeaderboard(int year, long leaderboardId) {
+        return join(fetchAdventOfCodeLeaderboardAsync(year, leaderboardId, null));
+    }
+
+    /**
+     * @param sessionId session cookie of a member of the leaderboard, {@code null} for the configured one
+     */
+    public CompletableFuture<Leaderboard> fetchAdventOfCodeLeaderboardAsync(int year, long leaderboardId,
+            String sessionId) {
         log.debug("fetchAdventOfCodeLeaderboard with leaderboardId={}", leaderboardId);
-        Leaderboard leaderboard = client.target(ADVENT_OF_CODE_LEADERBIARD_URL)
-                .resolveTemplate("leaderboardId", leaderboardId)
-                .resolveTemplate("year", year)
-                .request(MediaType.APPLICATION_JSON)
-                .header(HttpHeaders.COOKIE, sessionCookie)
-                .get(Leaderboard.class);
-        leaderboard.members().forEach(this::setPrintName);
-        log.debug("fetchAdventOfCodeLeaderboard success: {}", leaderboard);
-        return leaderboard;
+        LeaderboardKey leaderboardKey = new LeaderboardKey(year, leaderboardId);
+        String boardSessionId = sessionId != null ? sessionId : this.sessionId;
+        if (boardSessionId == null) {
+            return CompletableFuture.failedFuture(sessionIdUnset(leaderboardKey));
+        }
+        return send(leaderboardRequest(leaderboardKey, boardSessionId)).thenApply(response -> {
+            checkResponse(leaderboardKey, response);
+            Leaderboard leaderboard = parseLeaderboard(leaderboardKey, response.getBody());
+            log.debug("fetchAdventOfCodeLeaderboard success: {}", leaderboard);
+            return leaderboard;
+        }).whenComplete(this::countFetchError);
     }
 
-    private void setPrintName(LeaderboardMember member) {
-        String name = member.getName();
-        String printName = memberNames.getOrDefault(name, null);
-        member.setPrintName(printName);
+    public Optional<Leaderboard> fetchChangedAdventOfCodeLeaderboard(int year, long leaderboardId) {
+        return join(fetchChangedAdventOfCodeLeaderboardAsync(year, leaderboardId, null));
     }
 
+    /**
+     * Fetches the leaderboard conditionally and returns it only if it changed since the last call for the same year
+     * and leaderboardId. Unchanged responses, either 304 or a body with the same checksum, are never parsed.
+     *
+     * @param sessionId session cookie of a member of the leaderboard, {@code null} for the configured one
+     */
+    public CompletableFuture<Optional<Leaderboard>> fetchChangedAdventOfCodeLeaderboardAsync(int year,
+            long leaderboardId, String sessionId) {
+        log.debug("fetchChangedAdventOfCodeLeaderboard with leaderboardId={}", leaderboardId);
+        LeaderboardKey leaderboardKey = new LeaderboardKey(year, leaderboardId);
+        String boardSessionId = sessionId != null ? sessionId : this.sessionId;
+        if (boardSessionId == null) {
+            return CompletableFuture.failedFuture(sessionIdUnset(leaderboardKey));
+        }
+        FetchValidators previousValidators = fetchValidators.get(leaderboardKey);
+        HttpTransportRequest request = leaderboardRequest(leaderboardKey, boardSessionId);
+        if (previousValidators != null) {
+            request = previousValidators.applyTo(request);
+        }
 
-    @Value("${sessionId}")
-    public void setSessionIdCookie(String sessionId) {
-        if (StringUtils.isEmpty(sessionId)) {
-            throw new IllegalArgumentException("Expect non empty sessionId: " + sessionId);
+        return send(request).thenApply(response -> {
+            if (response.getStatus() == NOT_MODIFIED) {
+                notModifiedPolls.increment();
+                log.debug("fetchChangedAdventOfCodeLeaderboard not modified: {}", leaderboardKey);
+                return Optional.<Leaderboard> empty();
+            }
+            checkResponse(leaderboardKey, response);
+
+            FetchValidators currentValidators = FetchValidators.of(response);
+            if (currentValidators.hasSameBody(previousValidators)) {
+                fetchValidators.put(leaderboardKey, currentValidators);
+                unchangedPolls.increment();
+                log.debug("fetchChangedAdventOfCodeLeaderboard unchanged body: {}", leaderboardKey);
+                return Optional.<Leaderboard> empty();
+            }
+
+            Leaderboard leaderboard = parseLeaderboard(leaderboardKey, response.getBody());
+            fetchValidators.put(leaderboardKey, currentValidators);
+            changedPolls.increment();
+            log.debug("fetchChangedAdventOfCodeLeaderboard success: {}", leaderboard);
+            return Optional.of(leaderboard);
+        }).whenComplete(this::countFetchError);
+    }
+
+
+    /**
+     * Makes the next fetch of the leaderboard unconditional, e.g. because a fetched change could not be processed
+     * and would otherwise be answered with 304 or the same body again.
+     */
+    public void forgetFetchValidators(LeaderboardKey leaderboardKey) {
+        fetchValidators.remove(requireNonNull(leaderboardKey));
+    }
+
+
+    private CompletableFuture<HttpTransportResponse> send(HttpTransportRequest request) {
+        long startNanos = System.nanoTime();
+        return httpTransport.send(request).whenComplete((response, throwable) -> fetchLatency.observeSince(startNanos));
+    }
+
+    private HttpTransportRequest leaderboardRequest(LeaderboardKey leaderboardKey, String sessionId) {
+        URI leaderboardUri = URI.create(adventOfCodeUrl + ADVENT_OF_CODE_LEADERBOARD_PATH
+                .replace("{year}", String.valueOf(leaderboardKey.getYear()))
+                .replace("{leaderboardId}", String.valueOf(leaderboardKey.getLeaderboardId())));
+        return HttpTransportRequest.get(leaderboardUri)
+                .withHeader("Accept", "application/json")
+                .withHeader("Cookie", "session=" + sessionId);
+    }
+
+    /**
+     * Advent of Code answers requests without a valid session with 400 or redirects them to an HTML page.
+     */
+    private static void checkResponse(LeaderboardKey leaderboardKey, HttpTransportResponse response) {
+        int status = response.getStatus();
+        String contentType = StringUtils.defaultString(response.header("Content-Type"));
+        if (status == 400 || status == 401 || status == 403
+                || response.isSuccessful() && contentType.startsWith("text/html")) {
+            throw new AocSessionRejectedException("session was rejected for leaderboard " + leaderboardKey, status);
+        } else if (!response.isSuccessful()) {
+            throw new HttpStatusException("could not fetch leaderboard " + leaderboardKey, status);
         }
-        this.sessionCookie = new Cookie("session", sessionId);
     }
 
+    private static IllegalStateException sessionIdUnset(LeaderboardKey leaderboardKey) {
+        return new IllegalStateException("sessionId was unset for leaderboard " + leaderboardKey);
+    }
 
-    @Value( "${memberNamesJsonFilePath}")
-    public void setMemberNamesResource(Resource memberNamesResource) {
-        if (!memberNamesResource.isReadable()) {
-            log.warn("could not read memberNames from: " + memberNamesResource);
-            return;
+    private Leaderboard parseLeaderboard(LeaderboardKey leaderboardKey, byte[] responseBody) {
+        long parseStartNanos = System.nanoTime();
+        try {
+            Leaderboard leaderboard = om.readerFor(Leaderboard.class).readValue(responseBody);
+            parseLatency.observeSince(parseStartNanos);
+            leaderboard.members().forEach(memberDirectory::identify);
+            return leaderboard;
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not parse leaderboard " + leaderboardKey, e);
         }
-        try (InputStream inputStream = memberNamesResource.getInputStream()) {
-            JsonNode rootNode = om.readTree(inputStream);
-            for (JsonNode jsonNode : rootNode) {
-                String userName = jsonNode.path("userName").asText();
-                String name = jsonNode.path("name").asText();
-                memberNames.put(userName, name);
+    }
+
+    private void countFetchError(Object result, Throwable throwable) {
+        if (throwable != null) {
+            fetchErrors.increment();
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Session cookie for leaderboards registered without their own, may be unset if every registration has one.
+     */
+    @Value("${sessionId:}")
+    public void setSessionIdCookie(String sessionId) {
+        this.sessionId = StringUtils.trimToNull(sessionId);
+    }
+
+    /**
+     * Base URL of Advent of Code, e.g. a local stub server for load tests.
+     */
+    @Value("${adventOfCodeUrl:" + ADVENT_OF_CODE_URL + "}")
+    public void setAdventOfCodeUrl(String adventOfCodeUrl) {
+        this.adventOfCodeUrl = StringUtils.removeEnd(StringUtils.trimToNull(requireNonNull(adventOfCodeUrl)), "/");
+        if (this.adventOfCodeUrl == null) {
+            throw new IllegalArgumentException("Expect adventOfCodeUrl: " + adventOfCodeUrl);
         }
     }
 
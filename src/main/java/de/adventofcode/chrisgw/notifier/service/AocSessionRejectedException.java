@@ -0,0 +1,16 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.http.HttpStatusException;
+
+
+/**
+ * Advent of Code did not accept the session cookie, it expired or was revoked. Retrying does not help until the
+ * cookie is replaced.
+ */
+public class AocSessionRejectedException extends HttpStatusException {
+
+    public AocSessionRejectedException(String message, int status) {
+        super(message, status);
+    }
+
+}
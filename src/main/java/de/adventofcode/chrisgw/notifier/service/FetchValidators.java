@@ -0,0 +1,42 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.http.HttpTransportRequest;
+import de.adventofcode.chrisgw.notifier.http.HttpTransportResponse;
+import lombok.Value;
+
+import java.util.zip.CRC32C;
+
+
+@Value
+class FetchValidators {
+
+    String entityTag;
+    String lastModified;
+    int bodyLength;
+    long bodyChecksum;
+
+
+    static FetchValidators of(HttpTransportResponse response) {
+        byte[] responseBody = response.getBody();
+        CRC32C checksum = new CRC32C();
+        checksum.update(responseBody, 0, responseBody.length);
+        return new FetchValidators(response.header("ETag"), response.header("Last-Modified"), responseBody.length,
+                checksum.getValue());
+    }
+
+
+    HttpTransportRequest applyTo(HttpTransportRequest request) {
+        if (entityTag != null) {
+            request = request.withHeader("If-None-Match", entityTag);
+        }
+        if (lastModified != null) {
+            request = request.withHeader("If-Modified-Since", lastModified);
+        }
+        return request;
+    }
+
+    boolean hasSameBody(FetchValidators other) {
+        return other != null && bodyLength == other.bodyLength && bodyChecksum == other.bodyChecksum;
+    }
+
+}
@@ -0,0 +1,155 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.metrics.Counter;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar;
+import de.adventofcode.chrisgw.notifier.model.BoardRegistration;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static de.adventofcode.chrisgw.notifier.service.RxFutures.single;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * One-shot backfill of a leaderboard for every event year since {@link AdventOfCodeCalendar#FIRST_EVENT_YEAR}. At most
+ * {@code backfillConcurrency} years are fetched at once, each request waits for the Advent of Code request budget of
+ * the {@link LeaderboardPollScheduler} and each year is saved as soon as it arrives. Years already in the store are
+ * skipped, so an interrupted backfill resumes where it stopped.
+ * <p>
+ * The daemon backfills the registry boards marked with {@code backfill} in the background, sharing the request budget
+ * and the store with the polls. The {@code backfill} command of {@code AocLeaderboardNotifierConfig} does the same
+ * once for a store which no daemon is using.
+ */
+@Slf4j
+@Service
+public class LeaderboardBackfill {
+
+    public enum Outcome {
+        FETCHED, ALREADY_STORED, FAILED
+    }
+
+
+    private final AocLeaderboardService leaderboardService;
+    private final LeaderboardPollScheduler pollScheduler;
+    private final LeaderboardStore leaderboardStore;
+    private final Counter fetchedYears;
+    private final Counter failedYears;
+    private final Set<Long> runningLeaderboardIds = ConcurrentHashMap.newKeySet();
+
+    private int concurrency = 2;
+
+
+    @Inject
+    public LeaderboardBackfill(AocLeaderboardService leaderboardService, LeaderboardPollScheduler pollScheduler,
+            LeaderboardStore leaderboardStore, NotifierMetrics metrics) {
+        this.leaderboardService = requireNonNull(leaderboardService);
+        this.pollScheduler = requireNonNull(pollScheduler);
+        this.leaderboardStore = requireNonNull(leaderboardStore);
+        String backfillHelp = "Leaderboard years backfilled by outcome";
+        this.fetchedYears = metrics.counter("backfill_years_total", backfillHelp, "outcome", "fetched");
+        this.failedYears = metrics.counter("backfill_years_total", backfillHelp, "outcome", "failed");
+    }
+
+
+    /**
+     * Backfills every event year up to the current one and blocks until all are done.
+     *
+     * @param sessionId session cookie of a member of the leaderboard, {@code null} for the configured one
+     */
+    public Map<LeaderboardKey, Outcome> backfill(long leaderboardId, String sessionId) {
+        int lastEventYear = AdventOfCodeCalendar.currentEventYear(Instant.now());
+        List<LeaderboardKey> leaderboardKeys = IntStream.rangeClosed(AdventOfCodeCalendar.FIRST_EVENT_YEAR,
+                lastEventYear).mapToObj(year -> new LeaderboardKey(year, leaderboardId)).collect(toList());
+        return backfill(leaderboardKeys, sessionId);
+    }
+
+    /**
+     * Backfills the other event years of a watched leaderboard without blocking, its own year is stored by its feed.
+     * A backfill of the same leaderboardId which is still running is not started again.
+     */
+    public void backfillInBackground(BoardRegistration boardRegistration) {
+        LeaderboardKey watchedLeaderboardKey = boardRegistration.getLeaderboardKey();
+        long leaderboardId = watchedLeaderboardKey.getLeaderboardId();
+        if (!runningLeaderboardIds.add(leaderboardId)) {
+            return;
+        }
+        int lastEventYear = AdventOfCodeCalendar.currentEventYear(Instant.now());
+        List<LeaderboardKey> leaderboardKeys = IntStream.rangeClosed(AdventOfCodeCalendar.FIRST_EVENT_YEAR,
+                lastEventYear).mapToObj(year -> new LeaderboardKey(year, leaderboardId))
+                .filter(leaderboardKey -> !leaderboardKey.equals(watchedLeaderboardKey))
+                .collect(toList());
+        Schedulers.io().scheduleDirect(() -> {
+            try {
+                backfill(leaderboardKeys, boardRegistration.getSessionId());
+            } catch (RuntimeException e) {
+                log.error("could not backfill leaderboard {}", leaderboardId, e);
+            } finally {
+                runningLeaderboardIds.remove(leaderboardId);
+            }
+        });
+    }
+
+    /**
+     * @return the outcome of each leaderboard in the given order, a failed year does not stop the others
+     */
+    public Map<LeaderboardKey, Outcome> backfill(Collection<LeaderboardKey> leaderboardKeys, String sessionId) {
+        long startNanos = System.nanoTime();
+        Map<LeaderboardKey, Outcome> outcomes = new ConcurrentHashMap<>();
+        Flowable.fromIterable(leaderboardKeys)
+                .flatMapSingle(leaderboardKey -> backfillYear(leaderboardKey, sessionId)
+                        .doOnSuccess(outcome -> outcomes.put(leaderboardKey, outcome)), false, concurrency)
+                .blockingSubscribe();
+
+        Map<LeaderboardKey, Outcome> orderedOutcomes = new LinkedHashMap<>();
+        leaderboardKeys.forEach(leaderboardKey -> orderedOutcomes.put(leaderboardKey, outcomes.get(leaderboardKey)));
+        log.info("backfilled {} leaderboards in {} ms: {}", orderedOutcomes.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), orderedOutcomes);
+        return orderedOutcomes;
+    }
+
+    private Single<Outcome> backfillYear(LeaderboardKey leaderboardKey, String sessionId) {
+        return Single.defer(() -> {
+            if (leaderboardStore.load(leaderboardKey).isPresent()) {
+                log.debug("skip backfill of stored leaderboard {}", leaderboardKey);
+                return Single.just(Outcome.ALREADY_STORED);
+            }
+            return pollScheduler.pollOnce(leaderboardKey)
+                    .flatMap(pollTick -> single(leaderboardService.fetchAdventOfCodeLeaderboardAsync(
+                            leaderboardKey.getYear(), leaderboardKey.getLeaderboardId(), sessionId)))
+                    .flatMap(leaderboard -> single(leaderboardStore.save(leaderboard)
+                            .thenApply(ignored -> Outcome.FETCHED)))
+                    .doOnSuccess(outcome -> fetchedYears.increment())
+                    .doOnSuccess(outcome -> log.info("backfilled leaderboard {}", leaderboardKey))
+                    .onErrorReturn(throwable -> {
+                        failedYears.increment();
+                        log.warn("could not backfill leaderboard {}: {}", leaderboardKey, throwable.toString());
+                        return Outcome.FAILED;
+                    });
+        }).subscribeOn(Schedulers.io()); // the store loads from disk
+    }
+
+
+    @Value("${backfillConcurrency:2}")
+    public void setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Expect positive backfillConcurrency: " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+}
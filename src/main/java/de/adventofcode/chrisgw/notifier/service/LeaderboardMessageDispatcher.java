@@ -0,0 +1,237 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.metrics.Counter;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import de.adventofcode.chrisgw.notifier.model.WebhookRoute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Delivers each {@link LeaderboardChange} to every {@link LeaderboardMessageService}, or to the sinks of its webhook
+ * routes, through a bounded queue and a dedicated worker thread per sink, so a slow sink neither blocks the others nor
+ * the leaderboard polling.
+ */
+@Slf4j
+@Service
+public class LeaderboardMessageDispatcher {
+
+    public enum QueueFullPolicy {
+        DROP_NEWEST, DROP_OLDEST
+    }
+
+    private final NotifierMetrics metrics;
+    private List<LeaderboardMessageService> messageServices = new ArrayList<>();
+    private volatile List<SinkWorker> sinkWorkers;
+    private int queueCapacity = 64;
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.DROP_OLDEST;
+    private long slowDeliveryWarnMillis = 10_000;
+
+
+    @Inject
+    public LeaderboardMessageDispatcher(NotifierMetrics metrics) {
+        this.metrics = requireNonNull(metrics);
+        metrics.gauges("message_queue_depth", "Leaderboard changes waiting per message sink", "sink",
+                this::queueDepths);
+    }
+
+
+    public void dispatch(LeaderboardChange leaderboardChange) {
+        requireNonNull(leaderboardChange);
+        for (SinkWorker sinkWorker : ensureStarted()) {
+            sinkWorker.offer(new Delivery(leaderboardChange, null));
+        }
+    }
+
+    /**
+     * Delivers to the given webhooks instead of the configured ones, to the configured ones if there are no routes.
+     */
+    public void dispatch(LeaderboardChange leaderboardChange, List<WebhookRoute> webhookRoutes) {
+        requireNonNull(leaderboardChange);
+        if (webhookRoutes.isEmpty()) {
+            dispatch(leaderboardChange);
+            return;
+        }
+        List<SinkWorker> startedSinkWorkers = ensureStarted();
+        for (WebhookRoute webhookRoute : webhookRoutes) {
+            startedSinkWorkers.stream()
+                    .filter(sinkWorker -> sinkWorker.messageService.webhookType() == webhookRoute.getType())
+                    .findFirst()
+                    .ifPresentOrElse(sinkWorker -> sinkWorker.offer(new Delivery(leaderboardChange,
+                            webhookRoute.getUrl())), () -> log.warn("no message sink for {}", webhookRoute));
+        }
+    }
+
+
+    /**
+     * Reads the started sinks only, a scrape before the first dispatch must not start the worker threads.
+     */
+    public Map<String, Integer> queueDepths() {
+        Map<String, Integer> queueDepths = new LinkedHashMap<>();
+        for (SinkWorker sinkWorker : startedSinkWorkers()) {
+            queueDepths.put(sinkWorker.sinkName, sinkWorker.queue.size());
+        }
+        return queueDepths;
+    }
+
+    public Map<String, Long> droppedMessageCounts() {
+        Map<String, Long> droppedMessageCounts = new LinkedHashMap<>();
+        for (SinkWorker sinkWorker : startedSinkWorkers()) {
+            droppedMessageCounts.put(sinkWorker.sinkName, sinkWorker.droppedMessages.count());
+        }
+        return droppedMessageCounts;
+    }
+
+    private List<SinkWorker> startedSinkWorkers() {
+        List<SinkWorker> currentSinkWorkers = sinkWorkers;
+        return currentSinkWorkers != null ? currentSinkWorkers : List.of();
+    }
+
+
+    private List<SinkWorker> ensureStarted() {
+        List<SinkWorker> currentSinkWorkers = sinkWorkers;
+        if (currentSinkWorkers != null) {
+            return currentSinkWorkers;
+        }
+        synchronized (this) {
+            if (sinkWorkers == null) {
+                List<SinkWorker> startedSinkWorkers = new ArrayList<>(messageServices.size());
+                for (LeaderboardMessageService messageService : messageServices) {
+                    SinkWorker sinkWorker = new SinkWorker(messageService);
+                    startedSinkWorkers.add(sinkWorker);
+                    sinkWorker.thread.start();
+                }
+                sinkWorkers = List.copyOf(startedSinkWorkers);
+            }
+            return sinkWorkers;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (sinkWorkers != null) {
+            sinkWorkers.forEach(sinkWorker -> sinkWorker.thread.interrupt());
+            sinkWorkers = null;
+        }
+    }
+
+
+    @Inject
+    public synchronized void setMessageServices(List<LeaderboardMessageService> messageServices) {
+        this.messageServices = List.copyOf(messageServices);
+    }
+
+
+    @Value("${messageQueueCapacity:64}")
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Expect positive messageQueueCapacity: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Value("${messageQueueFullPolicy:DROP_OLDEST}")
+    public void setQueueFullPolicy(QueueFullPolicy queueFullPolicy) {
+        this.queueFullPolicy = requireNonNull(queueFullPolicy);
+    }
+
+    @Value("${slowDeliveryWarnMillis:10000}")
+    public void setSlowDeliveryWarnMillis(long slowDeliveryWarnMillis) {
+        this.slowDeliveryWarnMillis = slowDeliveryWarnMillis;
+    }
+
+
+    private static class Delivery {
+
+        private final LeaderboardChange leaderboardChange;
+        private final String webhookUrl;
+
+
+        private Delivery(LeaderboardChange leaderboardChange, String webhookUrl) {
+            this.leaderboardChange = leaderboardChange;
+            this.webhookUrl = webhookUrl;
+        }
+
+    }
+
+
+    private class SinkWorker {
+
+        private final LeaderboardMessageService messageService;
+        private final String sinkName;
+        private final BlockingQueue<Delivery> queue;
+        private final Thread thread;
+        private final Counter droppedMessages;
+
+
+        private SinkWorker(LeaderboardMessageService messageService) {
+            this.messageService = messageService;
+            this.sinkName = messageService.getClass().getSimpleName();
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.droppedMessages = metrics.counter("message_queue_dropped_total",
+                    "Leaderboard changes dropped by a full sink queue", "sink", sinkName);
+            this.thread = new Thread(this::deliverQueuedMessages, "aoc-sink-" + sinkName);
+            this.thread.setDaemon(true);
+        }
+
+
+        private void offer(Delivery delivery) {
+            while (!queue.offer(delivery)) {
+                if (queueFullPolicy == QueueFullPolicy.DROP_NEWEST) {
+                    droppedMessages.increment();
+                    log.warn("message queue of {} is full, drop newest {}", sinkName, delivery.leaderboardChange);
+                    return;
+                }
+                Delivery droppedDelivery = queue.poll();
+                if (droppedDelivery != null) {
+                    droppedMessages.increment();
+                    log.warn("message queue of {} is full, drop oldest {}", sinkName,
+                            droppedDelivery.leaderboardChange);
+                }
+            }
+        }
+
+        private void deliverQueuedMessages() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    deliver(queue.take());
+                }
+            } catch (InterruptedException e) {
+                log.debug("message worker for {} stopped", sinkName);
+            }
+        }
+
+        private void deliver(Delivery delivery) {
+            long startNanos = System.nanoTime();
+            try {
+                if (delivery.webhookUrl == null) {
+                    messageService.sendLeaderboardChangeMessage(delivery.leaderboardChange);
+                } else {
+                    messageService.sendLeaderboardChangeMessage(delivery.webhookUrl, delivery.leaderboardChange);
+                }
+            } catch (RuntimeException e) {
+                log.error("could not deliver leaderboard change to " + sinkName, e);
+            }
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (durationMillis > slowDeliveryWarnMillis) {
+                log.warn("slow delivery to {} took {} ms", sinkName, durationMillis);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,373 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.FinishedDayTask;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.MemberChanges;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.RankMarker;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.Row;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+
+
+/**
+ * Encodes a rendered {@link LeaderboardMessage} as the markdown text posted to a message sink.
+ * <p>
+ * Each sink has a budget of characters per message. {@link #encodeMessages} sends the full table while it fits.
+ * Otherwise it keeps the top rows, the changed rows and the row each changed member is chasing, and splits the rest
+ * over several messages. The full length is computed from the rows without formatting them, and each row is
+ * formatted at most once.
+ */
+public class LeaderboardMessageEncoder {
+
+    public static final LeaderboardMessageEncoder SLACK = new LeaderboardMessageEncoder(
+            "       5      10       15      20       25\t", "\u1680\u1680", "\u1680\u1680", 3_000);
+
+    public static final LeaderboardMessageEncoder DISCORD = new LeaderboardMessageEncoder(
+            "    5     10    15     20    25\t", "\u2587", "\u2587", 2_000); // LOWER SEVEN EIGHTHS BLOCK
+
+    /**
+     * Rows always shown in a compacted table.
+     */
+    public static final int TOP_ROW_COUNT = 3;
+
+    private static final String WHITE_STAR = "\u2606"; // white star ☆
+    private static final String BLACK_STAR = "\u2605"; // black star ★
+
+    private static final String TABLE_START = "```AoC y=";
+    private static final String TABLE_END = "```";
+    private static final String NAME_COLUMN = "Benutzer";
+    private static final String LAST_TASK_COLUMN = "  Letzte bearbeitete Aufgabe\n";
+    private static final String CHANGES_TITLE_START = "*Neu beendete Aufgaben bis ";
+    private static final String CHANGES_TITLE_END = ":*";
+    private static final String MEMBER_CHANGES_START = "\n*";
+    private static final String MEMBER_CHANGES_END = "* beendeten Aufgaben:";
+    private static final String TASK_START = "\n- ";
+    private static final String TASK_TIME = " am ";
+
+    private final String dayRuler;
+    private final String lockedDaySymbol;
+    private final String unsolvedDaySymbol;
+    private final int maxMessageLength;
+
+
+    public LeaderboardMessageEncoder(String dayRuler, String lockedDaySymbol, String unsolvedDaySymbol) {
+        this(dayRuler, lockedDaySymbol, unsolvedDaySymbol, Integer.MAX_VALUE);
+    }
+
+    public LeaderboardMessageEncoder(String dayRuler, String lockedDaySymbol, String unsolvedDaySymbol,
+            int maxMessageLength) {
+        if (maxMessageLength < 256) {
+            throw new IllegalArgumentException("Expect maxMessageLength of at least 256: " + maxMessageLength);
+        }
+        this.dayRuler = dayRuler;
+        this.lockedDaySymbol = lockedDaySymbol;
+        this.unsolvedDaySymbol = unsolvedDaySymbol;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+
+    /**
+     * @return the full message, regardless of the budget of the sink
+     */
+    public String encode(LeaderboardMessage message) {
+        int longestName = message.getLongestName();
+        int rowLength = 80 + longestName + DAY_TASK_COUNT * 2;
+        StringBuilder sb = new StringBuilder(rowLength * (message.getRows().size() + 2)
+                + 64 * message.getMemberChanges().size());
+        appendLeaderboardTable(sb, message);
+        sb.append('\n');
+        appendMemberChanges(sb, message);
+        return sb.toString();
+    }
+
+    /**
+     * @return the message as one or more texts of at most {@code maxMessageLength} characters, to be posted in order
+     */
+    public List<String> encodeMessages(LeaderboardMessage message) {
+        if (encodedLength(message) <= maxMessageLength) {
+            return List.of(encode(message));
+        }
+
+        MessagePacker messagePacker = new MessagePacker(message);
+        List<Row> rows = message.getRows();
+        int skippedRows = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (i < TOP_ROW_COUNT || rows.get(i).isChanged() || i + 1 < rows.size() && rows.get(i + 1).isChanged()) {
+                if (skippedRows > 0) {
+                    int previousSkippedRows = skippedRows;
+                    messagePacker.appendTableLine(sb -> appendSkippedRows(sb, previousSkippedRows));
+                    skippedRows = 0;
+                }
+                Row row = rows.get(i);
+                messagePacker.appendTableLine(sb -> appendRow(sb, message, row));
+            } else {
+                skippedRows++;
+            }
+        }
+        if (skippedRows > 0) {
+            int lastSkippedRows = skippedRows;
+            messagePacker.appendTableLine(sb -> appendSkippedRows(sb, lastSkippedRows));
+        }
+        messagePacker.endTable();
+
+        messagePacker.appendLine(sb -> sb.append('\n').append(CHANGES_TITLE_START).append(message.getRenderTime())
+                .append(CHANGES_TITLE_END));
+        for (MemberChanges memberChanges : message.getMemberChanges()) {
+            messagePacker.appendLine(sb -> sb.append(MEMBER_CHANGES_START).append(memberChanges.getPrintName())
+                    .append(MEMBER_CHANGES_END));
+            for (FinishedDayTask finishedDayTask : memberChanges.getFinishedDayTasks()) {
+                messagePacker.appendLine(sb -> appendFinishedDayTask(sb, finishedDayTask));
+            }
+        }
+        return messagePacker.finish();
+    }
+
+
+    public void appendLeaderboardTable(StringBuilder sb, LeaderboardMessage message) {
+        appendTableHeader(sb, message);
+        for (Row row : message.getRows()) {
+            appendRow(sb, message, row);
+        }
+        sb.append(TABLE_END);
+    }
+
+    private void appendTableHeader(StringBuilder sb, LeaderboardMessage message) {
+        sb.append(TABLE_START);
+        appendPadded(sb, message.getEvent(), 4, '0');
+        sb.append(dayRuler);
+        appendRightPadded(sb, NAME_COLUMN, message.getLongestName()).append(LAST_TASK_COLUMN);
+    }
+
+    public void appendRow(StringBuilder sb, LeaderboardMessage message, Row row) {
+        appendPadded(sb, row.getPosition(), 2, ' ').append(") ");
+        appendPadded(sb, row.getLocalScore(), 3, ' ').append(' ');
+        appendCompletedDayTasks(sb, message, row);
+        sb.append('\t');
+        appendRightPadded(sb, row.getPrintName(), message.getLongestName()).append(' ');
+        FinishedDayTask lastFinishedDayTask = row.getLastFinishedDayTask();
+        if (lastFinishedDayTask != null) {
+            appendPadded(sb, lastFinishedDayTask.getDay(), 2, ' ').append(". ");
+            sb.append(levelSymbol(lastFinishedDayTask.getCompletedLevels()));
+            sb.append(TASK_TIME).append(lastFinishedDayTask.getCompletionTime());
+        }
+        sb.append(' ').append(rankMarkerSymbol(row.getRankMarker())).append('\n');
+    }
+
+    private void appendCompletedDayTasks(StringBuilder sb, LeaderboardMessage message, Row row) {
+        sb.append('|');
+        for (int day = 1; day <= DAY_TASK_COUNT; day++) {
+            sb.append(daySymbol(message, row, day));
+            if (day % 5 == 0) {
+                sb.append('|');
+            }
+        }
+    }
+
+    private static void appendSkippedRows(StringBuilder sb, int skippedRows) {
+        sb.append("   \u2026 ").append(skippedRows).append(" weitere\n"); // horizontal ellipsis …
+    }
+
+
+    public void appendMemberChanges(StringBuilder sb, LeaderboardMessage message) {
+        sb.append(CHANGES_TITLE_START).append(message.getRenderTime()).append(CHANGES_TITLE_END);
+        for (MemberChanges memberChanges : message.getMemberChanges()) {
+            appendMemberChanges(sb, memberChanges);
+        }
+    }
+
+    public void appendMemberChanges(StringBuilder sb, MemberChanges memberChanges) {
+        sb.append(MEMBER_CHANGES_START).append(memberChanges.getPrintName()).append(MEMBER_CHANGES_END);
+        for (FinishedDayTask finishedDayTask : memberChanges.getFinishedDayTasks()) {
+            appendFinishedDayTask(sb, finishedDayTask);
+        }
+    }
+
+    private void appendFinishedDayTask(StringBuilder sb, FinishedDayTask finishedDayTask) {
+        sb.append(TASK_START).append(finishedDayTask.getDay()).append(". ");
+        sb.append(levelSymbol(finishedDayTask.getCompletedLevels()));
+        sb.append(TASK_TIME).append(finishedDayTask.getCompletionTime());
+    }
+
+
+    /**
+     * Length of {@link #encode}, computed without formatting.
+     */
+    int encodedLength(LeaderboardMessage message) {
+        int length = TABLE_START.length() + paddedLength(message.getEvent(), 4) + dayRuler.length()
+                + Math.max(NAME_COLUMN.length(), message.getLongestName()) + LAST_TASK_COLUMN.length();
+        for (Row row : message.getRows()) {
+            length += rowLength(message, row);
+        }
+        length += TABLE_END.length() + 1;
+
+        length += CHANGES_TITLE_START.length() + message.getRenderTime().length() + CHANGES_TITLE_END.length();
+        for (MemberChanges memberChanges : message.getMemberChanges()) {
+            length += MEMBER_CHANGES_START.length() + memberChanges.getPrintName().length()
+                    + MEMBER_CHANGES_END.length();
+            for (FinishedDayTask finishedDayTask : memberChanges.getFinishedDayTasks()) {
+                length += TASK_START.length() + paddedLength(finishedDayTask.getDay(), 1) + 2
+                        + finishedDayTaskLength(finishedDayTask);
+            }
+        }
+        return length;
+    }
+
+    private int rowLength(LeaderboardMessage message, Row row) {
+        int length = paddedLength(row.getPosition(), 2) + 2 + paddedLength(row.getLocalScore(), 3) + 1;
+        length += 1 + DAY_TASK_COUNT / 5;
+        for (int day = 1; day <= DAY_TASK_COUNT; day++) {
+            length += daySymbol(message, row, day).length();
+        }
+        length += 1 + Math.max(row.getPrintName().length(), message.getLongestName()) + 1;
+        FinishedDayTask lastFinishedDayTask = row.getLastFinishedDayTask();
+        if (lastFinishedDayTask != null) {
+            length += paddedLength(lastFinishedDayTask.getDay(), 2) + 2 + finishedDayTaskLength(lastFinishedDayTask);
+        }
+        return length + 3;
+    }
+
+    private int finishedDayTaskLength(FinishedDayTask finishedDayTask) {
+        return levelSymbol(finishedDayTask.getCompletedLevels()).length() + TASK_TIME.length()
+                + finishedDayTask.getCompletionTime().length();
+    }
+
+
+    private String daySymbol(LeaderboardMessage message, Row row, int day) {
+        return message.isUnlockedDay(day) ? levelSymbol(row.completedLevels(day)) : lockedDaySymbol;
+    }
+
+    private String levelSymbol(int completedLevels) {
+        if (completedLevels == 0) {
+            return unsolvedDaySymbol;
+        } else if (completedLevels == 1) {
+            return WHITE_STAR;
+        } else {
+            return BLACK_STAR;
+        }
+    }
+
+    private static char rankMarkerSymbol(RankMarker rankMarker) {
+        switch (rankMarker) {
+        case CHANGED:
+            return '*';
+        case UP:
+            return '\u2191'; // upwards arrow ↑
+        case DOWN:
+            return '\u2193'; // downward arrow ↓
+        default:
+            return ' ';
+        }
+    }
+
+
+    private static int paddedLength(int value, int width) {
+        int digits = value < 0 ? 2 : 1;
+        for (int remaining = Math.abs(value) / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        return Math.max(digits, width);
+    }
+
+    private static StringBuilder appendPadded(StringBuilder sb, int value, int width, char padChar) {
+        int digits = value < 0 ? 2 : 1;
+        for (int remaining = Math.abs(value) / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < width; i++) {
+            sb.append(padChar);
+        }
+        return sb.append(value);
+    }
+
+    private static StringBuilder appendRightPadded(StringBuilder sb, String value, int width) {
+        sb.append(value);
+        for (int i = value.length(); i < width; i++) {
+            sb.append(' ');
+        }
+        return sb;
+    }
+
+
+    private interface LineAppender {
+
+        void appendTo(StringBuilder sb);
+
+    }
+
+
+    /**
+     * Fills messages line by line up to the budget. A table line which no longer fits ends the code block and
+     * continues the table with its header in the next message.
+     */
+    private class MessagePacker {
+
+        private final LeaderboardMessage message;
+        private final List<String> messages = new ArrayList<>();
+        private final StringBuilder sb;
+        private boolean inTable;
+        private boolean tableLineWritten;
+
+
+        private MessagePacker(LeaderboardMessage message) {
+            this.message = message;
+            this.sb = new StringBuilder(maxMessageLength);
+        }
+
+
+        private void appendTableLine(LineAppender lineAppender) {
+            if (!inTable) {
+                appendTableHeader(sb, message);
+                inTable = true;
+                tableLineWritten = false;
+            }
+            int lineStart = sb.length();
+            lineAppender.appendTo(sb);
+            if (sb.length() + TABLE_END.length() > maxMessageLength && tableLineWritten) {
+                String line = sb.substring(lineStart);
+                sb.setLength(lineStart);
+                endTable();
+                flush();
+                appendTableHeader(sb, message);
+                inTable = true;
+                sb.append(line);
+            }
+            tableLineWritten = true;
+        }
+
+        private void endTable() {
+            if (inTable) {
+                sb.append(TABLE_END);
+                inTable = false;
+            }
+        }
+
+        private void appendLine(LineAppender lineAppender) {
+            int lineStart = sb.length();
+            lineAppender.appendTo(sb);
+            if (sb.length() > maxMessageLength && lineStart > 0) {
+                String line = sb.substring(lineStart);
+                sb.setLength(lineStart);
+                flush();
+                sb.append(line.charAt(0) == '\n' ? line.substring(1) : line);
+            }
+        }
+
+        private void flush() {
+            messages.add(sb.toString());
+            sb.setLength(0);
+        }
+
+        private List<String> finish() {
+            endTable();
+            if (sb.length() > 0) {
+                flush();
+            }
+            return List.copyOf(messages);
+        }
+
+    }
+
+}
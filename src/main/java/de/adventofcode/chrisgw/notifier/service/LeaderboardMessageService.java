@@ -1,10 +1,18 @@
 package de.adventofcode.chrisgw.notifier.service;
 
 import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import de.adventofcode.chrisgw.notifier.model.WebhookRoute;
 
 
 public interface LeaderboardMessageService {
 
+    /**
+     * Sends to the configured webhook, if there is one.
+     */
     void sendLeaderboardChangeMessage(LeaderboardChange leaderboardChange);
 
+    void sendLeaderboardChangeMessage(String webhookUrl, LeaderboardChange leaderboardChange);
+
+    WebhookRoute.Type webhookType();
+
 }
@@ -0,0 +1,402 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Single;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+
+@Slf4j
+@Service
+public class LeaderboardPollScheduler {
+
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private final DelayQueue<ScheduledPoll> pollQueue = new DelayQueue<>();
+    private final Map<Object, ScheduledPoll> scheduledPolls = new ConcurrentHashMap<>();
+    private final AtomicLong registrationCount = new AtomicLong();
+
+    private Duration minPollInterval = Duration.ofMinutes(15);
+    private Duration maxPollInterval = Duration.ofHours(6);
+    private Duration unlockHotWindow = Duration.ofHours(6);
+    private int quietPollThreshold = 4;
+    private Duration minRetryBackoff = Duration.ofMinutes(1);
+    private Duration fixedPollInterval;
+    private double requestsPerSecond = 1.0;
+    private int pollThreadCount = 4;
+
+    private Thread dispatcherThread;
+    private ExecutorService pollExecutor;
+    private long nextPermitNanos;
+
+
+    public Observable<PollTick> pollTicks(Object pollKey) {
+        return pollTicks(pollKey, AdventOfCodeCalendar.currentEventYear(Instant.now()));
+    }
+
+    /**
+     * Emits {@link PollTick}s until disposed, spaced by the {@link PollCadence} of the event year and the results
+     * reported with {@link #reportPollResult}. All subscriptions share one dispatcher, which staggers their first poll
+     * over the minimum interval and never exceeds the configured requests per second.
+     */
+    public Observable<PollTick> pollTicks(Object pollKey, int eventYear) {
+        requireNonNull(pollKey);
+        return Observable.create(emitter -> {
+            long registrationIndex = registrationCount.getAndIncrement();
+            double phase = (registrationIndex * GOLDEN_RATIO_FRACTION) % 1.0;
+            long firstPollTimeMillis = System.currentTimeMillis() + (long) (phase * pollCadence().minInterval()
+                    .toMillis());
+            ScheduledPoll scheduledPoll = new ScheduledPoll(pollKey, emitter, eventYear, phase, firstPollTimeMillis);
+            emitter.setCancellable(() -> unregister(scheduledPoll));
+            register(scheduledPoll);
+        });
+    }
+
+    /**
+     * Emits a single {@link PollTick} as soon as the request budget allows, for requests outside the regular polls
+     * such as a backfill. It shares the budget with the polls but not their schedule.
+     */
+    public Single<PollTick> pollOnce(Object pollKey) {
+        requireNonNull(pollKey);
+        return Observable.<PollTick> create(emitter -> {
+            ScheduledPoll scheduledPoll = new ScheduledPoll(pollKey, emitter, System.currentTimeMillis());
+            emitter.setCancellable(() -> pollQueue.remove(scheduledPoll));
+            ensureStarted();
+            pollQueue.add(scheduledPoll);
+        }).firstOrError();
+    }
+
+    /**
+     * Feeds the backoff of quiet boards: polls without a change in a row lengthen the interval, a change resets it.
+     * Results may arrive after the next poll was scheduled, a change then moves that poll forward.
+     */
+    public void reportPollResult(Object pollKey, boolean changed) {
+        ScheduledPoll scheduledPoll = scheduledPolls.get(pollKey);
+        if (scheduledPoll != null) {
+            scheduledPoll.reportPollResult(changed);
+        }
+    }
+
+    /**
+     * Moves the next poll of a board whose fetch failed to an exponential backoff, from {@code pollRetryBackoffSeconds}
+     * up to the maximum poll interval. The backoff is jittered between its half and full length, so boards which
+     * failed together in an outage do not retry together. The next successful {@link #reportPollResult} resets it.
+     */
+    public void reportPollFailure(Object pollKey) {
+        ScheduledPoll scheduledPoll = scheduledPolls.get(pollKey);
+        if (scheduledPoll != null) {
+            scheduledPoll.reportPollFailure();
+        }
+    }
+
+    private void register(ScheduledPoll scheduledPoll) {
+        ensureStarted();
+        scheduledPolls.put(scheduledPoll.pollKey, scheduledPoll);
+        pollQueue.add(scheduledPoll);
+        log.debug("register poll for {} at {}", scheduledPoll.pollKey, scheduledPoll.scheduledTime());
+    }
+
+    private void unregister(ScheduledPoll scheduledPoll) {
+        scheduledPolls.remove(scheduledPoll.pollKey, scheduledPoll);
+        pollQueue.remove(scheduledPoll);
+        log.debug("unregister poll for {}", scheduledPoll.pollKey);
+    }
+
+
+    public int registeredPollCount() {
+        return scheduledPolls.size();
+    }
+
+    public Optional<Duration> pollLagFor(Object pollKey) {
+        return Optional.ofNullable(scheduledPolls.get(pollKey)).map(ScheduledPoll::lastLag);
+    }
+
+    public int failingPollCount() {
+        return (int) scheduledPolls.values().stream().filter(scheduledPoll -> scheduledPoll.failures > 0).count();
+    }
+
+    public Optional<Integer> pollFailuresFor(Object pollKey) {
+        return Optional.ofNullable(scheduledPolls.get(pollKey)).map(scheduledPoll -> scheduledPoll.failures);
+    }
+
+    public Optional<Instant> nextPollTimeFor(Object pollKey) {
+        return Optional.ofNullable(scheduledPolls.get(pollKey)).map(ScheduledPoll::scheduledTime);
+    }
+
+    private PollCadence pollCadence() {
+        if (fixedPollInterval != null) {
+            return PollCadence.fixed(fixedPollInterval);
+        }
+        return new PollCadence(minPollInterval, maxPollInterval, unlockHotWindow, quietPollThreshold);
+    }
+
+    public Map<Object, Duration> pollLags() {
+        Map<Object, Duration> pollLags = new HashMap<>();
+        scheduledPolls.forEach((pollKey, scheduledPoll) -> pollLags.put(pollKey, scheduledPoll.lastLag()));
+        return pollLags;
+    }
+
+
+    private synchronized void ensureStarted() {
+        if (dispatcherThread != null) {
+            return;
+        }
+        pollExecutor = Executors.newFixedThreadPool(pollThreadCount, new BasicThreadFactory.Builder() //
+                .namingPattern("aoc-poll-%d")
+                .daemon(true)
+                .build());
+        dispatcherThread = new Thread(this::dispatchDuePolls, "aoc-poll-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (dispatcherThread == null) {
+            return;
+        }
+        dispatcherThread.interrupt();
+        pollExecutor.shutdownNow();
+        dispatcherThread = null;
+        pollExecutor = null;
+    }
+
+
+    private void dispatchDuePolls() {
+        ExecutorService executor = pollExecutor;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ScheduledPoll scheduledPoll = pollQueue.take();
+                if (scheduledPoll.emitter.isDisposed()) {
+                    continue;
+                }
+                acquireRequestPermit();
+                executor.execute(scheduledPoll::emitTick);
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            log.debug("poll dispatcher stopped");
+        }
+    }
+
+    private void acquireRequestPermit() throws InterruptedException {
+        long now = System.nanoTime();
+        long permitNanos = Math.max(now, nextPermitNanos);
+        nextPermitNanos = permitNanos + (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        if (permitNanos > now) {
+            TimeUnit.NANOSECONDS.sleep(permitNanos - now);
+        }
+    }
+
+
+    /**
+     * Minimum interval between two polls of a board, Advent of Code asks for at most one request every 15 minutes.
+     */
+    @Value("${pollIntervalMinutes:15}")
+    public void setPollIntervalMinutes(long pollIntervalMinutes) {
+        if (pollIntervalMinutes <= 0) {
+            throw new IllegalArgumentException("Expect positive pollIntervalMinutes: " + pollIntervalMinutes);
+        }
+        this.minPollInterval = Duration.ofMinutes(pollIntervalMinutes);
+    }
+
+    @Value("${maxPollIntervalMinutes:360}")
+    public void setMaxPollIntervalMinutes(long maxPollIntervalMinutes) {
+        if (maxPollIntervalMinutes <= 0) {
+            throw new IllegalArgumentException("Expect positive maxPollIntervalMinutes: " + maxPollIntervalMinutes);
+        }
+        this.maxPollInterval = Duration.ofMinutes(maxPollIntervalMinutes);
+    }
+
+    @Value("${unlockHotHours:6}")
+    public void setUnlockHotHours(long unlockHotHours) {
+        if (unlockHotHours < 0) {
+            throw new IllegalArgumentException("Expect non negative unlockHotHours: " + unlockHotHours);
+        }
+        this.unlockHotWindow = Duration.ofHours(unlockHotHours);
+    }
+
+    @Value("${quietPollThreshold:4}")
+    public void setQuietPollThreshold(int quietPollThreshold) {
+        if (quietPollThreshold < 0) {
+            throw new IllegalArgumentException("Expect non negative quietPollThreshold: " + quietPollThreshold);
+        }
+        this.quietPollThreshold = quietPollThreshold;
+    }
+
+    @Value("${pollRetryBackoffSeconds:60}")
+    public void setMinRetryBackoffSeconds(long minRetryBackoffSeconds) {
+        if (minRetryBackoffSeconds <= 0) {
+            throw new IllegalArgumentException("Expect positive pollRetryBackoffSeconds: " + minRetryBackoffSeconds);
+        }
+        this.minRetryBackoff = Duration.ofSeconds(minRetryBackoffSeconds);
+    }
+
+    /**
+     * Polls every board at this interval regardless of the unlock calendar, only meant for a stub server such as the
+     * load test's. 0 keeps the calendar cadence.
+     */
+    @Value("${fixedPollIntervalMillis:0}")
+    public void setFixedPollIntervalMillis(long fixedPollIntervalMillis) {
+        if (fixedPollIntervalMillis < 0) {
+            throw new IllegalArgumentException("Expect non negative fixedPollIntervalMillis: "
+                    + fixedPollIntervalMillis);
+        }
+        this.fixedPollInterval = fixedPollIntervalMillis == 0 ? null : Duration.ofMillis(fixedPollIntervalMillis);
+    }
+
+    @Value("${aocRequestsPerSecond:1.0}")
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Expect positive aocRequestsPerSecond: " + requestsPerSecond);
+        }
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    @Value("${pollThreadCount:4}")
+    public void setPollThreadCount(int pollThreadCount) {
+        if (pollThreadCount <= 0) {
+            throw new IllegalArgumentException("Expect positive pollThreadCount: " + pollThreadCount);
+        }
+        this.pollThreadCount = pollThreadCount;
+    }
+
+
+    private class ScheduledPoll implements Delayed {
+
+        private final Object pollKey;
+        private final ObservableEmitter<PollTick> emitter;
+        private final int eventYear;
+        private final double phase;
+        private final boolean repeating;
+        private volatile long scheduledTimeMillis;
+        private volatile Duration lastLag = Duration.ZERO;
+        private volatile int quietPolls;
+        private volatile int failures;
+        private long retryBackoffMillis;
+        private Instant lastUnlock;
+        private long lastTickTimeMillis;
+        private long tickCount;
+
+
+        private ScheduledPoll(Object pollKey, ObservableEmitter<PollTick> emitter, int eventYear, double phase,
+                long scheduledTimeMillis) {
+            this.pollKey = pollKey;
+            this.emitter = emitter;
+            this.eventYear = eventYear;
+            this.phase = phase;
+            this.repeating = true;
+            this.scheduledTimeMillis = scheduledTimeMillis;
+        }
+
+        private ScheduledPoll(Object pollKey, ObservableEmitter<PollTick> emitter, long scheduledTimeMillis) {
+            this.pollKey = pollKey;
+            this.emitter = emitter;
+            this.eventYear = 0;
+            this.phase = 0;
+            this.repeating = false;
+            this.scheduledTimeMillis = scheduledTimeMillis;
+        }
+
+
+        private void emitTick() {
+            long nowMillis = System.currentTimeMillis();
+            PollTick pollTick = new PollTick(pollKey, tickCount++, scheduledTime(), Instant.ofEpochMilli(nowMillis));
+            lastLag = pollTick.lag();
+            try {
+                emitter.onNext(pollTick);
+            } finally {
+                if (repeating) {
+                    reschedule(nowMillis);
+                } else {
+                    emitter.onComplete();
+                }
+            }
+        }
+
+        private synchronized void reportPollResult(boolean changed) {
+            failures = 0;
+            boolean wasQuiet = quietPolls > 0;
+            quietPolls = changed ? 0 : quietPolls + 1;
+            if (changed && wasQuiet && pollQueue.remove(this)) {
+                Instant lastTickTime = Instant.ofEpochMilli(lastTickTimeMillis);
+                Instant nextTime = pollCadence().nextPollTime(lastTickTime, eventYear, quietPolls, phase);
+                scheduledTimeMillis = Math.min(scheduledTimeMillis, nextTime.toEpochMilli());
+                pollQueue.add(this);
+            }
+        }
+
+        private synchronized void reportPollFailure() {
+            failures++;
+            long maxBackoffMillis = maxPollInterval.toMillis();
+            long backoffMillis = minRetryBackoff.toMillis() << Math.min(failures - 1, 20);
+            backoffMillis = Math.min(backoffMillis, maxBackoffMillis);
+            long jitterMillis = ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+            long jitteredBackoffMillis = backoffMillis / 2 + jitterMillis;
+            log.debug("retry poll for {} after {} failures in {} ms", pollKey, failures, jitteredBackoffMillis);
+            if (pollQueue.remove(this)) {
+                scheduledTimeMillis = System.currentTimeMillis() + jitteredBackoffMillis;
+                pollQueue.add(this);
+            } else {
+                retryBackoffMillis = jitteredBackoffMillis; // failed before the tick was rescheduled
+            }
+        }
+
+        private synchronized void reschedule(long nowMillis) {
+            PollCadence pollCadence = pollCadence();
+            Instant scheduledTime = scheduledTime();
+            lastTickTimeMillis = scheduledTimeMillis;
+            Instant currentLastUnlock = AdventOfCodeCalendar.lastUnlock(Instant.ofEpochMilli(nowMillis));
+            if (currentLastUnlock != null && !currentLastUnlock.equals(lastUnlock)) {
+                quietPolls = 0; // a new puzzle, quiet polls of the last night don't count
+            }
+            lastUnlock = currentLastUnlock;
+            Instant nextTime = pollCadence.nextPollTime(scheduledTime, eventYear, quietPolls, phase);
+            if (nextTime.toEpochMilli() <= nowMillis) {
+                // keep the cadence from now instead of catching up in a burst
+                nextTime = pollCadence.nextPollTime(Instant.ofEpochMilli(nowMillis), eventYear, quietPolls, phase);
+            }
+            scheduledTimeMillis = retryBackoffMillis > 0 ? nowMillis + retryBackoffMillis : nextTime.toEpochMilli();
+            retryBackoffMillis = 0;
+            if (!emitter.isDisposed()) {
+                pollQueue.add(this);
+            }
+        }
+
+
+        private Instant scheduledTime() {
+            return Instant.ofEpochMilli(scheduledTimeMillis);
+        }
+
+        private Duration lastLag() {
+            return lastLag;
+        }
+
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(scheduledTimeMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+    }
+
+}
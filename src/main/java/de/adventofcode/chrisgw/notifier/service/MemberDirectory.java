@@ -0,0 +1,218 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Print names of the members from {@code memberNamesJsonFilePath}, shared by all boards and years. The names are an
+ * immutable snapshot which a reload swaps in as a whole, readers never lock. Each member id keeps one identity with
+ * its name and print name, so a member on many boards holds the same strings instead of a copy per fetch. A names
+ * file on the file system is watched and renames apply to the next fetch without a restart.
+ */
+@Slf4j
+@Service
+public class MemberDirectory {
+
+    private final ObjectMapper om;
+    private final Map<Long, MemberIdentity> memberIdentities = new ConcurrentHashMap<>();
+
+    private volatile PrintNames printNames = new PrintNames(Map.of());
+    private Resource memberNamesResource;
+    private long reloadDelayMillis = 500;
+    private Thread watchThread;
+    private WatchService watchService;
+
+
+    @Inject
+    public MemberDirectory(ObjectMapper om, NotifierMetrics metrics) {
+        this.om = requireNonNull(om);
+        metrics.gauge("member_directory_names", "Print names in the member names file",
+                () -> printNames.printNameByName.size());
+        metrics.gauge("member_directory_identities", "Members with a shared identity", memberIdentities::size);
+    }
+
+
+    /**
+     * Replaces the name and print name of the member with the shared instances of its identity.
+     */
+    public void identify(LeaderboardMember member) {
+        PrintNames currentPrintNames = printNames;
+        MemberIdentity memberIdentity = memberIdentities.get(member.getId());
+        if (memberIdentity == null || !memberIdentity.matches(member.getName(), currentPrintNames)) {
+            memberIdentity = new MemberIdentity(member.getName(), currentPrintNames);
+            memberIdentities.put(member.getId(), memberIdentity);
+        }
+        member.setName(memberIdentity.name);
+        member.setPrintName(memberIdentity.printName);
+    }
+
+    public String printNameOf(String name) {
+        return printNames.printNameByName.get(name);
+    }
+
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (memberNamesResource == null || watchThread != null) {
+            return;
+        }
+        if (memberNamesResource.isReadable()) {
+            printNames = readPrintNames();
+            log.info("read {} member names from {}", printNames.printNameByName.size(), memberNamesResource);
+        } else {
+            log.warn("could not read memberNames from: " + memberNamesResource);
+        }
+        if (!memberNamesResource.isFile()) {
+            return;
+        }
+
+        Path memberNamesFile = memberNamesResource.getFile().toPath().toAbsolutePath();
+        watchService = memberNamesFile.getFileSystem().newWatchService();
+        memberNamesFile.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        WatchService startedWatchService = watchService;
+        watchThread = new Thread(() -> watchMemberNames(startedWatchService, memberNamesFile.getFileName()),
+                "aoc-member-names-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (watchThread == null) {
+            return;
+        }
+        watchThread.interrupt();
+        watchService.close();
+        watchThread = null;
+        watchService = null;
+    }
+
+
+    private void watchMemberNames(WatchService watchService, Path memberNamesFileName) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean namesChanged = isMemberNamesEvent(watchService.take(), memberNamesFileName);
+                WatchKey watchKey;
+                while ((watchKey = watchService.poll(reloadDelayMillis, TimeUnit.MILLISECONDS)) != null) {
+                    namesChanged |= isMemberNamesEvent(watchKey, memberNamesFileName);
+                }
+                if (namesChanged) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("member names watch stopped");
+        }
+    }
+
+    private static boolean isMemberNamesEvent(WatchKey watchKey, Path memberNamesFileName) {
+        boolean memberNamesEvent = false;
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            memberNamesEvent |= watchEvent.kind() == OVERFLOW || memberNamesFileName.equals(watchEvent.context());
+        }
+        watchKey.reset();
+        return memberNamesEvent;
+    }
+
+    /**
+     * Swaps in the current member names, a file which can not be read keeps the previous names.
+     */
+    public void reload() {
+        try {
+            PrintNames currentPrintNames = readPrintNames();
+            printNames = currentPrintNames;
+            log.info("reload {} member names from {}", currentPrintNames.printNameByName.size(), memberNamesResource);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("could not reload member names {}, keep {} names", memberNamesResource,
+                    printNames.printNameByName.size(), e);
+        }
+    }
+
+    private PrintNames readPrintNames() throws IOException {
+        Map<String, String> printNameByName = new HashMap<>();
+        try (InputStream inputStream = memberNamesResource.getInputStream()) {
+            JsonNode rootNode = om.readTree(inputStream);
+            for (JsonNode jsonNode : rootNode) {
+                String userName = jsonNode.path("userName").asText();
+                String name = jsonNode.path("name").asText();
+                printNameByName.put(userName, name);
+            }
+        }
+        return new PrintNames(printNameByName);
+    }
+
+
+    @Value("${memberNamesJsonFilePath}")
+    public void setMemberNamesResource(Resource memberNamesResource) {
+        this.memberNamesResource = requireNonNull(memberNamesResource);
+    }
+
+    @Value("${memberNamesReloadDelayMillis:500}")
+    public void setReloadDelayMillis(long reloadDelayMillis) {
+        if (reloadDelayMillis < 0) {
+            throw new IllegalArgumentException("Expect non negative memberNamesReloadDelayMillis: "
+                    + reloadDelayMillis);
+        }
+        this.reloadDelayMillis = reloadDelayMillis;
+    }
+
+
+    private static class PrintNames {
+
+        private final Map<String, String> printNameByName;
+
+
+        private PrintNames(Map<String, String> printNameByName) {
+            this.printNameByName = Map.copyOf(printNameByName);
+        }
+
+    }
+
+
+    /**
+     * Identity of a member as of one {@link PrintNames} snapshot, a reload or a changed name replaces it.
+     */
+    private static class MemberIdentity {
+
+        private final String name;
+        private final String printName;
+        private final PrintNames printNames;
+
+
+        private MemberIdentity(String name, PrintNames printNames) {
+            this.name = name;
+            this.printName = name == null ? null : printNames.printNameByName.get(name);
+            this.printNames = printNames;
+        }
+
+
+        private boolean matches(String name, PrintNames currentPrintNames) {
+            return printNames == currentPrintNames && Objects.equals(this.name, name);
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar.*;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Poll interval of a leaderboard depending on the puzzle unlock calendar and on how many polls in a row found no
+ * change:
+ * <ul>
+ * <li>boards of the last event outside December no polls until the first unlock of the next event</li>
+ * <li>in the hot window after an unlock the minimum interval, doubled for each quiet poll beyond the threshold</li>
+ * <li>otherwise, e.g. at night or after day 25, the minimum interval doubled for each quiet poll</li>
+ * <li>boards of past events the maximum interval, all year round</li>
+ * </ul>
+ * Every interval is capped at the maximum and a poll which would fall behind the next unlock is moved to just after
+ * it, staggered by the phase of the board. A {@link #fixed} cadence ignores the calendar, e.g. for load tests
+ * against a stub server.
+ */
+final class PollCadence {
+
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final Duration unlockHotWindow;
+    private final int quietPollThreshold;
+    private final boolean fixed;
+
+
+    PollCadence(Duration minInterval, Duration maxInterval, Duration unlockHotWindow, int quietPollThreshold) {
+        this(minInterval, maxInterval, unlockHotWindow, quietPollThreshold, false);
+    }
+
+    private PollCadence(Duration minInterval, Duration maxInterval, Duration unlockHotWindow, int quietPollThreshold,
+            boolean fixed) {
+        this.minInterval = requireNonNull(minInterval);
+        this.maxInterval = requireNonNull(maxInterval);
+        this.unlockHotWindow = requireNonNull(unlockHotWindow);
+        this.quietPollThreshold = quietPollThreshold;
+        this.fixed = fixed;
+        if (maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException(
+                    "Expect max poll interval " + maxInterval + " not below min poll interval " + minInterval);
+        }
+    }
+
+    static PollCadence fixed(Duration interval) {
+        return new PollCadence(interval, interval, Duration.ZERO, 0, true);
+    }
+
+
+    Duration minInterval() {
+        return minInterval;
+    }
+
+
+    /**
+     * @param quietPolls polls in a row without a change since the last unlock
+     * @param phase      fraction in {@code [0, 1)} which staggers the boards polled right after an unlock
+     */
+    Instant nextPollTime(Instant now, int eventYear, int quietPolls, double phase) {
+        if (fixed) {
+            return now.plus(minInterval);
+        }
+        if (eventYear < currentEventYear(now)) {
+            return now.plus(maxInterval);
+        }
+        Instant nextUnlock = nextUnlock(now);
+        Instant staggeredNextUnlock = nextUnlock.plusMillis((long) (phase * minInterval.toMillis()));
+        Instant lastUnlock = lastUnlock(now);
+        if (lastUnlock == null) {
+            return staggeredNextUnlock;
+        }
+
+        boolean hot = isEventRunning(now) && now.isBefore(lastUnlock.plus(unlockHotWindow));
+        int backoffExponent = hot ? Math.max(0, quietPolls - quietPollThreshold) : quietPolls;
+        Instant nextPollTime = now.plus(backoffInterval(backoffExponent));
+
+        Instant earliestAfterUnlock = max(staggeredNextUnlock, now.plus(minInterval));
+        return nextPollTime.isAfter(earliestAfterUnlock) ? earliestAfterUnlock : nextPollTime;
+    }
+
+    private Duration backoffInterval(int backoffExponent) {
+        long maxFactor = maxInterval.toMillis() / Math.max(1, minInterval.toMillis());
+        long factor = backoffExponent >= Long.SIZE - 2 ? Long.MAX_VALUE : 1L << backoffExponent;
+        return factor >= maxFactor ? maxInterval : minInterval.multipliedBy(factor);
+    }
+
+    private static Instant max(Instant instant, Instant otherInstant) {
+        return instant.isAfter(otherInstant) ? instant : otherInstant;
+    }
+
+}
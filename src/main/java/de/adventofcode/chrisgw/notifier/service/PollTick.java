@@ -0,0 +1,22 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+
+
+@Value
+public class PollTick {
+
+    Object pollKey;
+    long tickCount;
+    Instant scheduledTime;
+    Instant actualTime;
+
+
+    public Duration lag() {
+        return Duration.between(scheduledTime, actualTime);
+    }
+
+}
@@ -0,0 +1,31 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import io.reactivex.Single;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+
+final class RxFutures {
+
+    private RxFutures() {
+    }
+
+
+    /**
+     * Emits the result of the future with the cause of a {@link CompletionException} unwrapped. A failure after the
+     * single was disposed is dropped instead of going to the global error handler.
+     */
+    static <T> Single<T> single(CompletableFuture<T> future) {
+        return Single.create(emitter -> future.whenComplete((value, throwable) -> {
+            if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                emitter.tryOnError(throwable.getCause());
+            } else if (throwable != null) {
+                emitter.tryOnError(throwable);
+            } else {
+                emitter.onSuccess(value);
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,198 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Circuit breaker per session cookie. Once Advent of Code rejected a cookie {@code sessionRejectionThreshold} times in
+ * a row, every board polled with it pauses for {@code sessionBreakerOpenMinutes}, doubled on each further rejection
+ * up to a day. Then a single probe request is let through; if it is accepted all boards resume. Sessions are only
+ * known by a short fingerprint, the cookie itself never shows up in logs or metrics.
+ */
+@Slf4j
+@Service
+public class SessionCircuitBreaker {
+
+    private static final String DEFAULT_SESSION = "default";
+    private static final Duration MAX_OPEN_DURATION = Duration.ofDays(1);
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private int rejectionThreshold = 2;
+    private Duration openDuration = Duration.ofMinutes(30);
+
+
+    @Inject
+    public SessionCircuitBreaker(NotifierMetrics metrics) {
+        metrics.gauges("aoc_session_circuit_state", "Session circuit breaker state, 0 closed, 1 half open, 2 open",
+                "session", this::stateOrdinals);
+    }
+
+
+    /**
+     * @param sessionId the cookie of the board, {@code null} for the configured one
+     * @return whether a request with the session may be sent now, a half open breaker lets one probe through
+     */
+    public boolean allowRequest(String sessionId) {
+        return breakerFor(sessionId).allowRequest();
+    }
+
+    public void recordSuccess(String sessionId) {
+        breakerFor(sessionId).recordSuccess();
+    }
+
+    public void recordRejection(String sessionId) {
+        breakerFor(sessionId).recordRejection();
+    }
+
+    /**
+     * A failure which says nothing about the session, e.g. a timeout, frees the probe of a half open breaker.
+     */
+    public void recordOtherFailure(String sessionId) {
+        breakerFor(sessionId).recordOtherFailure();
+    }
+
+    /**
+     * A request which was abandoned before its response, e.g. by disposing its feed, frees the probe of a half open
+     * breaker as well.
+     */
+    public void recordAbandoned(String sessionId) {
+        breakerFor(sessionId).recordOtherFailure();
+    }
+
+    public State stateOf(String sessionId) {
+        return breakerFor(sessionId).state();
+    }
+
+    public Map<String, State> states() {
+        Map<String, State> states = new LinkedHashMap<>();
+        breakers.forEach((fingerprint, breaker) -> states.put(fingerprint, breaker.state()));
+        return states;
+    }
+
+    private Map<String, Integer> stateOrdinals() {
+        Map<String, Integer> stateOrdinals = new LinkedHashMap<>();
+        states().forEach((fingerprint, state) -> stateOrdinals.put(fingerprint, state.ordinal()));
+        return stateOrdinals;
+    }
+
+
+    private Breaker breakerFor(String sessionId) {
+        String fingerprint = fingerprint(sessionId);
+        return breakers.computeIfAbsent(fingerprint, Breaker::new);
+    }
+
+    static String fingerprint(String sessionId) {
+        if (sessionId == null) {
+            return DEFAULT_SESSION;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sessionId.getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder(8);
+            for (int i = 0; i < 4; i++) {
+                fingerprint.append(String.format("%02x", digest[i]));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+
+    @Value("${sessionRejectionThreshold:2}")
+    public void setRejectionThreshold(int rejectionThreshold) {
+        if (rejectionThreshold <= 0) {
+            throw new IllegalArgumentException("Expect positive sessionRejectionThreshold: " + rejectionThreshold);
+        }
+        this.rejectionThreshold = rejectionThreshold;
+    }
+
+    @Value("${sessionBreakerOpenMinutes:30}")
+    public void setOpenMinutes(long openMinutes) {
+        if (openMinutes <= 0) {
+            throw new IllegalArgumentException("Expect positive sessionBreakerOpenMinutes: " + openMinutes);
+        }
+        this.openDuration = Duration.ofMinutes(openMinutes);
+    }
+
+
+    private class Breaker {
+
+        private final String fingerprint;
+        private State state = State.CLOSED;
+        private int rejections;
+        private int openCount;
+        private long openUntilMillis;
+        private boolean probeInFlight;
+
+
+        private Breaker(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+
+        private synchronized boolean allowRequest() {
+            if (state == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+                state = State.HALF_OPEN;
+                log.info("session {} circuit half open, probe with the next request", fingerprint);
+            }
+            if (state == State.HALF_OPEN && !probeInFlight) {
+                probeInFlight = true;
+                return true;
+            }
+            return state == State.CLOSED;
+        }
+
+        private synchronized void recordSuccess() {
+            if (state != State.CLOSED) {
+                log.info("session {} circuit closed, the session was accepted again", fingerprint);
+            }
+            state = State.CLOSED;
+            rejections = 0;
+            openCount = 0;
+            probeInFlight = false;
+        }
+
+        private synchronized void recordRejection() {
+            rejections++;
+            if (state == State.HALF_OPEN || state == State.CLOSED && rejections >= rejectionThreshold) {
+                openCount++;
+                Duration currentOpenDuration = openDuration.multipliedBy(1L << Math.min(openCount - 1, 16));
+                if (currentOpenDuration.compareTo(MAX_OPEN_DURATION) > 0) {
+                    currentOpenDuration = MAX_OPEN_DURATION;
+                }
+                state = State.OPEN;
+                openUntilMillis = System.currentTimeMillis() + currentOpenDuration.toMillis();
+                probeInFlight = false;
+                log.warn("session {} circuit open for {} min after {} rejections, replace the session cookie",
+                        fingerprint, currentOpenDuration.toMinutes(), rejections);
+            }
+        }
+
+        private synchronized void recordOtherFailure() {
+            probeInFlight = false;
+        }
+
+        private synchronized State state() {
+            return state;
+        }
+
+    }
+
+}
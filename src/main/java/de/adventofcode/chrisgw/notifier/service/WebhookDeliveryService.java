@@ -0,0 +1,482 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.http.HttpTransportResponse;
+import de.adventofcode.chrisgw.notifier.metrics.Counter;
+import de.adventofcode.chrisgw.notifier.metrics.Histogram;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Sends webhook messages through one outbox per webhook URL. Each outbox spends requests from a token bucket, pauses
+ * on 429 {@code Retry-After} and exhausted rate limit headers, retries failures with exponential backoff and
+ * coalesces pending changes of the same leaderboard into one message with the latest state. No thread waits for a
+ * webhook response, the outbox continues once the posted future completes.
+ * <p>
+ * A message split to the budget of a sink is posted part by part, each part spends a token. Once a part is delivered
+ * the outbox posts the next part of the message before any other message, a retry continues with the first part
+ * which was not delivered.
+ */
+@Slf4j
+@Service
+public class WebhookDeliveryService {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int REQUEST_TIMEOUT = 408;
+
+    private final Map<String, WebhookOutbox> webhookOutboxes = new ConcurrentHashMap<>();
+    private final NotifierMetrics metrics;
+    private final Counter retryCount;
+    private final Counter droppedCount;
+    private final Histogram starToDeliveryLatency;
+    private ScheduledExecutorService deliveryExecutor;
+
+    private double requestsPerSecond = 1.0;
+    private int burstSize = 5;
+    private int maxAttempts = 5;
+    private int maxRateLimitedAttempts = 20;
+    private long backoffBaseMillis = 1_000;
+    private long backoffMaxMillis = 300_000;
+    private int deliveryThreadCount = 4;
+
+
+    @Inject
+    public WebhookDeliveryService(NotifierMetrics metrics) {
+        this.metrics = requireNonNull(metrics);
+        this.starToDeliveryLatency = metrics.histogram("star_to_delivery_seconds",
+                "Time from get_star_ts of a new star to its delivered webhook message", Histogram.DELIVERY_BUCKETS);
+        metrics.gauge("webhook_pending_messages", "Webhook messages waiting in outboxes", this::pendingMessageCount);
+        this.retryCount = metrics.counter("webhook_retries_total", "Webhook posts scheduled for retry");
+        this.droppedCount = metrics.counter("webhook_dropped_total", "Webhook messages dropped after failures");
+    }
+
+
+    /**
+     * @param messageEncoder encodes a change to the parts of its message
+     * @param partPoster     posts one part of a message
+     */
+    public void submit(String webhookUrl, LeaderboardChange leaderboardChange,
+            Function<LeaderboardChange, List<String>> messageEncoder,
+            Function<String, CompletableFuture<HttpTransportResponse>> partPoster) {
+        requireNonNull(webhookUrl);
+        requireNonNull(messageEncoder);
+        requireNonNull(partPoster);
+        Leaderboard currentLeaderboard = leaderboardChange.getCurrentLeaderboard();
+        LeaderboardKey leaderboardKey = new LeaderboardKey(currentLeaderboard.getEvent(), currentLeaderboard.getOwnerId());
+        webhookOutboxes.computeIfAbsent(webhookUrl, url -> new WebhookOutbox(url, messageEncoder, partPoster))
+                .submit(leaderboardKey, leaderboardChange);
+    }
+
+
+    public int pendingMessageCount() {
+        return webhookOutboxes.values().stream().mapToInt(WebhookOutbox::pendingMessageCount).sum();
+    }
+
+    public long retryCount() {
+        return retryCount.count();
+    }
+
+    public long droppedCount() {
+        return droppedCount.count();
+    }
+
+
+    private synchronized ScheduledExecutorService deliveryExecutor() {
+        if (deliveryExecutor == null) {
+            deliveryExecutor = Executors.newScheduledThreadPool(deliveryThreadCount, new BasicThreadFactory.Builder() //
+                    .namingPattern("aoc-webhook-%d")
+                    .daemon(true)
+                    .build());
+        }
+        return deliveryExecutor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (deliveryExecutor != null) {
+            deliveryExecutor.shutdownNow();
+            deliveryExecutor = null;
+        }
+    }
+
+
+    @Value("${webhookRequestsPerSecond:1.0}")
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Expect positive webhookRequestsPerSecond: " + requestsPerSecond);
+        }
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    @Value("${webhookBurstSize:5}")
+    public void setBurstSize(int burstSize) {
+        if (burstSize <= 0) {
+            throw new IllegalArgumentException("Expect positive webhookBurstSize: " + burstSize);
+        }
+        this.burstSize = burstSize;
+    }
+
+    @Value("${webhookMaxAttempts:5}")
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Rate limited attempts of a message part before it is dropped, counted apart from {@code webhookMaxAttempts}
+     * because a 429 tells the message was fine.
+     */
+    @Value("${webhookMaxRateLimitedAttempts:20}")
+    public void setMaxRateLimitedAttempts(int maxRateLimitedAttempts) {
+        this.maxRateLimitedAttempts = Math.max(1, maxRateLimitedAttempts);
+    }
+
+    @Value("${webhookBackoffBaseMillis:1000}")
+    public void setBackoffBaseMillis(long backoffBaseMillis) {
+        this.backoffBaseMillis = Math.max(1, backoffBaseMillis);
+    }
+
+    @Value("${webhookBackoffMaxMillis:300000}")
+    public void setBackoffMaxMillis(long backoffMaxMillis) {
+        this.backoffMaxMillis = Math.max(1, backoffMaxMillis);
+    }
+
+    @Value("${webhookThreadCount:4}")
+    public void setDeliveryThreadCount(int deliveryThreadCount) {
+        if (deliveryThreadCount <= 0) {
+            throw new IllegalArgumentException("Expect positive webhookThreadCount: " + deliveryThreadCount);
+        }
+        this.deliveryThreadCount = deliveryThreadCount;
+    }
+
+
+    private enum DeliveryOutcome {
+        DELIVERED, RATE_LIMITED, RETRY, DROP
+    }
+
+
+    private static class PendingMessage {
+
+        private final LeaderboardChange leaderboardChange;
+        /** parts of the encoded message, {@code null} until the message is posted the first time */
+        private final List<String> parts;
+        /** index of the first part which was not delivered yet */
+        private final int nextPart;
+        /** failed attempts to post the next part */
+        private final int attempts;
+        /** rate limited attempts to post the next part */
+        private final int rateLimitedAttempts;
+
+
+        private PendingMessage(LeaderboardChange leaderboardChange) {
+            this(leaderboardChange, null, 0, 0, 0);
+        }
+
+        private PendingMessage(LeaderboardChange leaderboardChange, List<String> parts, int nextPart, int attempts,
+                int rateLimitedAttempts) {
+            this.leaderboardChange = leaderboardChange;
+            this.parts = parts;
+            this.nextPart = nextPart;
+            this.attempts = attempts;
+            this.rateLimitedAttempts = rateLimitedAttempts;
+        }
+
+
+        private PendingMessage encode(Function<LeaderboardChange, List<String>> messageEncoder) {
+            if (parts != null) {
+                return this;
+            }
+            List<String> encodedParts = List.copyOf(messageEncoder.apply(leaderboardChange));
+            if (encodedParts.isEmpty()) {
+                throw new IllegalArgumentException("Expect at least one message part: " + leaderboardChange);
+            }
+            return new PendingMessage(leaderboardChange, encodedParts, 0, attempts, rateLimitedAttempts);
+        }
+
+        private String nextPart() {
+            return parts.get(nextPart);
+        }
+
+        private boolean isPartiallyDelivered() {
+            return nextPart > 0;
+        }
+
+        private PendingMessage partDelivered() {
+            return new PendingMessage(leaderboardChange, parts, nextPart + 1, 0, 0);
+        }
+
+        private boolean isDelivered() {
+            return parts != null && nextPart == parts.size();
+        }
+
+        private PendingMessage failedAttempt() {
+            return new PendingMessage(leaderboardChange, parts, nextPart, attempts + 1, rateLimitedAttempts);
+        }
+
+        private PendingMessage rateLimitedAttempt() {
+            return new PendingMessage(leaderboardChange, parts, nextPart, attempts, rateLimitedAttempts + 1);
+        }
+
+        /**
+         * A message of which no part was delivered yet, reporting the changes of both messages.
+         */
+        private PendingMessage coalesce(PendingMessage newerMessage) {
+            Leaderboard previousLeaderboard = leaderboardChange.getPreviousLeaderboard();
+            Leaderboard currentLeaderboard = newerMessage.leaderboardChange.getCurrentLeaderboard();
+            return new PendingMessage(new LeaderboardChange(previousLeaderboard, currentLeaderboard), null, 0,
+                    attempts, rateLimitedAttempts);
+        }
+
+    }
+
+
+    private class WebhookOutbox {
+
+        private final String webhookUrl;
+        private final Function<LeaderboardChange, List<String>> messageEncoder;
+        private final Function<String, CompletableFuture<HttpTransportResponse>> partPoster;
+        private final Map<LeaderboardKey, PendingMessage> pendingMessages = new LinkedHashMap<>();
+        private final Histogram postLatency;
+
+        /** partially delivered message, its next part is posted before any other message */
+        private LeaderboardKey partialMessageKey;
+        private PendingMessage partialMessage;
+
+        private boolean drainScheduled;
+        private double tokens = burstSize;
+        private long lastRefillNanos = System.nanoTime();
+        private long pausedUntilNanos = System.nanoTime();
+        private int consecutiveFailures;
+
+
+        private WebhookOutbox(String webhookUrl, Function<LeaderboardChange, List<String>> messageEncoder,
+                Function<String, CompletableFuture<HttpTransportResponse>> partPoster) {
+            this.webhookUrl = webhookUrl;
+            this.messageEncoder = messageEncoder;
+            this.partPoster = partPoster;
+            this.postLatency = metrics.histogram("webhook_post_seconds", "Webhook POST latency", "host",
+                    String.valueOf(URI.create(webhookUrl).getHost()));
+        }
+
+
+        private synchronized void submit(LeaderboardKey leaderboardKey, LeaderboardChange leaderboardChange) {
+            PendingMessage pendingMessage = new PendingMessage(leaderboardChange);
+            if (pendingMessages.containsKey(leaderboardKey)) {
+                log.debug("coalesce pending message for {} to {}", leaderboardKey, webhookUrl);
+            }
+            pendingMessages.merge(leaderboardKey, pendingMessage, PendingMessage::coalesce);
+            scheduleDrain(0);
+        }
+
+        private synchronized int pendingMessageCount() {
+            return pendingMessages.size() + (partialMessage != null ? 1 : 0);
+        }
+
+        // at most one drain per outbox is scheduled or waiting for its post, so each webhook URL gets its posts one
+        // at a time
+        private synchronized void scheduleDrain(long delayNanos) {
+            if (!drainScheduled && (partialMessage != null || !pendingMessages.isEmpty())) {
+                drainScheduled = true;
+                deliveryExecutor().schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+
+        private void drain() {
+            LeaderboardKey leaderboardKey;
+            PendingMessage pendingMessage;
+            synchronized (this) {
+                long waitNanos = nanosUntilNextRequest();
+                Iterator<Map.Entry<LeaderboardKey, PendingMessage>> pendingIterator = pendingMessages.entrySet()
+                        .iterator();
+                if (waitNanos > 0 || (partialMessage == null && !pendingIterator.hasNext())) {
+                    drainScheduled = false;
+                    scheduleDrain(Math.max(0, waitNanos));
+                    return;
+                }
+                if (partialMessage != null) {
+                    leaderboardKey = partialMessageKey;
+                    pendingMessage = partialMessage;
+                    partialMessageKey = null;
+                    partialMessage = null;
+                } else {
+                    Map.Entry<LeaderboardKey, PendingMessage> nextEntry = pendingIterator.next();
+                    pendingIterator.remove();
+                    leaderboardKey = nextEntry.getKey();
+                    pendingMessage = nextEntry.getValue();
+                }
+                tokens -= 1; // one token per posted part
+            }
+
+            PendingMessage encodedMessage;
+            try {
+                encodedMessage = pendingMessage.encode(messageEncoder);
+            } catch (RuntimeException e) {
+                log.error("could not encode new Leaderboard message", e);
+                onPosted(leaderboardKey, pendingMessage, DeliveryOutcome.DROP);
+                return;
+            }
+            post(encodedMessage.nextPart()).thenAccept(deliveryOutcome -> //
+                    onPosted(leaderboardKey, encodedMessage, deliveryOutcome));
+        }
+
+        private void onPosted(LeaderboardKey leaderboardKey, PendingMessage pendingMessage,
+                DeliveryOutcome deliveryOutcome) {
+            synchronized (this) {
+                drainScheduled = false;
+                if (deliveryOutcome == DeliveryOutcome.DELIVERED) {
+                    consecutiveFailures = 0;
+                    PendingMessage remainingMessage = pendingMessage.partDelivered();
+                    if (remainingMessage.isDelivered()) {
+                        observeStarToDeliveryLatency(pendingMessage.leaderboardChange);
+                    } else {
+                        requeue(leaderboardKey, remainingMessage);
+                    }
+                } else if (deliveryOutcome == DeliveryOutcome.RATE_LIMITED
+                        && pendingMessage.rateLimitedAttempts + 1 < maxRateLimitedAttempts) {
+                    // repeated 429s back off exponentially, at least as long as a Retry-After asks for
+                    pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + backoffNanos());
+                    requeue(leaderboardKey, pendingMessage.rateLimitedAttempt());
+                } else if (deliveryOutcome == DeliveryOutcome.RETRY && pendingMessage.attempts + 1 < maxAttempts) {
+                    retryCount.increment();
+                    pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + backoffNanos());
+                    requeue(leaderboardKey, pendingMessage.failedAttempt());
+                } else {
+                    droppedCount.increment();
+                    boolean rateLimited = deliveryOutcome == DeliveryOutcome.RATE_LIMITED;
+                    log.error("drop message for {} to {} at part {} after {} failed and {} rate limited attempts",
+                            leaderboardKey, webhookUrl, pendingMessage.nextPart + 1,
+                            pendingMessage.attempts + (rateLimited ? 0 : 1),
+                            pendingMessage.rateLimitedAttempts + (rateLimited ? 1 : 0));
+                }
+                scheduleDrain(0);
+            }
+        }
+
+        // a partially delivered message continues with its next part, newer changes of the leaderboard stay queued
+        // behind it; a message without delivered parts is coalesced with newer changes
+        private void requeue(LeaderboardKey leaderboardKey, PendingMessage pendingMessage) {
+            if (pendingMessage.isPartiallyDelivered()) {
+                partialMessageKey = leaderboardKey;
+                partialMessage = pendingMessage;
+                return;
+            }
+            PendingMessage newerMessage = pendingMessages.remove(leaderboardKey);
+            PendingMessage requeuedMessage = newerMessage == null ? pendingMessage : pendingMessage.coalesce(newerMessage);
+            pendingMessages.put(leaderboardKey, requeuedMessage);
+        }
+
+        private long nanosUntilNextRequest() {
+            long now = System.nanoTime();
+            tokens = Math.min(burstSize, tokens + (now - lastRefillNanos) * requestsPerSecond / 1e9);
+            lastRefillNanos = now;
+            long pausedNanos = pausedUntilNanos - now;
+            long tokenNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / requestsPerSecond * 1e9);
+            return Math.max(pausedNanos, tokenNanos);
+        }
+
+        private long backoffNanos() {
+            consecutiveFailures++;
+            long backoffMillis = backoffBaseMillis << Math.min(consecutiveFailures - 1, 20);
+            backoffMillis = Math.min(backoffMillis, backoffMaxMillis);
+            long jitterMillis = ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+            return TimeUnit.MILLISECONDS.toNanos(backoffMillis / 2 + jitterMillis);
+        }
+
+
+        private CompletableFuture<DeliveryOutcome> post(String part) {
+            long startNanos = System.nanoTime();
+            CompletableFuture<HttpTransportResponse> response;
+            try {
+                response = partPoster.apply(part);
+            } catch (RuntimeException e) {
+                log.error("could not send new Leaderboard message", e);
+                return CompletableFuture.completedFuture(DeliveryOutcome.DROP);
+            }
+            return response.handle((webhookResponse, throwable) -> {
+                postLatency.observeSince(startNanos);
+                if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                    throwable = throwable.getCause();
+                }
+                if (throwable instanceof IOException) {
+                    log.warn("could not send new Leaderboard message to " + webhookUrl, throwable);
+                    return DeliveryOutcome.RETRY;
+                } else if (throwable != null) {
+                    log.error("could not send new Leaderboard message", throwable);
+                    return DeliveryOutcome.DROP;
+                }
+                return deliveryOutcome(webhookResponse);
+            });
+        }
+
+        private DeliveryOutcome deliveryOutcome(HttpTransportResponse response) {
+            applyRateLimitHeaders(response);
+            int status = response.getStatus();
+            if (response.isSuccessful()) {
+                log.debug("sendLeaderboardChangeMessage {}", status);
+                return DeliveryOutcome.DELIVERED;
+            } else if (status == TOO_MANY_REQUESTS) {
+                log.warn("rate limited by {}, retry after {}", webhookUrl, response.header("Retry-After"));
+                return DeliveryOutcome.RATE_LIMITED;
+            } else if (status == REQUEST_TIMEOUT || status >= 500) {
+                log.warn("sendLeaderboardChangeMessage {} failed with {}", webhookUrl, status);
+                return DeliveryOutcome.RETRY;
+            }
+            log.error("sendLeaderboardChangeMessage {} failed with {}: {}", webhookUrl, status,
+                    response.bodyAsString());
+            return DeliveryOutcome.DROP;
+        }
+
+        private synchronized void applyRateLimitHeaders(HttpTransportResponse response) {
+            long now = System.nanoTime();
+            OptionalDouble retryAfterSeconds = parseSeconds(response.header("Retry-After"));
+            if (retryAfterSeconds.isPresent()) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + (long) (retryAfterSeconds.getAsDouble() * 1e9));
+            }
+            OptionalDouble remaining = parseSeconds(response.header("X-RateLimit-Remaining"));
+            OptionalDouble resetAfterSeconds = parseSeconds(response.header("X-RateLimit-Reset-After"));
+            if (remaining.isPresent() && remaining.getAsDouble() < 1 && resetAfterSeconds.isPresent()) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + (long) (resetAfterSeconds.getAsDouble() * 1e9));
+            }
+        }
+
+    }
+
+
+    private void observeStarToDeliveryLatency(LeaderboardChange leaderboardChange) {
+        long nowEpochSecond = System.currentTimeMillis() / 1000;
+        leaderboardChange.getDelta()
+                .membersWithNewFinishedDayTasks()
+                .flatMap(memberDelta -> memberDelta.getNewFinishedDayTasks().stream())
+                .mapToLong(AdventOfCodeDayTask::getLastCompletionEpochSecond)
+                .forEach(starEpochSecond -> starToDeliveryLatency.observeSeconds(nowEpochSecond - starEpochSecond));
+    }
+
+    private static OptionalDouble parseSeconds(String headerValue) {
+        if (headerValue == null) {
+            return OptionalDouble.empty();
+        }
+        try {
+            return OptionalDouble.of(Math.max(0, Double.parseDouble(headerValue.trim())));
+        } catch (NumberFormatException e) {
+            return OptionalDouble.empty(); // e.g. Retry-After as HTTP date
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardStanding;
+import de.adventofcode.chrisgw.notifier.model.StarEvent;
+
+import java.util.*;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_LEVELS;
+
+
+/**
+ * Time ordered star events of one leaderboard in primitive columns. Every {@value #CHECKPOINT_INTERVAL} events the
+ * replayed tally is kept as checkpoint, so a point-in-time query replays less than one interval.
+ */
+final class BoardHistory {
+
+    static final byte JOIN = -1;
+    static final byte LEAVE = -2;
+
+    private static final int CHECKPOINT_INTERVAL = 256;
+    private static final int ALL_COMPLETIONS = DAY_TASK_COUNT * DAY_TASK_LEVELS;
+
+    private final Map<Long, Integer> memberIndexById = new HashMap<>();
+    private long[] memberIds = new long[16];
+    private String[] printNames = new String[16];
+    private long[] memberCompletionMasks = new long[16];
+    private byte[] memberMembershipKinds = new byte[16];
+    private int memberCount;
+
+    private int[] eventEpochSeconds = new int[CHECKPOINT_INTERVAL];
+    private int[] eventMembers = new int[CHECKPOINT_INTERVAL];
+    private byte[] eventKinds = new byte[CHECKPOINT_INTERVAL];
+    private int eventCount;
+
+    /** checkpoint {@code k} is the tally after the first {@code k * CHECKPOINT_INTERVAL} events */
+    private final List<Tally> checkpoints = new ArrayList<>(List.of(new Tally(0)));
+
+
+    /**
+     * Appends the event, or inserts it at its time position if it is older than the latest event, e.g. for stars of a
+     * member who just joined. Checkpoints behind an inserted event are discarded. A star which is already recorded is
+     * ignored, as well as a join or leave which repeats the latest join or leave of the member.
+     *
+     * @param kind completion index {@code (day - 1) * 2 + level - 1} of a star, {@link #JOIN} or {@link #LEAVE}
+     */
+    synchronized void add(int epochSecond, long memberId, String printName, byte kind) {
+        int member = memberIndex(memberId, printName);
+        if (kind >= 0) {
+            long completionBit = 1L << kind;
+            if ((memberCompletionMasks[member] & completionBit) != 0) {
+                return;
+            }
+            memberCompletionMasks[member] |= completionBit;
+        } else {
+            if (memberMembershipKinds[member] == kind) {
+                return;
+            }
+            memberMembershipKinds[member] = kind;
+        }
+        ensureEventCapacity(eventCount + 1);
+        int position = upperBound(epochSecond);
+        if (position < eventCount) {
+            System.arraycopy(eventEpochSeconds, position, eventEpochSeconds, position + 1, eventCount - position);
+            System.arraycopy(eventMembers, position, eventMembers, position + 1, eventCount - position);
+            System.arraycopy(eventKinds, position, eventKinds, position + 1, eventCount - position);
+            int validCheckpoints = position / CHECKPOINT_INTERVAL + 1;
+            if (validCheckpoints < checkpoints.size()) {
+                checkpoints.subList(validCheckpoints, checkpoints.size()).clear();
+            }
+        }
+        eventEpochSeconds[position] = epochSecond;
+        eventMembers[position] = member;
+        eventKinds[position] = kind;
+        eventCount++;
+    }
+
+    synchronized int eventCount() {
+        return eventCount;
+    }
+
+
+    synchronized List<LeaderboardStanding> standingsAsOf(int epochSecond) {
+        int eventLimit = upperBound(epochSecond);
+        int checkpoint = Math.min(eventLimit / CHECKPOINT_INTERVAL, checkpoints.size() - 1);
+        Tally tally = checkpoints.get(checkpoint).copy(memberCount);
+        for (int event = checkpoint * CHECKPOINT_INTERVAL; event < eventLimit; event++) {
+            tally.apply(eventMembers[event], eventKinds[event], eventEpochSeconds[event]);
+            int replayedEvents = event + 1;
+            boolean nextCheckpoint = replayedEvents / CHECKPOINT_INTERVAL == checkpoints.size();
+            if (replayedEvents % CHECKPOINT_INTERVAL == 0 && nextCheckpoint) {
+                checkpoints.add(tally.copy(memberCount));
+            }
+        }
+        return tally.standings();
+    }
+
+    /**
+     * Standings which only count the stars of the days {@code 1..day}, regardless of when they were earned.
+     */
+    synchronized List<LeaderboardStanding> standingsAfterDay(int day) {
+        int completionLimit = Math.min(day, DAY_TASK_COUNT) * DAY_TASK_LEVELS;
+        if (completionLimit >= ALL_COMPLETIONS) {
+            return standingsAsOf(Integer.MAX_VALUE);
+        }
+        Tally tally = new Tally(memberCount);
+        for (int event = 0; event < eventCount; event++) {
+            byte kind = eventKinds[event];
+            if (kind < completionLimit) {
+                tally.apply(eventMembers[event], kind, eventEpochSeconds[event]);
+            }
+        }
+        return tally.standings();
+    }
+
+    synchronized List<StarEvent> events(long memberId) {
+        Integer member = memberIndexById.get(memberId);
+        if (member == null) {
+            return List.of();
+        }
+        List<StarEvent> events = new ArrayList<>();
+        for (int event = 0; event < eventCount; event++) {
+            if (eventMembers[event] == member) {
+                events.add(starEvent(event));
+            }
+        }
+        return events;
+    }
+
+    synchronized List<StarEvent> events(int fromEpochSecond, int toEpochSecond) {
+        List<StarEvent> events = new ArrayList<>();
+        int firstEvent = fromEpochSecond == Integer.MIN_VALUE ? 0 : upperBound(fromEpochSecond - 1);
+        for (int event = firstEvent; event < upperBound(toEpochSecond); event++) {
+            events.add(starEvent(event));
+        }
+        return events;
+    }
+
+
+    private StarEvent starEvent(int event) {
+        long memberId = memberIds[eventMembers[event]];
+        byte kind = eventKinds[event];
+        int epochSecond = eventEpochSeconds[event];
+        if (kind == JOIN) {
+            return new StarEvent(StarEvent.Type.JOIN, memberId, 0, 0, epochSecond);
+        } else if (kind == LEAVE) {
+            return new StarEvent(StarEvent.Type.LEAVE, memberId, 0, 0, epochSecond);
+        }
+        return new StarEvent(StarEvent.Type.STAR, memberId, kind / DAY_TASK_LEVELS + 1, kind % DAY_TASK_LEVELS + 1,
+                epochSecond);
+    }
+
+    private int memberIndex(long memberId, String printName) {
+        Integer member = memberIndexById.get(memberId);
+        if (member == null) {
+            if (memberCount == memberIds.length) {
+                memberIds = Arrays.copyOf(memberIds, memberCount * 2);
+                printNames = Arrays.copyOf(printNames, memberCount * 2);
+                memberCompletionMasks = Arrays.copyOf(memberCompletionMasks, memberCount * 2);
+                memberMembershipKinds = Arrays.copyOf(memberMembershipKinds, memberCount * 2);
+            }
+            member = memberCount++;
+            memberIds[member] = memberId;
+            memberIndexById.put(memberId, member);
+        }
+        printNames[member] = printName;
+        return member;
+    }
+
+    private void ensureEventCapacity(int capacity) {
+        if (capacity > eventEpochSeconds.length) {
+            int newCapacity = Math.max(capacity, eventEpochSeconds.length * 2);
+            eventEpochSeconds = Arrays.copyOf(eventEpochSeconds, newCapacity);
+            eventMembers = Arrays.copyOf(eventMembers, newCapacity);
+            eventKinds = Arrays.copyOf(eventKinds, newCapacity);
+        }
+    }
+
+    /** index of the first event after {@code epochSecond} */
+    private int upperBound(int epochSecond) {
+        int low = 0;
+        int high = eventCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (eventEpochSeconds[middle] <= epochSecond) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Replayed state of all members. The local score follows the Advent of Code rules: each star is worth the member
+     * count minus the number of members who earned it before. Members who left still count as earlier finishers.
+     */
+    private final class Tally {
+
+        private int[] stars;
+        private long[] finisherPositionSums;
+        private int[] lastStarEpochSeconds;
+        private boolean[] present;
+        private final int[] finishers;
+        private int presentCount;
+
+
+        private Tally(int capacity) {
+            this.stars = new int[capacity];
+            this.finisherPositionSums = new long[capacity];
+            this.lastStarEpochSeconds = new int[capacity];
+            this.present = new boolean[capacity];
+            this.finishers = new int[ALL_COMPLETIONS];
+        }
+
+        private Tally(Tally tally, int capacity) {
+            this.stars = Arrays.copyOf(tally.stars, capacity);
+            this.finisherPositionSums = Arrays.copyOf(tally.finisherPositionSums, capacity);
+            this.lastStarEpochSeconds = Arrays.copyOf(tally.lastStarEpochSeconds, capacity);
+            this.present = Arrays.copyOf(tally.present, capacity);
+            this.finishers = tally.finishers.clone();
+            this.presentCount = tally.presentCount;
+        }
+
+
+        private Tally copy(int capacity) {
+            return new Tally(this, capacity);
+        }
+
+        private void apply(int member, byte kind, int epochSecond) {
+            if (kind == LEAVE) {
+                setPresent(member, false);
+                return;
+            }
+            setPresent(member, true);
+            if (kind != JOIN) {
+                stars[member]++;
+                finisherPositionSums[member] += finishers[kind]++;
+                lastStarEpochSeconds[member] = Math.max(lastStarEpochSeconds[member], epochSecond);
+            }
+        }
+
+        private void setPresent(int member, boolean memberPresent) {
+            if (present[member] != memberPresent) {
+                present[member] = memberPresent;
+                presentCount += memberPresent ? 1 : -1;
+            }
+        }
+
+        private List<LeaderboardStanding> standings() {
+            Integer[] presentMembers = new Integer[presentCount];
+            int count = 0;
+            for (int member = 0; member < present.length; member++) {
+                if (present[member]) {
+                    presentMembers[count++] = member;
+                }
+            }
+            long[] localScores = new long[present.length];
+            for (Integer member : presentMembers) {
+                localScores[member] = (long) stars[member] * presentCount - finisherPositionSums[member];
+            }
+            Arrays.sort(presentMembers, (member, otherMember) -> {
+                int comparison = Long.compare(localScores[otherMember], localScores[member]);
+                if (comparison == 0) {
+                    comparison = Integer.compare(lastStarEpochSeconds[member], lastStarEpochSeconds[otherMember]);
+                }
+                if (comparison == 0) {
+                    comparison = Long.compare(memberIds[member], memberIds[otherMember]);
+                }
+                return comparison;
+            });
+
+            List<LeaderboardStanding> standings = new ArrayList<>(presentCount);
+            for (Integer member : presentMembers) {
+                standings.add(new LeaderboardStanding(standings.size() + 1, memberIds[member], printNames[member],
+                        (int) Math.max(0, localScores[member]), stars[member], lastStarEpochSeconds[member]));
+            }
+            return standings;
+        }
+
+    }
+
+}
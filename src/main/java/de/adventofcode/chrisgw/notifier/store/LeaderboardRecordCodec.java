@@ -0,0 +1,306 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32C;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_LEVELS;
+
+
+/**
+ * Binary records of the leaderboard store. Each record is framed as {@code int payloadLength, int crc32c, payload},
+ * the payload starts with {@code byte type, int year, long leaderboardId}.
+ */
+final class LeaderboardRecordCodec {
+
+    static final byte SNAPSHOT_HEADER = 0;
+    static final byte BOARD_RESET = 1;
+    static final byte MEMBER_UPSERT = 2;
+    static final byte MEMBER_REMOVE = 3;
+    static final byte MEMBERSHIP_EVENT = 4;
+
+    static final int FRAME_HEADER_BYTES = 8;
+    static final int MAX_PAYLOAD_BYTES = 1 << 16;
+
+
+    private LeaderboardRecordCodec() {
+    }
+
+
+    static byte[] snapshotHeader(long coveredSegmentId) {
+        return encode(SNAPSHOT_HEADER, new LeaderboardKey(0, 0), out -> out.writeLong(coveredSegmentId));
+    }
+
+    static byte[] boardReset(LeaderboardKey leaderboardKey) {
+        return encode(BOARD_RESET, leaderboardKey, out -> {
+        });
+    }
+
+    static byte[] memberUpsert(LeaderboardKey leaderboardKey, LeaderboardMember member) {
+        return encode(MEMBER_UPSERT, leaderboardKey, out -> writeMember(out, member));
+    }
+
+    static byte[] memberRemove(LeaderboardKey leaderboardKey, long memberId) {
+        return encode(MEMBER_REMOVE, leaderboardKey, out -> out.writeLong(memberId));
+    }
+
+    static byte[] membershipEvent(LeaderboardKey leaderboardKey, MembershipEvent membershipEvent) {
+        return encode(MEMBERSHIP_EVENT, leaderboardKey, out -> {
+            out.writeInt(membershipEvent.getEpochSecond());
+            out.writeByte(membershipEvent.getKind());
+            writeMember(out, membershipEvent.getMember());
+        });
+    }
+
+
+    /**
+     * Records which turn {@code previousLeaderboard} into {@code currentLeaderboard}: a reset for a new leaderboard,
+     * an upsert for every new or changed member and a remove for every member who left.
+     */
+    static List<byte[]> diff(LeaderboardKey leaderboardKey, Leaderboard previousLeaderboard,
+            Leaderboard currentLeaderboard) {
+        List<byte[]> records = new ArrayList<>();
+        if (previousLeaderboard == null) {
+            records.add(boardReset(leaderboardKey));
+        }
+        currentLeaderboard.members().forEach(member -> {
+            LeaderboardMember previousMember = previousLeaderboard == null //
+                    ? null : previousLeaderboard.getMemberForId(member.getId()).orElse(null);
+            if (!member.equals(previousMember)) {
+                records.add(memberUpsert(leaderboardKey, member));
+            }
+        });
+        if (previousLeaderboard != null) {
+            previousLeaderboard.members()
+                    .filter(previousMember -> !currentLeaderboard.containsMember(previousMember.getId()))
+                    .forEach(previousMember -> records.add(memberRemove(leaderboardKey, previousMember.getId())));
+        }
+        return records;
+    }
+
+    /**
+     * Membership events which differ {@code previousLeaderboard} from {@code currentLeaderboard}. A new leaderboard has
+     * none, its members count as joined before the first event.
+     */
+    static List<MembershipEvent> membershipChanges(Leaderboard previousLeaderboard, Leaderboard currentLeaderboard,
+            int epochSecond) {
+        if (previousLeaderboard == null) {
+            return List.of();
+        }
+        List<MembershipEvent> membershipEvents = new ArrayList<>();
+        currentLeaderboard.members()
+                .filter(member -> !previousLeaderboard.containsMember(member.getId()))
+                .forEach(member -> membershipEvents.add(MembershipEvent.of(epochSecond, BoardHistory.JOIN, member)));
+        previousLeaderboard.members()
+                .filter(previousMember -> !currentLeaderboard.containsMember(previousMember.getId()))
+                .forEach(previousMember -> membershipEvents.add(
+                        MembershipEvent.of(epochSecond, BoardHistory.LEAVE, previousMember)));
+        return membershipEvents;
+    }
+
+    /**
+     * A reset of each leaderboard followed by its members and its membership events.
+     */
+    static byte[] snapshot(long coveredSegmentId, Map<LeaderboardKey, Leaderboard> leaderboards,
+            Map<LeaderboardKey, List<MembershipEvent>> membershipEvents) {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        snapshot.writeBytes(snapshotHeader(coveredSegmentId));
+        leaderboards.forEach((leaderboardKey, leaderboard) -> {
+            snapshot.writeBytes(boardReset(leaderboardKey));
+            leaderboard.members().forEach(member -> snapshot.writeBytes(memberUpsert(leaderboardKey, member)));
+            membershipEvents.getOrDefault(leaderboardKey, List.of())
+                    .forEach(membershipEvent -> snapshot.writeBytes(membershipEvent(leaderboardKey, membershipEvent)));
+        });
+        return snapshot.toByteArray();
+    }
+
+
+    /**
+     * Returns the payload of the next record and advances the buffer behind it, or returns {@code null} without
+     * advancing if the rest of the buffer is no complete record with a valid checksum, e.g. after a torn write.
+     */
+    static ByteBuffer nextPayload(ByteBuffer buffer) {
+        if (buffer.remaining() < FRAME_HEADER_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        int payloadLength = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD_BYTES
+                || payloadLength > buffer.remaining() - FRAME_HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + FRAME_HEADER_BYTES).limit(start + FRAME_HEADER_BYTES + payloadLength);
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(payload.duplicate());
+        if ((int) crc32c.getValue() != checksum) {
+            return null;
+        }
+        buffer.position(start + FRAME_HEADER_BYTES + payloadLength);
+        return payload.slice();
+    }
+
+    static byte recordType(ByteBuffer payload) {
+        return payload.get(0);
+    }
+
+    static long snapshotCoveredSegmentId(ByteBuffer payload) {
+        return payload.getLong(13);
+    }
+
+    /**
+     * Applies the record to the leaderboards and their membership events. A reset also drops the membership events of
+     * the leaderboard, a membership event which is already known is ignored, so replaying a record twice is harmless.
+     */
+    static void apply(ByteBuffer payload, Map<LeaderboardKey, Leaderboard> leaderboards,
+            Map<LeaderboardKey, List<MembershipEvent>> membershipEvents) {
+        byte type = payload.get();
+        LeaderboardKey leaderboardKey = new LeaderboardKey(payload.getInt(), payload.getLong());
+        switch (type) {
+        case BOARD_RESET:
+            leaderboards.put(leaderboardKey, newLeaderboard(leaderboardKey));
+            membershipEvents.remove(leaderboardKey);
+            break;
+        case MEMBER_UPSERT:
+            leaderboards.computeIfAbsent(leaderboardKey, LeaderboardRecordCodec::newLeaderboard)
+                    .addMember(readMember(payload));
+            break;
+        case MEMBER_REMOVE:
+            Leaderboard leaderboard = leaderboards.get(leaderboardKey);
+            if (leaderboard != null) {
+                leaderboard.removeMember(payload.getLong());
+            }
+            break;
+        case MEMBERSHIP_EVENT:
+            int epochSecond = payload.getInt();
+            byte kind = payload.get();
+            addMembershipEvent(membershipEvents, leaderboardKey,
+                    MembershipEvent.of(epochSecond, kind, readMember(payload)));
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static Leaderboard newLeaderboard(LeaderboardKey leaderboardKey) {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.setEvent(leaderboardKey.getYear());
+        leaderboard.setOwnerId(leaderboardKey.getLeaderboardId());
+        return leaderboard;
+    }
+
+    /**
+     * @return whether the membership event was not known yet
+     */
+    static boolean addMembershipEvent(Map<LeaderboardKey, List<MembershipEvent>> membershipEvents,
+            LeaderboardKey leaderboardKey, MembershipEvent membershipEvent) {
+        List<MembershipEvent> leaderboardMembershipEvents = membershipEvents.computeIfAbsent(leaderboardKey,
+                key -> new CopyOnWriteArrayList<>());
+        if (leaderboardMembershipEvents.contains(membershipEvent)) {
+            return false;
+        }
+        return leaderboardMembershipEvents.add(membershipEvent);
+    }
+
+    private static void writeMember(DataOutputStream out, LeaderboardMember member) throws IOException {
+        out.writeLong(member.getId());
+        writeString(out, member.getName());
+        writeString(out, member.getPrintName());
+        out.writeInt(member.getLocalScore());
+        out.writeInt(member.getGlobalScore());
+        out.writeInt(member.getLastStarTsSeconds());
+        out.writeInt(member.getStars());
+        long completionMask = member.getCompletionMask();
+        out.writeLong(completionMask);
+        for (long mask = completionMask; mask != 0; mask &= mask - 1) {
+            int completionIndex = Long.numberOfTrailingZeros(mask);
+            int day = completionIndex / DAY_TASK_LEVELS + 1;
+            int level = completionIndex % DAY_TASK_LEVELS + 1;
+            out.writeInt(member.getCompletedEpochSecond(day, level));
+        }
+    }
+
+    private static LeaderboardMember readMember(ByteBuffer payload) {
+        LeaderboardMember member = new LeaderboardMember();
+        member.setId(payload.getLong());
+        member.setName(readString(payload));
+        member.setPrintName(readString(payload));
+        member.setLocalScore(payload.getInt());
+        member.setGlobalScore(payload.getInt());
+        member.setLastStarTsSeconds(payload.getInt());
+        member.setStars(payload.getInt());
+        long completionMask = payload.getLong();
+        for (long mask = completionMask; mask != 0; mask &= mask - 1) {
+            int completionIndex = Long.numberOfTrailingZeros(mask);
+            int day = completionIndex / DAY_TASK_LEVELS + 1;
+            int level = completionIndex % DAY_TASK_LEVELS + 1;
+            member.setCompletedLevel(day, level, payload.getInt());
+        }
+        return member;
+    }
+
+
+    private static byte[] encode(byte type, LeaderboardKey leaderboardKey, PayloadWriter payloadWriter) {
+        try {
+            ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeInt(0); // payload length, patched below
+            out.writeInt(0); // checksum, patched below
+            out.writeByte(type);
+            out.writeInt(leaderboardKey.getYear());
+            out.writeLong(leaderboardKey.getLeaderboardId());
+            payloadWriter.write(out);
+            out.flush();
+
+            ByteBuffer recordBuffer = ByteBuffer.wrap(record.toByteArray());
+            int payloadLength = recordBuffer.capacity() - FRAME_HEADER_BYTES;
+            CRC32C crc32c = new CRC32C();
+            crc32c.update(recordBuffer.array(), FRAME_HEADER_BYTES, payloadLength);
+            recordBuffer.putInt(0, payloadLength);
+            recordBuffer.putInt(4, (int) crc32c.getValue());
+            return recordBuffer.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(Math.min(bytes.length, Short.MAX_VALUE));
+        out.write(bytes, 0, Math.min(bytes.length, Short.MAX_VALUE));
+    }
+
+    private static String readString(ByteBuffer payload) {
+        short length = payload.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    @FunctionalInterface
+    private interface PayloadWriter {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+}
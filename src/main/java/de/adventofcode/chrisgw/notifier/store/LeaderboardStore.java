@@ -0,0 +1,622 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static de.adventofcode.chrisgw.notifier.store.LeaderboardRecordCodec.*;
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+
+/**
+ * Crash-safe leaderboard persistence: every save appends the member delta records to a log segment, a single writer
+ * thread commits all pending saves with one {@code force} per batch. When the log grows too large, a compact
+ * snapshot of all leaderboards is swapped in by atomic rename and the covered segments are deleted. Recovery maps
+ * the snapshot and the remaining segments into memory and stops at the first torn or corrupt record. The store
+ * holds an exclusive lock on its directory while it runs, a second process fails to start instead of truncating and
+ * compacting the log of the first.
+ * <p>
+ * Next to the members the store keeps the {@link MembershipEvent joins and leaves} of each leaderboard, so the star
+ * event history survives a restart with the join times and the stars of members who left.
+ * <p>
+ * With a {@code clusterDirectory} each committed save also replaces the board's handover file on the shared
+ * directory. A node which takes over the board continues from that state, so it does not announce stars again which
+ * the previous owner already announced.
+ */
+@Slf4j
+@Service
+public class LeaderboardStore {
+
+    static final String SNAPSHOT_FILE_NAME = "leaderboards.snapshot";
+    static final String SEGMENT_FILE_PREFIX = "leaderboards-";
+    static final String SEGMENT_FILE_SUFFIX = ".log";
+    static final String LOCK_FILE_NAME = "leaderboards.lock";
+    static final String HANDOVER_DIRECTORY_NAME = "state";
+    static final String HANDOVER_FILE_SUFFIX = ".board";
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final PendingWrite SHUTDOWN = new PendingWrite(null, List.of(), null);
+
+    private final ObjectMapper objectMapper;
+    private final Map<LeaderboardKey, Leaderboard> leaderboards = new ConcurrentHashMap<>();
+    private final Map<LeaderboardKey, List<MembershipEvent>> membershipEvents = new ConcurrentHashMap<>();
+    private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private final Map<LeaderboardKey, Integer> pendingHandoverCounts = new ConcurrentHashMap<>();
+    private final Map<LeaderboardKey, CompletableFuture<Void>> lastPendingSaves = new ConcurrentHashMap<>();
+
+    private Path storeDirectory = Paths.get("aocLeaderboards");
+    private long compactBytes = 16L * 1024 * 1024;
+    private Path handoverDirectory;
+
+    private volatile Thread writerThread;
+    private FileChannel lockChannel;
+    private FileChannel segmentChannel;
+    private long segmentId;
+    private boolean segmentTorn;
+    /** leaderboards whose last commit failed, their next commit rewrites them with a reset, writer thread only */
+    private final Set<LeaderboardKey> resetLeaderboardKeys = new HashSet<>();
+
+
+    @Inject
+    public LeaderboardStore(ObjectMapper objectMapper) {
+        this.objectMapper = requireNonNull(objectMapper);
+    }
+
+
+    public Optional<Leaderboard> load(LeaderboardKey leaderboardKey) {
+        requireNonNull(leaderboardKey);
+        ensureStarted();
+        Leaderboard leaderboard = loadHandoverLeaderboard(leaderboardKey);
+        if (leaderboard == null) {
+            leaderboard = leaderboards.get(leaderboardKey);
+        }
+        if (leaderboard == null) {
+            leaderboard = loadLegacyLeaderboard(leaderboardKey);
+        }
+        return Optional.ofNullable(leaderboard);
+    }
+
+    /**
+     * Enqueues the records which turn the last saved state of this leaderboard into {@code leaderboard}. The returned
+     * future completes once the records are durable. The leaderboard must not be modified after it was saved.
+     */
+    public CompletableFuture<Void> save(Leaderboard leaderboard) {
+        return save(leaderboard, List.of());
+    }
+
+    /**
+     * Saves the leaderboard together with the membership events of a handover file which are not known yet. Joins and
+     * leaves of the save itself are only recorded if they are not the latest membership event of the member already.
+     */
+    private CompletableFuture<Void> save(Leaderboard leaderboard, List<MembershipEvent> handoverMembershipEvents) {
+        requireNonNull(leaderboard);
+        ensureStarted();
+        LeaderboardKey leaderboardKey = new LeaderboardKey(leaderboard.getEvent(), leaderboard.getOwnerId());
+        int epochSecond = (int) Instant.now().getEpochSecond();
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        leaderboards.compute(leaderboardKey, (key, previousLeaderboard) -> {
+            List<byte[]> records = diff(key, previousLeaderboard, leaderboard);
+            for (MembershipEvent membershipEvent : handoverMembershipEvents) {
+                if (addMembershipEvent(membershipEvents, key, membershipEvent)) {
+                    records.add(membershipEvent(key, membershipEvent));
+                }
+            }
+            for (MembershipEvent membershipEvent : membershipChanges(previousLeaderboard, leaderboard, epochSecond)) {
+                if (latestMembershipKind(key, membershipEvent.getMemberId()) != membershipEvent.getKind()
+                        && addMembershipEvent(membershipEvents, key, membershipEvent)) {
+                    records.add(membershipEvent(key, membershipEvent));
+                }
+            }
+            if (records.isEmpty()) {
+                durable.complete(null);
+            } else {
+                if (handoverDirectory != null) {
+                    pendingHandoverCounts.merge(key, 1, Integer::sum);
+                }
+                lastPendingSaves.put(key, durable);
+                durable.whenComplete((ignored, throwable) -> lastPendingSaves.remove(key, durable));
+                pendingWrites.add(new PendingWrite(leaderboard, records, durable));
+            }
+            return leaderboard;
+        });
+        return durable;
+    }
+
+    /**
+     * Completes once the saves of the leaderboard enqueued so far are committed and its handover file is written, or
+     * once their commit failed. Saves are committed in order, so waiting for the last one covers the earlier ones.
+     */
+    public CompletableFuture<Void> flush(LeaderboardKey leaderboardKey) {
+        CompletableFuture<Void> lastPendingSave = lastPendingSaves.get(requireNonNull(leaderboardKey));
+        if (lastPendingSave == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return lastPendingSave.handle((ignored, throwable) -> null);
+    }
+
+    /**
+     * @return the joins and leaves of the leaderboard in the order they were saved
+     */
+    List<MembershipEvent> membershipEvents(LeaderboardKey leaderboardKey) {
+        requireNonNull(leaderboardKey);
+        ensureStarted();
+        return List.copyOf(membershipEvents.getOrDefault(leaderboardKey, List.of()));
+    }
+
+    private byte latestMembershipKind(LeaderboardKey leaderboardKey, long memberId) {
+        List<MembershipEvent> leaderboardMembershipEvents = membershipEvents.getOrDefault(leaderboardKey, List.of());
+        for (int i = leaderboardMembershipEvents.size() - 1; i >= 0; i--) {
+            MembershipEvent membershipEvent = leaderboardMembershipEvents.get(i);
+            if (membershipEvent.getMemberId() == memberId) {
+                return membershipEvent.getKind();
+            }
+        }
+        return 0;
+    }
+
+    public int leaderboardCount() {
+        ensureStarted();
+        return leaderboards.size();
+    }
+
+    /**
+     * @return the keys of the stored leaderboards of the event year
+     */
+    public List<LeaderboardKey> leaderboardKeys(int year) {
+        ensureStarted();
+        return leaderboards.keySet()
+                .stream()
+                .filter(leaderboardKey -> leaderboardKey.getYear() == year)
+                .collect(toList());
+    }
+
+
+    /**
+     * The handover file is written by whichever node owned the board last, so it is never older than the local
+     * state, unless a local save is still waiting for its commit. Saving it records the difference to the local
+     * state, the local log stays consistent for recovery.
+     */
+    private Leaderboard loadHandoverLeaderboard(LeaderboardKey leaderboardKey) {
+        if (handoverDirectory == null || pendingHandoverCounts.containsKey(leaderboardKey)) {
+            return null;
+        }
+        Path handoverFile = handoverFile(leaderboardKey);
+        if (!Files.exists(handoverFile)) {
+            return null;
+        }
+        try {
+            ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(handoverFile));
+            ByteBuffer header = nextPayload(snapshot);
+            if (header == null || recordType(header) != SNAPSHOT_HEADER) {
+                throw new IOException("corrupt snapshot header in " + handoverFile);
+            }
+            Map<LeaderboardKey, Leaderboard> handoverLeaderboards = new HashMap<>();
+            Map<LeaderboardKey, List<MembershipEvent>> handoverMembershipEvents = new HashMap<>();
+            ByteBuffer payload;
+            while ((payload = nextPayload(snapshot)) != null) {
+                apply(payload, handoverLeaderboards, handoverMembershipEvents);
+            }
+            Leaderboard leaderboard = handoverLeaderboards.get(leaderboardKey);
+            if (snapshot.hasRemaining() || leaderboard == null) {
+                throw new IOException("corrupt handover leaderboard in " + handoverFile);
+            }
+            save(leaderboard, handoverMembershipEvents.getOrDefault(leaderboardKey, List.of()));
+            return leaderboard;
+        } catch (IOException e) {
+            log.warn("ignore handover leaderboard {}: {}", handoverFile, e.toString());
+            return null;
+        }
+    }
+
+    private Leaderboard loadLegacyLeaderboard(LeaderboardKey leaderboardKey) {
+        Path legacyFile = storeDirectory.resolve(
+                "AocLeaderboard_" + leaderboardKey.getYear() + "_" + leaderboardKey.getLeaderboardId() + ".json");
+        if (!Files.exists(legacyFile)) {
+            return null;
+        }
+        try {
+            Leaderboard leaderboard = objectMapper.readerFor(Leaderboard.class).readValue(legacyFile.toFile());
+            leaderboard.setEvent(leaderboardKey.getYear());
+            leaderboard.setOwnerId(leaderboardKey.getLeaderboardId());
+            log.info("migrate legacy leaderboard file {}", legacyFile);
+            save(leaderboard);
+            return leaderboard;
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not load legacy leaderboard " + legacyFile, e);
+        }
+    }
+
+
+    private void ensureStarted() {
+        if (writerThread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (writerThread == null) {
+                try {
+                    lockStoreDirectory();
+                    recover();
+                } catch (IOException e) {
+                    releaseStoreDirectory();
+                    throw new UncheckedIOException("could not recover leaderboard store " + storeDirectory, e);
+                } catch (RuntimeException e) {
+                    releaseStoreDirectory();
+                    throw e;
+                }
+                Thread thread = new Thread(this::writePendingRecords, "aoc-leaderboard-store");
+                thread.setDaemon(true);
+                thread.start();
+                writerThread = thread;
+            }
+        }
+    }
+
+    private void lockStoreDirectory() throws IOException {
+        Files.createDirectories(storeDirectory);
+        lockChannel = FileChannel.open(storeDirectory.resolve(LOCK_FILE_NAME), CREATE, WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IllegalStateException("leaderboard store " + storeDirectory + " is used by another process");
+        }
+    }
+
+    private void releaseStoreDirectory() {
+        try {
+            if (lockChannel != null) {
+                lockChannel.close();
+                lockChannel = null;
+            }
+        } catch (IOException e) {
+            log.warn("could not release leaderboard store lock", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        long startNanos = System.nanoTime();
+        long coveredSegmentId = recoverSnapshot();
+
+        segmentId = coveredSegmentId + 1;
+        List<Path> segmentFiles = segmentFiles();
+        for (Path segmentFile : segmentFiles) {
+            long currentSegmentId = segmentIdOf(segmentFile);
+            if (currentSegmentId <= coveredSegmentId) {
+                Files.deleteIfExists(segmentFile);
+                continue;
+            }
+            replaySegment(segmentFile);
+            segmentId = currentSegmentId;
+        }
+
+        segmentChannel = FileChannel.open(segmentFile(segmentId), CREATE, WRITE, APPEND);
+        log.info("recovered {} leaderboards from {} in {} ms", leaderboards.size(), storeDirectory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private long recoverSnapshot() throws IOException {
+        Path snapshotFile = storeDirectory.resolve(SNAPSHOT_FILE_NAME);
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (FileChannel snapshotChannel = FileChannel.open(snapshotFile, READ)) {
+            MappedByteBuffer snapshot = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+            ByteBuffer header = nextPayload(snapshot);
+            if (header == null || recordType(header) != SNAPSHOT_HEADER) {
+                throw new IOException("corrupt snapshot header in " + snapshotFile);
+            }
+            ByteBuffer payload;
+            while ((payload = nextPayload(snapshot)) != null) {
+                apply(payload, leaderboards, membershipEvents);
+            }
+            if (snapshot.hasRemaining()) {
+                throw new IOException("corrupt snapshot record at " + snapshot.position() + " in " + snapshotFile);
+            }
+            return snapshotCoveredSegmentId(header);
+        }
+    }
+
+    private void replaySegment(Path segmentFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile, READ, WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer payload;
+            while ((payload = nextPayload(segment)) != null) {
+                apply(payload, leaderboards, membershipEvents);
+            }
+            if (segment.hasRemaining()) {
+                log.warn("truncate torn record at {} of {} in {}", segment.position(), channel.size(), segmentFile);
+                channel.truncate(segment.position());
+                channel.force(true);
+            }
+        }
+    }
+
+
+    private void writePendingRecords() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            boolean running = true;
+            while (running) {
+                batch.add(pendingWrites.take());
+                pendingWrites.drainTo(batch, MAX_BATCH_SIZE - 1);
+                running = !batch.remove(SHUTDOWN);
+                commit(batch);
+                batch.clear();
+                compactIfLarge();
+            }
+        } catch (InterruptedException e) {
+            log.debug("leaderboard store writer stopped");
+        } finally {
+            pendingWrites.drainTo(batch);
+            batch.forEach(pendingWrite -> pendingWrite.fail(new IllegalStateException("leaderboard store closed")));
+            closeSegmentChannel();
+            releaseStoreDirectory();
+        }
+    }
+
+    /**
+     * A failed commit fails the futures of its saves and rewrites their leaderboards in full with their next commit,
+     * because the saves queued behind it are deltas to a state which never reached the log.
+     */
+    private void commit(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long validSegmentSize = -1;
+        try {
+            if (segmentTorn || !segmentChannel.isOpen()) {
+                rollSegment();
+            }
+            validSegmentSize = segmentChannel.size();
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (PendingWrite pendingWrite : batch) {
+                LeaderboardKey leaderboardKey = pendingWrite.leaderboardKey();
+                List<byte[]> records = resetLeaderboardKeys.contains(leaderboardKey)
+                        ? rewriteRecords(leaderboardKey, pendingWrite.leaderboard) : pendingWrite.records;
+                records.forEach(record -> buffers.add(ByteBuffer.wrap(record)));
+            }
+            ByteBuffer[] bufferArray = buffers.toArray(new ByteBuffer[0]);
+            while (bufferArray[bufferArray.length - 1].hasRemaining()) {
+                segmentChannel.write(bufferArray);
+            }
+            segmentChannel.force(false);
+            batch.forEach(pendingWrite -> resetLeaderboardKeys.remove(pendingWrite.leaderboardKey()));
+            writeHandoverFiles(batch);
+            batch.forEach(PendingWrite::complete);
+        } catch (IOException | RuntimeException e) {
+            log.error("could not write leaderboard records", e);
+            batch.forEach(pendingWrite -> resetLeaderboardKeys.add(pendingWrite.leaderboardKey()));
+            discardTornRecords(validSegmentSize);
+            batch.forEach(pendingWrite -> pendingWrite.fail(e));
+        } finally {
+            if (handoverDirectory != null) {
+                batch.forEach(pendingWrite -> pendingHandoverCounts.computeIfPresent(
+                        pendingWrite.leaderboardKey(), (key, count) -> count == 1 ? null : count - 1));
+            }
+        }
+    }
+
+    private List<byte[]> rewriteRecords(LeaderboardKey leaderboardKey, Leaderboard leaderboard) {
+        List<byte[]> records = diff(leaderboardKey, null, leaderboard);
+        membershipEvents.getOrDefault(leaderboardKey, List.of())
+                .forEach(membershipEvent -> records.add(membershipEvent(leaderboardKey, membershipEvent)));
+        return records;
+    }
+
+    private void writeHandoverFiles(List<PendingWrite> batch) {
+        if (handoverDirectory == null) {
+            return;
+        }
+        Map<LeaderboardKey, Leaderboard> lastSavedLeaderboards = new LinkedHashMap<>();
+        for (PendingWrite pendingWrite : batch) {
+            lastSavedLeaderboards.put(pendingWrite.leaderboardKey(), pendingWrite.leaderboard);
+        }
+        lastSavedLeaderboards.forEach((leaderboardKey, leaderboard) -> {
+            Path handoverFile = handoverFile(leaderboardKey);
+            Path tmpHandoverFile = handoverFile.resolveSibling(handoverFile.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(handoverDirectory);
+                Files.write(tmpHandoverFile, snapshot(0, Map.of(leaderboardKey, leaderboard),
+                        Map.of(leaderboardKey, membershipEvents.getOrDefault(leaderboardKey, List.of()))));
+                Files.move(tmpHandoverFile, handoverFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("could not write handover leaderboard {}", handoverFile, e);
+            }
+        });
+    }
+
+    /**
+     * Cuts a partly written batch off the segment, recovery would stop in front of it and miss every later record.
+     * If that fails too, the next commit starts a new segment.
+     */
+    private void discardTornRecords(long validSegmentSize) {
+        try {
+            if (validSegmentSize >= 0 && segmentChannel.isOpen()) {
+                segmentChannel.truncate(validSegmentSize);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("could not truncate leaderboard segment {}: {}", segmentId, e.toString());
+        }
+        segmentTorn = true;
+    }
+
+    private void rollSegment() throws IOException {
+        closeSegmentChannel();
+        segmentChannel = FileChannel.open(segmentFile(segmentId + 1), CREATE, WRITE, APPEND);
+        segmentId++;
+        segmentTorn = false;
+        log.info("continue leaderboard log in segment {}", segmentId);
+    }
+
+    private Path handoverFile(LeaderboardKey leaderboardKey) {
+        return handoverDirectory.resolve(
+                leaderboardKey.getYear() + "-" + leaderboardKey.getLeaderboardId() + HANDOVER_FILE_SUFFIX);
+    }
+
+    private void compactIfLarge() {
+        try {
+            if (segmentChannel.isOpen() && !segmentTorn && segmentChannel.size() > compactBytes) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("could not compact leaderboard store, retry after the next commit", e);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the current state of all leaderboards and starts a new segment. Records still pending
+     * in the queue are appended to the new segment, replaying them on top of the snapshot is idempotent.
+     */
+    private void compact() throws IOException {
+        long startNanos = System.nanoTime();
+        long coveredSegmentId = segmentId;
+        byte[] snapshot = snapshot(coveredSegmentId, Map.copyOf(leaderboards), Map.copyOf(membershipEvents));
+
+        Path snapshotFile = storeDirectory.resolve(SNAPSHOT_FILE_NAME);
+        Path tmpSnapshotFile = storeDirectory.resolve(SNAPSHOT_FILE_NAME + ".tmp");
+        try (FileChannel snapshotChannel = FileChannel.open(tmpSnapshotFile, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer snapshotBuffer = ByteBuffer.wrap(snapshot);
+            while (snapshotBuffer.hasRemaining()) {
+                snapshotChannel.write(snapshotBuffer);
+            }
+            snapshotChannel.force(true);
+        }
+        Files.move(tmpSnapshotFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        closeSegmentChannel();
+        segmentId = coveredSegmentId + 1;
+        segmentChannel = FileChannel.open(segmentFile(segmentId), CREATE, WRITE, APPEND);
+        for (Path segmentFile : segmentFiles()) {
+            if (segmentIdOf(segmentFile) <= coveredSegmentId) {
+                Files.deleteIfExists(segmentFile);
+            }
+        }
+        log.info("compacted leaderboard store to {} bytes in {} ms", snapshot.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private void forceDirectory() {
+        try (FileChannel directoryChannel = FileChannel.open(storeDirectory, READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            log.debug("could not force store directory {}: {}", storeDirectory, e.toString());
+        }
+    }
+
+    private void closeSegmentChannel() {
+        try {
+            if (segmentChannel != null) {
+                segmentChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("could not close leaderboard segment", e);
+        }
+    }
+
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            return files.filter(file -> {
+                String fileName = file.getFileName().toString();
+                return fileName.startsWith(SEGMENT_FILE_PREFIX) && fileName.endsWith(SEGMENT_FILE_SUFFIX);
+            }).sorted(Comparator.comparingLong(LeaderboardStore::segmentIdOf)).collect(toList());
+        }
+    }
+
+    private Path segmentFile(long segmentId) {
+        return storeDirectory.resolve(String.format("%s%010d%s", SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_SUFFIX));
+    }
+
+    private static long segmentIdOf(Path segmentFile) {
+        String fileName = segmentFile.getFileName().toString();
+        return Long.parseLong(
+                fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+    }
+
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        Thread thread = writerThread;
+        if (thread != null) {
+            pendingWrites.add(SHUTDOWN);
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+
+    @Value("${leaderboardStoreDirectory:aocLeaderboards}")
+    public void setStoreDirectory(String storeDirectory) {
+        this.storeDirectory = Paths.get(storeDirectory);
+    }
+
+    @Value("${leaderboardStoreCompactBytes:16777216}")
+    public void setCompactBytes(long compactBytes) {
+        if (compactBytes <= 0) {
+            throw new IllegalArgumentException("Expect positive leaderboardStoreCompactBytes: " + compactBytes);
+        }
+        this.compactBytes = compactBytes;
+    }
+
+    @Value("${clusterDirectory:}")
+    public void setClusterDirectory(String clusterDirectory) {
+        this.handoverDirectory = clusterDirectory == null || clusterDirectory.isBlank() ? null
+                : Paths.get(clusterDirectory.trim()).resolve(HANDOVER_DIRECTORY_NAME);
+    }
+
+
+    private static class PendingWrite {
+
+        private final Leaderboard leaderboard;
+        private final List<byte[]> records;
+        private final CompletableFuture<Void> durable;
+
+
+        private PendingWrite(Leaderboard leaderboard, List<byte[]> records, CompletableFuture<Void> durable) {
+            this.leaderboard = leaderboard;
+            this.records = records;
+            this.durable = durable;
+        }
+
+
+        private LeaderboardKey leaderboardKey() {
+            return new LeaderboardKey(leaderboard.getEvent(), leaderboard.getOwnerId());
+        }
+
+        private void complete() {
+            durable.complete(null);
+        }
+
+        private void fail(Throwable throwable) {
+            if (durable != null) {
+                durable.completeExceptionally(throwable);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+
+/**
+ * A member joined or left a leaderboard at the time the store saved the change. A leave keeps the last state of the
+ * member, so its stars still count for the standings before the leave.
+ */
+@Value
+class MembershipEvent {
+
+    int epochSecond;
+    /** {@link BoardHistory#JOIN} or {@link BoardHistory#LEAVE} */
+    byte kind;
+    long memberId;
+    @EqualsAndHashCode.Exclude
+    LeaderboardMember member;
+
+
+    static MembershipEvent of(int epochSecond, byte kind, LeaderboardMember member) {
+        return new MembershipEvent(epochSecond, kind, member.getId(), member);
+    }
+
+}
@@ -0,0 +1,76 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.SolveTimeSummary;
+
+import java.util.Arrays;
+
+
+/**
+ * Growing multiset of solve times in seconds in a primitive array. New values are appended behind the sorted prefix
+ * and merged into it on the next query, so adding is constant time and a query only sorts what was added since the
+ * previous one.
+ */
+final class SolveTimeDistribution {
+
+    private int[] seconds = new int[16];
+    private int size;
+    private int sortedSize;
+
+
+    void add(int solveSeconds) {
+        if (size == seconds.length) {
+            seconds = Arrays.copyOf(seconds, size * 2);
+        }
+        seconds[size++] = solveSeconds;
+    }
+
+    int size() {
+        return size;
+    }
+
+    SolveTimeSummary summary() {
+        sort();
+        return summaryOfSorted(seconds, size);
+    }
+
+
+    private void sort() {
+        if (sortedSize == size) {
+            return;
+        }
+        Arrays.sort(seconds, sortedSize, size);
+        if (sortedSize > 0 && seconds[sortedSize - 1] > seconds[sortedSize]) {
+            int[] added = Arrays.copyOfRange(seconds, sortedSize, size);
+            int sorted = sortedSize - 1;
+            int next = added.length - 1;
+            for (int merged = size - 1; next >= 0; merged--) {
+                if (sorted >= 0 && seconds[sorted] > added[next]) {
+                    seconds[merged] = seconds[sorted--];
+                } else {
+                    seconds[merged] = added[next--];
+                }
+            }
+        }
+        sortedSize = size;
+    }
+
+
+    /**
+     * @return the nearest rank quantiles of the first {@code count} values of {@code sortedSeconds}, {@code null} if
+     *         there are none
+     */
+    static SolveTimeSummary summaryOfSorted(int[] sortedSeconds, int count) {
+        if (count == 0) {
+            return null;
+        }
+        return new SolveTimeSummary(count, sortedSeconds[0], quantile(sortedSeconds, count, 0.25),
+                quantile(sortedSeconds, count, 0.5), quantile(sortedSeconds, count, 0.75),
+                quantile(sortedSeconds, count, 0.9), sortedSeconds[count - 1]);
+    }
+
+    private static int quantile(int[] sortedSeconds, int count, double quantile) {
+        int rank = (int) Math.ceil(quantile * count);
+        return sortedSeconds[Math.min(count, Math.max(1, rank)) - 1];
+    }
+
+}
@@ -0,0 +1,152 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import de.adventofcode.chrisgw.notifier.model.SolveTimeSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Solve time distributions per day and per member of each watched leaderboard and per day across all leaderboards of
+ * a year. Every change adds only the stars which were not counted yet, queries read the kept distributions and never
+ * walk a leaderboard.
+ * <p>
+ * The statistics of a leaderboard are seeded from its stored state, which contains the completion instant of every
+ * star. The first query across the leaderboards of a year seeds every stored leaderboard of the year. A member on
+ * several leaderboards counts once across the leaderboards.
+ */
+@Slf4j
+@Service
+public class SolveTimeStatistics {
+
+    public enum SolveTime {
+        /** time from the unlock of the day to the first star */
+        PART_1_SINCE_UNLOCK,
+        /** time from the first to the second star of the day */
+        PART_2_DELTA
+    }
+
+    private final LeaderboardStore leaderboardStore;
+    private final Map<LeaderboardKey, SolveTimes> boardSolveTimes = new ConcurrentHashMap<>();
+    private final Map<Integer, SolveTimes> yearSolveTimes = new ConcurrentHashMap<>();
+    private final Set<Integer> seededYears = ConcurrentHashMap.newKeySet();
+
+
+    @Inject
+    public SolveTimeStatistics(LeaderboardStore leaderboardStore) {
+        this.leaderboardStore = requireNonNull(leaderboardStore);
+    }
+
+
+    public void record(LeaderboardChange leaderboardChange) {
+        Leaderboard currentLeaderboard = leaderboardChange.getCurrentLeaderboard();
+        LeaderboardKey leaderboardKey = new LeaderboardKey(currentLeaderboard.getEvent(),
+                currentLeaderboard.getOwnerId());
+        SolveTimes solveTimes = boardSolveTimes.computeIfAbsent(leaderboardKey, this::newBoardSolveTimes);
+        addAll(currentLeaderboard, solveTimes, yearSolveTimesFor(leaderboardKey.getYear()));
+    }
+
+    /**
+     * Rebuilds the statistics of every stored leaderboard of the year from its stored state, e.g. after a backfill.
+     */
+    public void recomputeSeason(int year) {
+        long startNanos = System.nanoTime();
+        Set<LeaderboardKey> leaderboardKeys = Stream.concat(leaderboardStore.leaderboardKeys(year).stream(),
+                        boardSolveTimes.keySet().stream().filter(leaderboardKey -> leaderboardKey.getYear() == year))
+                .collect(Collectors.toSet());
+        SolveTimes recomputedYearSolveTimes = new SolveTimes(year, false);
+        for (LeaderboardKey leaderboardKey : leaderboardKeys) {
+            SolveTimes recomputedSolveTimes = new SolveTimes(year, true);
+            leaderboardStore.load(leaderboardKey)
+                    .ifPresent(leaderboard -> addAll(leaderboard, recomputedSolveTimes, recomputedYearSolveTimes));
+            boardSolveTimes.put(leaderboardKey, recomputedSolveTimes);
+        }
+        yearSolveTimes.put(year, recomputedYearSolveTimes);
+        seededYears.add(year);
+        log.info("recomputed solve times of {} leaderboards of {} in {} ms", leaderboardKeys.size(), year,
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+
+    public Optional<SolveTimeSummary> daySummary(LeaderboardKey leaderboardKey, int day, SolveTime solveTime) {
+        return Optional.ofNullable(solveTimesFor(leaderboardKey).daySummary(day, requireNonNull(solveTime)));
+    }
+
+    public Optional<SolveTimeSummary> daySummaryAcrossBoards(int year, int day, SolveTime solveTime) {
+        return Optional.ofNullable(seededYearSolveTimesFor(year).daySummary(day, requireNonNull(solveTime)));
+    }
+
+    /**
+     * Summary of the solve times of the member over the days, e.g. its median time to the first star.
+     */
+    public Optional<SolveTimeSummary> memberSummary(LeaderboardKey leaderboardKey, long memberId,
+            SolveTime solveTime) {
+        return Optional.ofNullable(solveTimesFor(leaderboardKey).memberSummary(memberId, requireNonNull(solveTime)));
+    }
+
+    public int starCount(LeaderboardKey leaderboardKey, int day, int level) {
+        return solveTimesFor(leaderboardKey).starCount(day, level);
+    }
+
+    public int starCountAcrossBoards(int year, int day, int level) {
+        return seededYearSolveTimesFor(year).starCount(day, level);
+    }
+
+    public int memberStarCount(LeaderboardKey leaderboardKey, long memberId) {
+        return solveTimesFor(leaderboardKey).memberStarCount(memberId);
+    }
+
+
+    private SolveTimes solveTimesFor(LeaderboardKey leaderboardKey) {
+        requireNonNull(leaderboardKey);
+        SolveTimes solveTimes = boardSolveTimes.get(leaderboardKey);
+        if (solveTimes != null) {
+            return solveTimes;
+        }
+        SolveTimes seededSolveTimes = newBoardSolveTimes(leaderboardKey);
+        SolveTimes concurrentSolveTimes = boardSolveTimes.putIfAbsent(leaderboardKey, seededSolveTimes);
+        if (concurrentSolveTimes != null) {
+            return concurrentSolveTimes;
+        }
+        leaderboardStore.load(leaderboardKey)
+                .ifPresent(leaderboard -> addAll(leaderboard, seededSolveTimes,
+                        yearSolveTimesFor(leaderboardKey.getYear())));
+        return seededSolveTimes;
+    }
+
+    private SolveTimes newBoardSolveTimes(LeaderboardKey leaderboardKey) {
+        return new SolveTimes(leaderboardKey.getYear(), true);
+    }
+
+    private SolveTimes seededYearSolveTimesFor(int year) {
+        if (seededYears.add(year)) {
+            leaderboardStore.leaderboardKeys(year).forEach(this::solveTimesFor);
+        }
+        return yearSolveTimesFor(year);
+    }
+
+    private SolveTimes yearSolveTimesFor(int year) {
+        return yearSolveTimes.computeIfAbsent(year, eventYear -> new SolveTimes(eventYear, false));
+    }
+
+    private static void addAll(Leaderboard leaderboard, SolveTimes solveTimes, SolveTimes yearSolveTimes) {
+        for (LeaderboardMember member : leaderboard) {
+            solveTimes.add(member);
+            yearSolveTimes.add(member);
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import de.adventofcode.chrisgw.notifier.model.SolveTimeSummary;
+import de.adventofcode.chrisgw.notifier.store.SolveTimeStatistics.SolveTime;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_LEVELS;
+
+
+/**
+ * Solve times of the members of one leaderboard, or of every leaderboard of a year, in primitive columns. Each star is
+ * counted once per member, the completion mask of a member tells which stars were added already. Members who left
+ * keep counting, their stars were earned on the board.
+ */
+final class SolveTimes {
+
+    private static final int NO_TIME = -1;
+
+    private final int[] unlockEpochSeconds = new int[DAY_TASK_COUNT];
+    private final boolean keepMemberTimes;
+
+    private final Map<Long, Integer> memberIndexById = new HashMap<>();
+    private long[] memberCompletionMasks = new long[16];
+    /** member {@code m} of day {@code d} at {@code m * DAY_TASK_COUNT + d - 1}, if member times are kept */
+    private int[] memberPart1Seconds;
+    private int[] memberPart2Seconds;
+    private int memberCount;
+
+    private final SolveTimeDistribution[] part1Distributions = new SolveTimeDistribution[DAY_TASK_COUNT];
+    private final SolveTimeDistribution[] part2Distributions = new SolveTimeDistribution[DAY_TASK_COUNT];
+    private final int[] starCounts = new int[DAY_TASK_COUNT * DAY_TASK_LEVELS];
+
+
+    /**
+     * @param keepMemberTimes whether the times of each member are kept for {@link #memberSummary}
+     */
+    SolveTimes(int year, boolean keepMemberTimes) {
+        for (int day = 1; day <= DAY_TASK_COUNT; day++) {
+            unlockEpochSeconds[day - 1] = (int) AdventOfCodeCalendar.unlockInstant(year, day).getEpochSecond();
+            part1Distributions[day - 1] = new SolveTimeDistribution();
+            part2Distributions[day - 1] = new SolveTimeDistribution();
+        }
+        this.keepMemberTimes = keepMemberTimes;
+        if (keepMemberTimes) {
+            memberPart1Seconds = newMemberTimes(16);
+            memberPart2Seconds = newMemberTimes(16);
+        }
+    }
+
+
+    /**
+     * Adds the stars of the member which were not added before.
+     */
+    synchronized void add(LeaderboardMember member) {
+        int memberIndex = memberIndex(member.getId());
+        long newCompletionMask = member.getCompletionMask() & ~memberCompletionMasks[memberIndex];
+        if (newCompletionMask == 0) {
+            return;
+        }
+        memberCompletionMasks[memberIndex] |= newCompletionMask;
+        for (long mask = newCompletionMask; mask != 0; mask &= mask - 1) {
+            int completionIndex = Long.numberOfTrailingZeros(mask);
+            int day = completionIndex / DAY_TASK_LEVELS + 1;
+            int level = completionIndex % DAY_TASK_LEVELS + 1;
+            starCounts[completionIndex]++;
+            if (level == 1) {
+                int part1Seconds = Math.max(0, member.getCompletedEpochSecond(day, 1) - unlockEpochSeconds[day - 1]);
+                part1Distributions[day - 1].add(part1Seconds);
+                if (keepMemberTimes) {
+                    memberPart1Seconds[memberIndex * DAY_TASK_COUNT + day - 1] = part1Seconds;
+                }
+            } else if (level == 2 && member.completedLevels(day) == DAY_TASK_LEVELS) {
+                int part2Seconds = Math.max(0,
+                        member.getCompletedEpochSecond(day, 2) - member.getCompletedEpochSecond(day, 1));
+                part2Distributions[day - 1].add(part2Seconds);
+                if (keepMemberTimes) {
+                    memberPart2Seconds[memberIndex * DAY_TASK_COUNT + day - 1] = part2Seconds;
+                }
+            }
+        }
+    }
+
+
+    synchronized SolveTimeSummary daySummary(int day, SolveTime solveTime) {
+        return distributions(solveTime)[checkDay(day) - 1].summary();
+    }
+
+    synchronized int starCount(int day, int level) {
+        if (level < 1 || level > DAY_TASK_LEVELS) {
+            throw new IllegalArgumentException("Expect level between 1 and " + DAY_TASK_LEVELS + ": " + level);
+        }
+        return starCounts[(checkDay(day) - 1) * DAY_TASK_LEVELS + level - 1];
+    }
+
+    /**
+     * Summary of the times of the member over the days, sorting at most one value per day.
+     */
+    synchronized SolveTimeSummary memberSummary(long memberId, SolveTime solveTime) {
+        Integer memberIndex = memberIndexById.get(memberId);
+        if (!keepMemberTimes || memberIndex == null) {
+            return null;
+        }
+        int[] memberSeconds = solveTime == SolveTime.PART_2_DELTA ? memberPart2Seconds : memberPart1Seconds;
+        int[] daySeconds = new int[DAY_TASK_COUNT];
+        int count = 0;
+        for (int day = 0; day < DAY_TASK_COUNT; day++) {
+            int seconds = memberSeconds[memberIndex * DAY_TASK_COUNT + day];
+            if (seconds != NO_TIME) {
+                daySeconds[count++] = seconds;
+            }
+        }
+        Arrays.sort(daySeconds, 0, count);
+        return SolveTimeDistribution.summaryOfSorted(daySeconds, count);
+    }
+
+    synchronized int memberStarCount(long memberId) {
+        Integer memberIndex = memberIndexById.get(memberId);
+        return memberIndex == null ? 0 : Long.bitCount(memberCompletionMasks[memberIndex]);
+    }
+
+
+    private SolveTimeDistribution[] distributions(SolveTime solveTime) {
+        return solveTime == SolveTime.PART_2_DELTA ? part2Distributions : part1Distributions;
+    }
+
+    private static int checkDay(int day) {
+        if (day < 1 || day > DAY_TASK_COUNT) {
+            throw new IllegalArgumentException("Expect day between 1 and " + DAY_TASK_COUNT + ": " + day);
+        }
+        return day;
+    }
+
+    private int memberIndex(long memberId) {
+        Integer memberIndex = memberIndexById.get(memberId);
+        if (memberIndex != null) {
+            return memberIndex;
+        }
+        if (memberCount == memberCompletionMasks.length) {
+            int capacity = memberCount * 2;
+            memberCompletionMasks = Arrays.copyOf(memberCompletionMasks, capacity);
+            if (keepMemberTimes) {
+                memberPart1Seconds = copyOfMemberTimes(memberPart1Seconds, capacity);
+                memberPart2Seconds = copyOfMemberTimes(memberPart2Seconds, capacity);
+            }
+        }
+        memberIndexById.put(memberId, memberCount);
+        return memberCount++;
+    }
+
+    private static int[] newMemberTimes(int memberCapacity) {
+        int[] memberTimes = new int[memberCapacity * DAY_TASK_COUNT];
+        Arrays.fill(memberTimes, NO_TIME);
+        return memberTimes;
+    }
+
+    private static int[] copyOfMemberTimes(int[] memberTimes, int memberCapacity) {
+        int[] copiedMemberTimes = newMemberTimes(memberCapacity);
+        System.arraycopy(memberTimes, 0, copiedMemberTimes, 0, memberTimes.length);
+        return copiedMemberTimes;
+    }
+
+}
@@ -0,0 +1,167 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import de.adventofcode.chrisgw.notifier.model.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_LEVELS;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Indexes every star, join and leave of the watched leaderboards by time and answers point-in-time standings queries
+ * without fetching from Advent of Code again.
+ * <p>
+ * The history of a leaderboard is seeded from its stored state, which contains the completion instant of every star,
+ * and from its stored joins and leaves, which keep the stars of members who left. Members who were on the leaderboard
+ * before its first stored join or leave count as joined before the first event.
+ */
+@Slf4j
+@Service
+public class StarEventHistory {
+
+    private final LeaderboardStore leaderboardStore;
+    private final Map<LeaderboardKey, BoardHistory> boardHistories = new ConcurrentHashMap<>();
+
+
+    @Inject
+    public StarEventHistory(LeaderboardStore leaderboardStore) {
+        this.leaderboardStore = requireNonNull(leaderboardStore);
+    }
+
+
+    public void record(LeaderboardChange leaderboardChange) {
+        Leaderboard previousLeaderboard = leaderboardChange.getPreviousLeaderboard();
+        Leaderboard currentLeaderboard = leaderboardChange.getCurrentLeaderboard();
+        LeaderboardKey leaderboardKey = keyOf(currentLeaderboard);
+        BoardHistory boardHistory = boardHistories.get(leaderboardKey);
+        if (boardHistory == null) {
+            boardHistory = seededBoardHistory(leaderboardKey, previousLeaderboard);
+            BoardHistory concurrentBoardHistory = boardHistories.putIfAbsent(leaderboardKey, boardHistory);
+            if (concurrentBoardHistory != null) {
+                boardHistory = concurrentBoardHistory;
+            }
+        }
+        recordDifference(boardHistory, previousLeaderboard, currentLeaderboard,
+                (int) Instant.now().getEpochSecond());
+    }
+
+
+    public List<LeaderboardStanding> standingsAsOf(LeaderboardKey leaderboardKey, Instant time) {
+        return boardHistoryFor(leaderboardKey).standingsAsOf(clampedEpochSecond(time));
+    }
+
+    public List<LeaderboardStanding> standingsAfterDay(LeaderboardKey leaderboardKey, int day) {
+        return boardHistoryFor(leaderboardKey).standingsAfterDay(day);
+    }
+
+    public List<StarEvent> starEvents(LeaderboardKey leaderboardKey, long memberId) {
+        return boardHistoryFor(leaderboardKey).events(memberId);
+    }
+
+    public List<StarEvent> starEvents(LeaderboardKey leaderboardKey, Instant from, Instant to) {
+        return boardHistoryFor(leaderboardKey).events(clampedEpochSecond(from), clampedEpochSecond(to));
+    }
+
+    public int starEventCount(LeaderboardKey leaderboardKey) {
+        return boardHistoryFor(leaderboardKey).eventCount();
+    }
+
+
+    private BoardHistory boardHistoryFor(LeaderboardKey leaderboardKey) {
+        requireNonNull(leaderboardKey);
+        BoardHistory boardHistory = boardHistories.get(leaderboardKey);
+        if (boardHistory != null) {
+            return boardHistory;
+        }
+        Leaderboard storedLeaderboard = leaderboardStore.load(leaderboardKey).orElse(null);
+        BoardHistory seededBoardHistory = seededBoardHistory(leaderboardKey, storedLeaderboard);
+        BoardHistory concurrentBoardHistory = boardHistories.putIfAbsent(leaderboardKey, seededBoardHistory);
+        return concurrentBoardHistory != null ? concurrentBoardHistory : seededBoardHistory;
+    }
+
+    /**
+     * Replays the stored joins and leaves with the stars each member had at that time, then the stars of the stored
+     * leaderboard. The stored joins and leaves may already contain the change which is recorded next, recording its
+     * joins and leaves again is ignored.
+     */
+    private BoardHistory seededBoardHistory(LeaderboardKey leaderboardKey, Leaderboard leaderboard) {
+        BoardHistory boardHistory = new BoardHistory();
+        Set<Long> seededMemberIds = new HashSet<>();
+        for (MembershipEvent membershipEvent : leaderboardStore.membershipEvents(leaderboardKey)) {
+            LeaderboardMember member = membershipEvent.getMember();
+            if (seededMemberIds.add(member.getId()) && membershipEvent.getKind() == BoardHistory.LEAVE) {
+                boardHistory.add(0, member.getId(), member.getPrintName(), BoardHistory.JOIN);
+            }
+            recordStars(boardHistory, member);
+            boardHistory.add(membershipEvent.getEpochSecond(), member.getId(), member.getPrintName(),
+                    membershipEvent.getKind());
+        }
+        if (leaderboard != null) {
+            for (LeaderboardMember member : leaderboard) {
+                if (seededMemberIds.add(member.getId())) {
+                    boardHistory.add(0, member.getId(), member.getPrintName(), BoardHistory.JOIN);
+                }
+                recordStars(boardHistory, member);
+            }
+        }
+        log.debug("seeded star event history of {} with {} events", leaderboardKey, boardHistory.eventCount());
+        return boardHistory;
+    }
+
+    private static void recordStars(BoardHistory boardHistory, LeaderboardMember member) {
+        for (long mask = member.getCompletionMask(); mask != 0; mask &= mask - 1) {
+            int completionIndex = Long.numberOfTrailingZeros(mask);
+            int day = completionIndex / DAY_TASK_LEVELS + 1;
+            int level = completionIndex % DAY_TASK_LEVELS + 1;
+            boardHistory.add(member.getCompletedEpochSecond(day, level), member.getId(), member.getPrintName(),
+                    (byte) completionIndex);
+        }
+    }
+
+    private static void recordDifference(BoardHistory boardHistory, Leaderboard previousLeaderboard,
+            Leaderboard currentLeaderboard, int observedEpochSecond) {
+        for (LeaderboardMember member : currentLeaderboard) {
+            LeaderboardMember previousMember = previousLeaderboard == null //
+                    ? null : previousLeaderboard.getMemberForId(member.getId()).orElse(null);
+            long previousCompletionMask = 0;
+            if (previousMember != null) {
+                previousCompletionMask = previousMember.getCompletionMask();
+            } else {
+                boardHistory.add(observedEpochSecond, member.getId(), member.getPrintName(), BoardHistory.JOIN);
+            }
+
+            long newCompletionMask = member.getCompletionMask() & ~previousCompletionMask;
+            for (long mask = newCompletionMask; mask != 0; mask &= mask - 1) {
+                int completionIndex = Long.numberOfTrailingZeros(mask);
+                int day = completionIndex / DAY_TASK_LEVELS + 1;
+                int level = completionIndex % DAY_TASK_LEVELS + 1;
+                boardHistory.add(member.getCompletedEpochSecond(day, level), member.getId(), member.getPrintName(),
+                        (byte) completionIndex);
+            }
+        }
+        if (previousLeaderboard != null) {
+            previousLeaderboard.members()
+                    .filter(previousMember -> !currentLeaderboard.containsMember(previousMember.getId()))
+                    .forEach(previousMember -> boardHistory.add(observedEpochSecond, previousMember.getId(),
+                            previousMember.getPrintName(), BoardHistory.LEAVE));
+        }
+    }
+
+    private static int clampedEpochSecond(Instant time) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, time.getEpochSecond()));
+    }
+
+    private static LeaderboardKey keyOf(Leaderboard leaderboard) {
+        return new LeaderboardKey(leaderboard.getEvent(), leaderboard.getOwnerId());
+    }
+
+}
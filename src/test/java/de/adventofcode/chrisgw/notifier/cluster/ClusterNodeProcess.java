@@ -0,0 +1,105 @@
+package de.adventofcode.chrisgw.notifier.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.store.LeaderboardStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * A cluster node in its own JVM for {@link ClusterNodeRebalanceTest}, it runs until killed. Every board it owns is
+ * marked by an exclusively created file in {@code owners/}; a board which is already marked by another node is
+ * reported in {@code violations}.
+ */
+public class ClusterNodeProcess {
+
+    static final String OWNER_DIRECTORY_NAME = "owners";
+    static final String VIOLATIONS_FILE_NAME = "violations";
+    static final long LEASE_TTL_MILLIS = 2_000;
+    static final long HEARTBEAT_MILLIS = 100;
+
+    private final Path clusterDirectory;
+    private final String nodeId;
+    private final ClusterNode clusterNode;
+    private final Set<LeaderboardKey> markedBoards = new HashSet<>();
+
+
+    private ClusterNodeProcess(Path clusterDirectory, String nodeId) {
+        this.clusterDirectory = clusterDirectory;
+        this.nodeId = nodeId;
+        LeaderboardStore leaderboardStore = new LeaderboardStore(new ObjectMapper());
+        leaderboardStore.setStoreDirectory(clusterDirectory.resolve("store-" + nodeId).toString());
+        leaderboardStore.setClusterDirectory(clusterDirectory.toString());
+        this.clusterNode = new ClusterNode(leaderboardStore, new NotifierMetrics());
+        clusterNode.setClusterDirectory(clusterDirectory.toString());
+        clusterNode.setNodeId(nodeId);
+        clusterNode.setLeaseTtlMillis(LEASE_TTL_MILLIS);
+        clusterNode.setHeartbeatMillis(HEARTBEAT_MILLIS);
+        clusterNode.addOwnershipListener(this::markOwnedBoards);
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Path clusterDirectory = Paths.get(args[0]);
+        String nodeId = args[1];
+        int boardCount = Integer.parseInt(args[2]);
+        Files.createDirectories(clusterDirectory.resolve(OWNER_DIRECTORY_NAME));
+        new ClusterNodeProcess(clusterDirectory, nodeId).clusterNode.setBoards(boards(boardCount));
+        Thread.currentThread().join();
+    }
+
+    static List<LeaderboardKey> boards(int boardCount) {
+        List<LeaderboardKey> boards = new ArrayList<>();
+        for (int leaderboardId = 1; leaderboardId <= boardCount; leaderboardId++) {
+            boards.add(new LeaderboardKey(2023, leaderboardId));
+        }
+        return boards;
+    }
+
+    static Path ownerFile(Path clusterDirectory, LeaderboardKey board) {
+        return clusterDirectory.resolve(OWNER_DIRECTORY_NAME)
+                .resolve(board.getYear() + "-" + board.getLeaderboardId());
+    }
+
+
+    // runs on the heartbeat thread only
+    private void markOwnedBoards() {
+        Set<LeaderboardKey> ownedBoards = clusterNode.ownedBoards();
+        try {
+            for (Iterator<LeaderboardKey> markedIterator = markedBoards.iterator(); markedIterator.hasNext(); ) {
+                LeaderboardKey markedBoard = markedIterator.next();
+                if (!ownedBoards.contains(markedBoard)) {
+                    Files.deleteIfExists(ownerFile(clusterDirectory, markedBoard));
+                    markedIterator.remove();
+                }
+            }
+            for (LeaderboardKey ownedBoard : ownedBoards) {
+                if (!markedBoards.contains(ownedBoard)) {
+                    markOwnedBoard(ownedBoard);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void markOwnedBoard(LeaderboardKey ownedBoard) throws IOException {
+        Path ownerFile = ownerFile(clusterDirectory, ownedBoard);
+        try {
+            Files.writeString(ownerFile, nodeId, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+            markedBoards.add(ownedBoard);
+        } catch (FileAlreadyExistsException e) {
+            String violation = ownedBoard + " owned by " + nodeId + " and " + Files.readString(ownerFile) + "\n";
+            Files.writeString(clusterDirectory.resolve(VIOLATIONS_FILE_NAME), violation, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+}
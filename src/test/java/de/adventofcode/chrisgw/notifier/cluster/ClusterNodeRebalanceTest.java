@@ -0,0 +1,122 @@
+package de.adventofcode.chrisgw.notifier.cluster;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static de.adventofcode.chrisgw.notifier.cluster.ClusterNodeProcess.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Runs several {@link ClusterNodeProcess}es on one cluster directory, kills one of them and checks that its boards
+ * move to the live nodes, while no board is ever owned by two nodes at once.
+ */
+public class ClusterNodeRebalanceTest {
+
+    private static final int NODE_COUNT = 3;
+    private static final int BOARD_COUNT = 60;
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Process> nodeProcesses = new ArrayList<>();
+
+
+    @After
+    public void killNodes() throws InterruptedException {
+        for (Process nodeProcess : nodeProcesses) {
+            nodeProcess.destroyForcibly().waitFor();
+        }
+    }
+
+
+    @Test
+    public void boardsOfKilledNodeMoveToLiveNodes() throws Exception {
+        Path clusterDirectory = temporaryFolder.newFolder("cluster").toPath();
+        for (int node = 1; node <= NODE_COUNT; node++) {
+            nodeProcesses.add(startNode(clusterDirectory, "node-" + node));
+        }
+        Map<LeaderboardKey, String> owners = awaitOwners(clusterDirectory,
+                currentOwners -> new HashSet<>(currentOwners.values()).size() == NODE_COUNT);
+
+        nodeProcesses.get(0).destroyForcibly().waitFor();
+        Set<LeaderboardKey> killedNodeBoards = new HashSet<>();
+        owners.forEach((board, owner) -> {
+            if (owner.equals("node-1")) {
+                killedNodeBoards.add(board);
+            }
+        });
+        // the owner files of the killed node are stale, its leases expire only after the lease ttl
+        for (LeaderboardKey killedNodeBoard : killedNodeBoards) {
+            Files.deleteIfExists(ownerFile(clusterDirectory, killedNodeBoard));
+        }
+        Map<LeaderboardKey, String> ownersAfterKill = awaitOwners(clusterDirectory,
+                currentOwners -> !currentOwners.containsValue("node-1"));
+
+        assertEquals(Set.of("node-2", "node-3"), new HashSet<>(ownersAfterKill.values()));
+        assertNoViolations(clusterDirectory);
+    }
+
+
+    private Process startNode(Path clusterDirectory, String nodeId) throws IOException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        return new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                ClusterNodeProcess.class.getName(), clusterDirectory.toString(), nodeId, String.valueOf(BOARD_COUNT))
+                .redirectErrorStream(true)
+                .redirectOutput(clusterDirectory.resolveSibling(nodeId + ".log").toFile())
+                .start();
+    }
+
+    /**
+     * Waits until every board has an owner and the owners pass the condition.
+     */
+    private Map<LeaderboardKey, String> awaitOwners(Path clusterDirectory,
+            Predicate<Map<LeaderboardKey, String>> condition) throws IOException, InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        Map<LeaderboardKey, String> owners = readOwners(clusterDirectory);
+        while (owners.size() < BOARD_COUNT || !condition.test(owners)) {
+            assertNoViolations(clusterDirectory);
+            assertTrue("boards not rebalanced in time, owners: " + owners, System.nanoTime() < deadlineNanos);
+            Thread.sleep(ClusterNodeProcess.HEARTBEAT_MILLIS);
+            owners = readOwners(clusterDirectory);
+        }
+        return owners;
+    }
+
+    private static Map<LeaderboardKey, String> readOwners(Path clusterDirectory) throws IOException {
+        Map<LeaderboardKey, String> owners = new HashMap<>();
+        for (LeaderboardKey board : boards(BOARD_COUNT)) {
+            try {
+                String owner = Files.readString(ownerFile(clusterDirectory, board), StandardCharsets.UTF_8);
+                if (!owner.isEmpty()) {
+                    owners.put(board, owner);
+                }
+            } catch (NoSuchFileException e) {
+                // not owned right now
+            }
+        }
+        return owners;
+    }
+
+    private static void assertNoViolations(Path clusterDirectory) throws IOException {
+        Path violationsFile = clusterDirectory.resolve(VIOLATIONS_FILE_NAME);
+        if (Files.exists(violationsFile)) {
+            fail("boards owned by two nodes at once:\n" + Files.readString(violationsFile));
+        }
+    }
+
+}
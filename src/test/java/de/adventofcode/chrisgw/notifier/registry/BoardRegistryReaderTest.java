@@ -0,0 +1,78 @@
+package de.adventofcode.chrisgw.notifier.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.model.BoardRegistration;
+import de.adventofcode.chrisgw.notifier.model.WebhookRoute;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class BoardRegistryReaderTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+    private Path registryFile;
+
+
+    @Before
+    public void setUp() throws IOException {
+        registryFile = Files.createTempFile("board-registry-test", ".json");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(registryFile);
+    }
+
+
+    @Test
+    public void readsWebhookRoutes() throws IOException {
+        String webhookUrl = "https://hooks.slack.com/services/T0/B0/secret";
+        List<BoardRegistration> boardRegistrations = read(webhookUrl);
+
+        assertEquals(1, boardRegistrations.size());
+        assertEquals(List.of(new WebhookRoute(WebhookRoute.Type.SLACK, webhookUrl)),
+                boardRegistrations.get(0).getWebhookRoutes());
+    }
+
+    @Test
+    public void rejectsMalformedWebhookUrls() throws IOException {
+        for (String url : List.of("hooks.slack.com/services/T0", "ftp://hooks.slack.com/services/T0",
+                "https:///services/T0", "https://hooks.slack.com/services/T0 B0", "mailto:ops@example.com")) {
+            try {
+                read(url);
+                fail("accepted webhook url " + url);
+            } catch (IllegalArgumentException e) {
+                assertFalse("webhook path is not logged", e.getMessage().contains("services/T0"));
+            }
+        }
+    }
+
+    @Test
+    public void readsBackfillFlag() throws IOException {
+        String registry = "{ \"boards\": [ { \"leaderboardId\": 123456, \"year\": 2023, \"backfill\": true }, "
+                + "{ \"leaderboardId\": 654321, \"year\": 2023 } ] }";
+        Files.write(registryFile, registry.getBytes(StandardCharsets.UTF_8));
+        List<BoardRegistration> boardRegistrations = BoardRegistryReader.read(om, registryFile);
+
+        assertTrue(boardRegistrations.get(0).isBackfill());
+        assertFalse("backfill defaults to false", boardRegistrations.get(1).isBackfill());
+    }
+
+
+    private List<BoardRegistration> read(String webhookUrl) throws IOException {
+        String registry = "{ \"boards\": [ { \"leaderboardId\": 123456, \"year\": 2023, "
+                + "\"webhooks\": [ { \"type\": \"slack\", \"url\": \"" + webhookUrl + "\" } ] } ] }";
+        Files.write(registryFile, registry.getBytes(StandardCharsets.UTF_8));
+        return BoardRegistryReader.read(om, registryFile);
+    }
+
+}
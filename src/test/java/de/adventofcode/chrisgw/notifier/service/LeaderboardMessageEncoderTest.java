@@ -0,0 +1,180 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.FinishedDayTask;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.MemberChanges;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.RankMarker;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMessage.Row;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeDayTask.DAY_TASK_COUNT;
+import static org.junit.Assert.*;
+
+
+/**
+ * Encodes a synthetic board of {@value #ROW_COUNT} members for each message sink, larger than any sink budget.
+ */
+@RunWith(Parameterized.class)
+public class LeaderboardMessageEncoderTest {
+
+    private static final int ROW_COUNT = 200;
+    private static final int UNLOCKED_DAYS = 24;
+    private static final String COMPLETION_TIME = "Mo. 04.12. um 06:00";
+
+    @Parameter(0)
+    public String sink;
+    @Parameter(1)
+    public LeaderboardMessageEncoder encoder;
+    @Parameter(2)
+    public int maxMessageLength;
+
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> sinks() {
+        return List.of( //
+                new Object[] { "slack", LeaderboardMessageEncoder.SLACK, 3_000 },
+                new Object[] { "discord", LeaderboardMessageEncoder.DISCORD, 2_000 });
+    }
+
+
+    @Test
+    public void smallBoardIsSentInFull() {
+        LeaderboardMessage message = message(5, Set.of(1, 3));
+
+        assertEquals(List.of(encoder.encode(message)), encoder.encodeMessages(message));
+    }
+
+    @Test
+    public void encodedLengthMatchesEncode() {
+        LeaderboardMessage message = message(ROW_COUNT, Set.of(50, 120, 180));
+
+        assertEquals(encoder.encode(message).length(), encoder.encodedLength(message));
+    }
+
+    @Test
+    public void largeBoardIsCompactedToTopChangedAndChasedRows() {
+        LeaderboardMessage message = message(ROW_COUNT, Set.of(50, 120, 180));
+        assertTrue("board exceeds the budget", encoder.encode(message).length() > maxMessageLength);
+
+        List<String> messages = encoder.encodeMessages(message);
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0).length() <= maxMessageLength);
+
+        List<String> expectedTableLines = List.of( //
+                rowLine(message, 0), rowLine(message, 1), rowLine(message, 2), skippedRowsLine(46),
+                rowLine(message, 49), rowLine(message, 50), skippedRowsLine(68),
+                rowLine(message, 119), rowLine(message, 120), skippedRowsLine(58),
+                rowLine(message, 179), rowLine(message, 180), skippedRowsLine(19));
+        assertEquals(expectedTableLines, tableLines(messages));
+        assertEquals(textLines(List.of(encoder.encode(message))), textLines(messages));
+    }
+
+    /**
+     * The name width shifts where the lines end relative to the budget, so some parts end right at the budget.
+     */
+    @Test
+    public void boardOfChangedRowsIsSplitAtLineBoundaries() {
+        Set<Integer> changedRows = new HashSet<>();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            changedRows.add(i);
+        }
+        for (int nameLength = 20; nameLength <= 60; nameLength++) {
+            LeaderboardMessage message = message(ROW_COUNT, changedRows, nameLength);
+
+            List<String> messages = encoder.encodeMessages(message);
+            assertTrue("split into several messages", messages.size() > 2);
+            for (String part : messages) {
+                assertTrue(sink + " message of " + part.length() + " characters with names of " + nameLength,
+                        part.length() <= maxMessageLength);
+                assertFalse("no empty line at the start of a message", part.startsWith("\n"));
+                if (part.contains(") ")) {
+                    assertTrue("table continues with its header", part.startsWith("```AoC y=2023"));
+                    assertTrue("table is closed", part.contains("\n```"));
+                }
+            }
+
+            List<String> fullMessage = List.of(encoder.encode(message));
+            assertEquals(tableLines(fullMessage), tableLines(messages));
+            assertEquals(textLines(fullMessage), textLines(messages));
+        }
+    }
+
+
+    private String rowLine(LeaderboardMessage message, int rowIndex) {
+        StringBuilder sb = new StringBuilder();
+        encoder.appendRow(sb, message, message.getRows().get(rowIndex));
+        return sb.substring(0, sb.length() - 1);
+    }
+
+    private static String skippedRowsLine(int skippedRows) {
+        return "   \u2026 " + skippedRows + " weitere";
+    }
+
+    /**
+     * Rows and skipped rows markers of all tables, without the table headers.
+     */
+    private static List<String> tableLines(List<String> messages) {
+        return lines(messages, true);
+    }
+
+    /**
+     * Lines outside the tables.
+     */
+    private static List<String> textLines(List<String> messages) {
+        return lines(messages, false);
+    }
+
+    private static List<String> lines(List<String> messages, boolean tableLines) {
+        List<String> lines = new ArrayList<>();
+        for (String message : messages) {
+            boolean inTable = false;
+            for (String line : message.split("\n", -1)) {
+                if (line.startsWith("```AoC y=")) {
+                    inTable = true;
+                } else if (line.equals("```")) {
+                    inTable = false;
+                } else if (inTable == tableLines) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+
+    private static LeaderboardMessage message(int rowCount, Set<Integer> changedRows) {
+        return message(rowCount, changedRows, 20);
+    }
+
+    private static LeaderboardMessage message(int rowCount, Set<Integer> changedRows, int nameLength) {
+        List<Row> rows = new ArrayList<>(rowCount);
+        List<MemberChanges> memberChanges = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            String printName = String.format("%" + nameLength + "s", String.format("synthetic member %03d", i + 1));
+            byte[] completedLevels = new byte[DAY_TASK_COUNT];
+            int completedDays = UNLOCKED_DAYS - i * UNLOCKED_DAYS / rowCount;
+            for (int day = 1; day <= completedDays; day++) {
+                completedLevels[day - 1] = (byte) (day % 3 == 0 ? 1 : 2);
+            }
+            FinishedDayTask lastFinishedDayTask = new FinishedDayTask(completedDays, 2, COMPLETION_TIME);
+            boolean changed = changedRows.contains(i);
+            rows.add(new Row(i + 1, (rowCount - i) * 10, printName, completedLevels, lastFinishedDayTask,
+                    changed ? RankMarker.UP : RankMarker.NONE, changed));
+            if (changed) {
+                memberChanges.add(new MemberChanges(printName, List.of(lastFinishedDayTask)));
+            }
+        }
+        return new LeaderboardMessage(2023, UNLOCKED_DAYS, nameLength, COMPLETION_TIME,
+                List.copyOf(rows), List.copyOf(memberChanges));
+    }
+
+}
@@ -0,0 +1,96 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static de.adventofcode.chrisgw.notifier.model.AdventOfCodeCalendar.UNLOCK_TIME_ZONE;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Next poll times around the unlock calendar, all times in US Eastern. The cadence polls at least every minute and at
+ * most every 15 minutes, backs off after 3 quiet polls in the 30 minutes after an unlock.
+ */
+@RunWith(Parameterized.class)
+public class PollCadenceTest {
+
+    private static final PollCadence POLL_CADENCE = new PollCadence(Duration.ofMinutes(1), Duration.ofMinutes(15),
+            Duration.ofMinutes(30), 3);
+
+    @Parameter(0)
+    public String description;
+    @Parameter(1)
+    public String now;
+    @Parameter(2)
+    public int eventYear;
+    @Parameter(3)
+    public int quietPolls;
+    @Parameter(4)
+    public double phase;
+    @Parameter(5)
+    public String expectedNextPollTime;
+
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> nextPollTimes() {
+        return List.of( //
+                row("before the event waits for the first unlock", "2023-11-30T12:00", 2023, 0, 0,
+                        "2023-12-01T00:00"),
+                row("before the event staggers the first unlock", "2023-11-30T23:59:30", 2023, 0, 0.5,
+                        "2023-12-01T00:00:30"),
+                row("last event on Nov 30 waits for the first unlock", "2023-11-30T12:00", 2022, 7, 0,
+                        "2023-12-01T00:00"),
+                row("past event on Nov 30 polls at the max interval", "2023-11-30T12:00", 2021, 0, 0,
+                        "2023-11-30T12:15"),
+                row("hot window polls at the min interval", "2023-12-01T00:00:10", 2023, 0, 0,
+                        "2023-12-01T00:01:10"),
+                row("hot window backs off beyond the quiet threshold", "2023-12-01T00:10", 2023, 5, 0,
+                        "2023-12-01T00:14"),
+                row("after the hot window backs off for each quiet poll", "2023-12-01T12:00", 2023, 2, 0,
+                        "2023-12-01T12:04"),
+                row("back off is capped at the max interval", "2023-12-01T12:00", 2023, 10, 0,
+                        "2023-12-01T12:15"),
+                row("poll behind the next unlock moves to the unlock", "2023-12-01T23:55", 2023, 10, 0,
+                        "2023-12-02T00:00"),
+                row("poll moved to the unlock is staggered", "2023-12-01T23:55", 2023, 10, 0.5,
+                        "2023-12-02T00:00:30"),
+                row("poll moved to the unlock keeps the min interval", "2023-12-01T23:59:30", 2023, 10, 0,
+                        "2023-12-02T00:00:30"),
+                row("last unlock on Dec 25 is hot", "2023-12-25T00:05", 2023, 0, 0, "2023-12-25T00:06"),
+                row("Dec 25 evening is not held back by the unlock next year", "2023-12-25T23:50", 2023, 10, 0,
+                        "2023-12-26T00:05"),
+                row("Dec 26 is never hot", "2023-12-26T00:05", 2023, 0, 0, "2023-12-26T00:06"),
+                row("Dec 26 backs off to the max interval", "2023-12-26T12:00", 2023, 10, 0, "2023-12-26T12:15"),
+                row("January waits for the next event", "2024-01-15T12:00", 2023, 0, 0, "2024-12-01T00:00"),
+                row("past event in December polls at the max interval", "2023-12-10T00:00:10", 2022, 0, 0,
+                        "2023-12-10T00:15:10"),
+                row("past event after the event polls at the max interval", "2024-03-01T12:00", 2019, 0, 0,
+                        "2024-03-01T12:15"));
+    }
+
+
+    @Test
+    public void nextPollTime() {
+        Instant nextPollTime = POLL_CADENCE.nextPollTime(instant(now), eventYear, quietPolls, phase);
+        assertEquals(description, instant(expectedNextPollTime), nextPollTime);
+    }
+
+
+    private static Object[] row(String description, String now, int eventYear, int quietPolls, double phase,
+            String expectedNextPollTime) {
+        return new Object[] { description, now, eventYear, quietPolls, phase, expectedNextPollTime };
+    }
+
+    private static Instant instant(String unlockZoneDateTime) {
+        return LocalDateTime.parse(unlockZoneDateTime).atZone(UNLOCK_TIME_ZONE).toInstant();
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.adventofcode.chrisgw.notifier.service;
+
+import de.adventofcode.chrisgw.notifier.http.HttpTransportResponse;
+import de.adventofcode.chrisgw.notifier.metrics.NotifierMetrics;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardChange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+
+public class WebhookDeliveryServiceTest {
+
+    private static final String WEBHOOK_URL = "https://hooks.example.com/webhook";
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private WebhookDeliveryService webhookDeliveryService;
+    private final List<String> postedParts = new CopyOnWriteArrayList<>();
+    private final List<LeaderboardChange> encodedChanges = new CopyOnWriteArrayList<>();
+    /** parts of the messages by the owner of their leaderboard, one encoder serves every message of an outbox */
+    private final Map<Long, List<String>> partsByOwnerId = new ConcurrentHashMap<>();
+
+
+    @Before
+    public void setUp() {
+        webhookDeliveryService = new WebhookDeliveryService(new NotifierMetrics());
+        webhookDeliveryService.setRequestsPerSecond(1_000);
+        webhookDeliveryService.setBurstSize(100);
+        webhookDeliveryService.setBackoffBaseMillis(1);
+        webhookDeliveryService.setBackoffMaxMillis(4);
+    }
+
+    @After
+    public void tearDown() {
+        webhookDeliveryService.shutdown();
+    }
+
+
+    @Test
+    public void pendingChangesOfOneLeaderboardAreCoalesced() throws Exception {
+        CompletableFuture<HttpTransportResponse> firstResponse = new CompletableFuture<>();
+        Leaderboard[] leaderboards = { leaderboard(), leaderboard(), leaderboard(), leaderboard() };
+        Function<String, CompletableFuture<HttpTransportResponse>> partPoster = part -> {
+            postedParts.add(part);
+            return postedParts.size() == 1 ? firstResponse : response(200);
+        };
+
+        submit(new LeaderboardChange(leaderboards[0], leaderboards[1]), partPoster);
+        await(() -> postedParts.size() == 1);
+        submit(new LeaderboardChange(leaderboards[1], leaderboards[2]), partPoster);
+        submit(new LeaderboardChange(leaderboards[2], leaderboards[3]), partPoster);
+        assertEquals(1, webhookDeliveryService.pendingMessageCount());
+
+        firstResponse.complete(new HttpTransportResponse(200, Map.of(), new byte[0]));
+        await(() -> postedParts.size() == 2 && webhookDeliveryService.pendingMessageCount() == 0);
+        LeaderboardChange coalescedChange = encodedChanges.get(1);
+        assertSame(leaderboards[1], coalescedChange.getPreviousLeaderboard());
+        assertSame(leaderboards[3], coalescedChange.getCurrentLeaderboard());
+        assertEquals(2, encodedChanges.size());
+    }
+
+    @Test
+    public void retryResumesAtFirstUndeliveredPart() throws Exception {
+        Set<String> failedParts = new HashSet<>();
+        submit(new LeaderboardChange(leaderboard(), leaderboard()), List.of("part 1", "part 2", "part 3"), part -> {
+            postedParts.add(part);
+            boolean firstAttemptOfPart2 = part.equals("part 2") && failedParts.add(part);
+            return response(firstAttemptOfPart2 ? 503 : 200);
+        });
+
+        await(() -> postedParts.size() == 4 && webhookDeliveryService.pendingMessageCount() == 0);
+        assertEquals(List.of("part 1", "part 2", "part 2", "part 3"), postedParts);
+        assertEquals(1, webhookDeliveryService.retryCount());
+        assertEquals(0, webhookDeliveryService.droppedCount());
+    }
+
+    @Test
+    public void partOfAnotherMessageWaitsForPartiallyDeliveredMessage() throws Exception {
+        Leaderboard otherLeaderboard = leaderboard();
+        otherLeaderboard.setOwnerId(2);
+        CompletableFuture<HttpTransportResponse> firstResponse = new CompletableFuture<>();
+        Function<String, CompletableFuture<HttpTransportResponse>> partPoster = part -> {
+            postedParts.add(part);
+            return postedParts.size() == 1 ? firstResponse : response(200);
+        };
+
+        submit(new LeaderboardChange(leaderboard(), leaderboard()), List.of("a 1", "a 2"), partPoster);
+        await(() -> postedParts.size() == 1);
+        submit(new LeaderboardChange(otherLeaderboard, otherLeaderboard), List.of("b 1"), partPoster);
+        firstResponse.complete(new HttpTransportResponse(200, Map.of(), new byte[0]));
+
+        await(() -> postedParts.size() == 3);
+        assertEquals(List.of("a 1", "a 2", "b 1"), postedParts);
+    }
+
+    @Test
+    public void rateLimitedPartIsDroppedAfterMaxRateLimitedAttempts() throws Exception {
+        webhookDeliveryService.setMaxRateLimitedAttempts(3);
+        submit(new LeaderboardChange(leaderboard(), leaderboard()), part -> {
+            postedParts.add(part);
+            return response(429);
+        });
+
+        await(() -> webhookDeliveryService.droppedCount() == 1);
+        assertEquals(3, postedParts.size());
+        assertEquals(0, webhookDeliveryService.pendingMessageCount());
+    }
+
+    @Test
+    public void retryAfterPausesOutbox() throws Exception {
+        long startNanos = System.nanoTime();
+        submit(new LeaderboardChange(leaderboard(), leaderboard()), part -> {
+            postedParts.add(part);
+            if (postedParts.size() == 1) {
+                return CompletableFuture.completedFuture(
+                        new HttpTransportResponse(429, Map.of("Retry-After", List.of("0.3")), new byte[0]));
+            }
+            return response(200);
+        });
+
+        await(() -> postedParts.size() == 2 && webhookDeliveryService.pendingMessageCount() == 0);
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(0, webhookDeliveryService.droppedCount());
+    }
+
+
+    private void submit(LeaderboardChange leaderboardChange,
+            Function<String, CompletableFuture<HttpTransportResponse>> partPoster) {
+        submit(leaderboardChange, List.of("message"), partPoster);
+    }
+
+    private void submit(LeaderboardChange leaderboardChange, List<String> parts,
+            Function<String, CompletableFuture<HttpTransportResponse>> partPoster) {
+        partsByOwnerId.put(leaderboardChange.getCurrentLeaderboard().getOwnerId(), parts);
+        webhookDeliveryService.submit(WEBHOOK_URL, leaderboardChange, change -> {
+            encodedChanges.add(change);
+            return partsByOwnerId.get(change.getCurrentLeaderboard().getOwnerId());
+        }, partPoster);
+    }
+
+    private static Leaderboard leaderboard() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.setEvent(2023);
+        leaderboard.setOwnerId(1);
+        return leaderboard;
+    }
+
+    private static CompletableFuture<HttpTransportResponse> response(int status) {
+        return CompletableFuture.completedFuture(new HttpTransportResponse(status, Map.of(), new byte[0]));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.nanoTime() < deadlineNanos);
+            Thread.sleep(5);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.model.Leaderboard;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardKey;
+import de.adventofcode.chrisgw.notifier.model.LeaderboardMember;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+
+public class LeaderboardStoreTest {
+
+    private static final LeaderboardKey LEADERBOARD_KEY = new LeaderboardKey(2023, 4711);
+
+    private Path storeDirectory;
+    private final List<LeaderboardStore> stores = new ArrayList<>();
+
+
+    @Before
+    public void setUp() throws IOException {
+        storeDirectory = Files.createTempDirectory("leaderboard-store-test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (LeaderboardStore store : stores) {
+            store.shutdown();
+        }
+        try (Stream<Path> files = Files.walk(storeDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+
+    @Test
+    public void recoveryTruncatesTornRecord() throws Exception {
+        LeaderboardStore store = openStore();
+        save(store, leaderboard(10));
+        save(store, leaderboard(10, 20));
+        store.shutdown();
+
+        Path segmentFile = lastSegmentFile();
+        long committedSize = Files.size(segmentFile);
+        try (FileChannel channel = FileChannel.open(segmentFile, WRITE, APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 42, 1, 2, 3, 4, 5, 6 }));
+        }
+
+        LeaderboardStore recoveredStore = openStore();
+        assertEquals(leaderboard(10, 20), recoveredStore.load(LEADERBOARD_KEY).orElseThrow());
+        assertEquals("torn record truncated", committedSize, Files.size(segmentFile));
+
+        save(recoveredStore, leaderboard(10, 20, 30));
+        recoveredStore.shutdown();
+        assertEquals(leaderboard(10, 20, 30), openStore().load(LEADERBOARD_KEY).orElseThrow());
+    }
+
+    @Test
+    public void recoveryStopsAtCorruptRecord() throws Exception {
+        LeaderboardStore store = openStore();
+        save(store, leaderboard(10));
+        long firstCommitSize = Files.size(lastSegmentFile());
+        save(store, leaderboard(10, 20));
+        store.shutdown();
+
+        Path segmentFile = lastSegmentFile();
+        try (FileChannel channel = FileChannel.open(segmentFile, READ, WRITE)) {
+            ByteBuffer corruptByte = ByteBuffer.allocate(1);
+            long position = firstCommitSize + LeaderboardRecordCodec.FRAME_HEADER_BYTES + 4;
+            channel.read(corruptByte, position);
+            corruptByte.put(0, (byte) ~corruptByte.get(0)).rewind();
+            channel.write(corruptByte, position);
+        }
+
+        LeaderboardStore recoveredStore = openStore();
+        assertEquals(leaderboard(10), recoveredStore.load(LEADERBOARD_KEY).orElseThrow());
+        assertEquals("corrupt record truncated", firstCommitSize, Files.size(segmentFile));
+
+        save(recoveredStore, leaderboard(10, 30));
+        recoveredStore.shutdown();
+        assertEquals(leaderboard(10, 30), openStore().load(LEADERBOARD_KEY).orElseThrow());
+    }
+
+    @Test
+    public void secondStoreOnSameDirectoryFailsToStart() throws Exception {
+        LeaderboardStore store = openStore();
+        save(store, leaderboard(10));
+
+        LeaderboardStore secondStore = openStore();
+        try {
+            secondStore.load(LEADERBOARD_KEY);
+            fail("second store started on a locked store directory");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("used by another process"));
+        }
+
+        store.shutdown();
+        assertEquals(leaderboard(10), secondStore.load(LEADERBOARD_KEY).orElseThrow());
+    }
+
+
+    private LeaderboardStore openStore() {
+        LeaderboardStore store = new LeaderboardStore(new ObjectMapper());
+        store.setStoreDirectory(storeDirectory.toString());
+        stores.add(store);
+        return store;
+    }
+
+    private static void save(LeaderboardStore store, Leaderboard leaderboard) throws Exception {
+        store.save(leaderboard).get(10, TimeUnit.SECONDS);
+    }
+
+    private Path lastSegmentFile() throws IOException {
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(LeaderboardStore.SEGMENT_FILE_SUFFIX))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow();
+        }
+    }
+
+    private static Leaderboard leaderboard(long... memberIds) {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.setEvent(LEADERBOARD_KEY.getYear());
+        leaderboard.setOwnerId(LEADERBOARD_KEY.getLeaderboardId());
+        for (long memberId : memberIds) {
+            LeaderboardMember member = new LeaderboardMember();
+            member.setId(memberId);
+            member.setName("member " + memberId);
+            member.setLocalScore((int) memberId * 3);
+            member.setStars((int) memberId / 5);
+            leaderboard.addMember(member);
+        }
+        return leaderboard;
+    }
+
+}
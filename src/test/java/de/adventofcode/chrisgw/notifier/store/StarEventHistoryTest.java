@@ -0,0 +1,130 @@
+package de.adventofcode.chrisgw.notifier.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.adventofcode.chrisgw.notifier.model.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+
+public class StarEventHistoryTest {
+
+    private static final LeaderboardKey LEADERBOARD_KEY = new LeaderboardKey(2023, 4711);
+
+    private Path storeDirectory;
+    private final List<LeaderboardStore> stores = new ArrayList<>();
+    private final Instant startTime = Instant.now();
+
+
+    @Before
+    public void setUp() throws IOException {
+        storeDirectory = Files.createTempDirectory("star-event-history-test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (LeaderboardStore store : stores) {
+            store.shutdown();
+        }
+        try (Stream<Path> files = Files.walk(storeDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+
+    @Test
+    public void joinsAndLeavesSurviveRestart() throws Exception {
+        Leaderboard initialLeaderboard = leaderboard(member(10, 1), member(20, 2));
+        Leaderboard leftLeaderboard = leaderboard(member(10, 1));
+        Leaderboard joinedLeaderboard = leaderboard(member(10, 1), member(30, 0));
+        LeaderboardStore store = openStore();
+        save(store, initialLeaderboard);
+        save(store, leftLeaderboard);
+        save(store, joinedLeaderboard);
+        store.shutdown();
+
+        StarEventHistory starEventHistory = new StarEventHistory(openStore());
+        List<LeaderboardStanding> standingsBeforeLeave = starEventHistory.standingsAsOf(LEADERBOARD_KEY,
+                startTime.minusSeconds(60));
+        assertEquals(List.of(20L, 10L), memberIds(standingsBeforeLeave));
+        List<LeaderboardStanding> standingsAfterJoin = starEventHistory.standingsAsOf(LEADERBOARD_KEY,
+                Instant.now().plusSeconds(60));
+        assertEquals(List.of(10L, 30L), memberIds(standingsAfterJoin));
+
+        List<StarEvent.Type> leaverEventTypes = starEventHistory.starEvents(LEADERBOARD_KEY, 20)
+                .stream()
+                .map(StarEvent::getType)
+                .collect(toList());
+        assertEquals(List.of(StarEvent.Type.JOIN, StarEvent.Type.STAR, StarEvent.Type.STAR, StarEvent.Type.LEAVE),
+                leaverEventTypes);
+        StarEvent joinEvent = starEventHistory.starEvents(LEADERBOARD_KEY, 30).get(0);
+        assertEquals(StarEvent.Type.JOIN, joinEvent.getType());
+        assertFalse("join time kept", joinEvent.getTime().isBefore(startTime.minusSeconds(1)));
+    }
+
+    @Test
+    public void starEventsClampRangeToEpochSeconds() throws Exception {
+        LeaderboardStore store = openStore();
+        save(store, leaderboard(member(10, 1), member(20, 2)));
+
+        StarEventHistory starEventHistory = new StarEventHistory(store);
+        assertEquals(5, starEventHistory.starEvents(LEADERBOARD_KEY, Instant.MIN, Instant.MAX).size());
+        assertEquals(List.of(), starEventHistory.starEvents(LEADERBOARD_KEY, Instant.MAX, Instant.MAX));
+    }
+
+
+    private LeaderboardStore openStore() {
+        LeaderboardStore store = new LeaderboardStore(new ObjectMapper());
+        store.setStoreDirectory(storeDirectory.toString());
+        stores.add(store);
+        return store;
+    }
+
+    private static void save(LeaderboardStore store, Leaderboard leaderboard) throws Exception {
+        store.save(leaderboard).get(10, TimeUnit.SECONDS);
+    }
+
+    private static List<Long> memberIds(List<LeaderboardStanding> standings) {
+        return standings.stream().map(LeaderboardStanding::getMemberId).collect(toList());
+    }
+
+    private static Leaderboard leaderboard(LeaderboardMember... members) {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.setEvent(LEADERBOARD_KEY.getYear());
+        leaderboard.setOwnerId(LEADERBOARD_KEY.getLeaderboardId());
+        for (LeaderboardMember member : members) {
+            leaderboard.addMember(member);
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Member with the stars of the first days, the member with more stars earned each of them earlier.
+     */
+    private LeaderboardMember member(long memberId, int completedDays) {
+        LeaderboardMember member = new LeaderboardMember();
+        member.setId(memberId);
+        member.setName("member " + memberId);
+        for (int day = 1; day <= completedDays; day++) {
+            long completionEpochSecond = startTime.getEpochSecond() - 3600 * (10 - day) - memberId;
+            member.setCompletedLevel(day, 1, completionEpochSecond);
+        }
+        return member;
+    }
+
+}